@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.dogla.treetable.Column;
+import io.github.dogla.treetable.ConcurrentTreeTableBuilder;
+import io.github.dogla.treetable.TreeTable;
+import io.github.dogla.treetable.benchmarks.TreeTables.Shape;
+
+/**
+ * Benchmarks for building a tree table with {@link TreeTable#addRow(Object...)} and with a {@link TreeTable#builder(int, Column[])}.
+ * <p>
+ * The score is given per row. Run with <code>-prof gc</code>: <code>gc.alloc.rate.norm</code> is the number of 
+ * bytes allocated per row, which is close to the footprint of a row.
+ *
+ * @author Dominik Glaser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildBenchmark {
+	
+	private static final int ROWS = 100_000;
+
+	@Param({ "FLAT", "BUSHY", "DEEP" })
+	private Shape shape;
+	
+	@Param({ "2", "10", "100" })
+	private int columns;
+	
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public TreeTable build() {
+		return TreeTables.create(shape, ROWS, columns);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public TreeTable builder() {
+		return TreeTables.build(shape, ROWS, columns);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public TreeTable concurrentBuilder() {
+		// the rows are added by the common pool below 32 parents, independent of the shape
+		ConcurrentTreeTableBuilder builder = TreeTable.concurrentBuilder(TreeTables.columns(columns));
+		ConcurrentTreeTableBuilder.Node[] parents = new ConcurrentTreeTableBuilder.Node[32];
+		for (int i = 0; i < parents.length; i++) {
+			parents[i] = builder.addRow(TreeTables.cells(i, columns));
+		}
+		IntStream.range(parents.length, ROWS).parallel().forEach(i -> parents[i % parents.length].addRow(TreeTables.cells(i, columns)));
+		return builder.freeze();
+	}
+	
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.dogla.treetable.ColumnAlignment;
+import io.github.dogla.treetable.util.TextCells;
+
+/**
+ * Benchmarks for writing aligned cells, i.e. the inner loop of the text conversion.
+ * <p>
+ * {@link #legacy()} is the former implementation (sanitizing with regular expressions and padding with repeated strings)
+ * and serves as reference for {@link TextCells#appendCell(Appendable, CharSequence, int, ColumnAlignment)}.
+ * {@link #length()} serves as reference for the display width {@link #width()}.
+ *
+ * @author Dominik Glaser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings("nls")
+public class CellBenchmark {
+
+	private static final int CELLS = 1000;
+
+	/**
+	 * The content of the cells.
+	 */
+	public enum Content {
+		/** single line text */
+		PLAIN,
+		/** text with line breaks */
+		MULTILINE,
+		/** text with wide (CJK) characters */
+		WIDE
+	}
+
+	@Param({ "PLAIN", "MULTILINE", "WIDE" })
+	private Content content;
+
+	private String[] texts;
+	private int[] widths;
+	private ColumnAlignment[] alignments;
+	private Writer out;
+
+	@Setup
+	public void setup() {
+		texts = new String[CELLS];
+		widths = new int[CELLS];
+		alignments = new ColumnAlignment[CELLS];
+		ColumnAlignment[] values = ColumnAlignment.values();
+		for (int i = 0; i < CELLS; i++) {
+			String text = "cell " + i;
+			if (content == Content.MULTILINE && i % 2 == 0) {
+				text += "\r\nline " + i;
+			} else if (content == Content.WIDE && i % 2 == 0) {
+				text += " \u65e5\u672c\u8a9e";
+			}
+			texts[i] = text;
+			widths[i] = TextCells.width(text) + i % 20;
+			alignments[i] = values[i % values.length];
+		}
+		out = Writer.nullWriter();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public void appendCell() throws IOException {
+		for (int i = 0; i < CELLS; i++) {
+			TextCells.appendCell(out, texts[i], widths[i], alignments[i]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public void legacy() throws IOException {
+		for (int i = 0; i < CELLS; i++) {
+			String label = texts[i];
+			label = label.replaceAll("\r", "");
+			label = label.replaceAll("\n", " ");
+			int gap = widths[i] - label.length();
+			switch (alignments[i]) {
+				case CENTER:
+					out.append(" ".repeat((int)Math.floor(gap/2.0)));
+					out.append(label);
+					out.append(" ".repeat((int)Math.ceil(gap/2.0)));
+					break;
+				case LEFT:
+					out.append(label);
+					out.append(" ".repeat(gap));
+					break;
+				case RIGHT:
+					out.append(" ".repeat(gap));
+					out.append(label);
+					break;
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public int width() {
+		int width = 0;
+		for (int i = 0; i < CELLS; i++) {
+			width += TextCells.width(texts[i]);
+		}
+		return width;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public int length() {
+		int length = 0;
+		for (int i = 0; i < CELLS; i++) {
+			length += texts[i].length();
+		}
+		return length;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.benchmarks;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.TreeTable;
+import io.github.dogla.treetable.benchmarks.TreeTables.Shape;
+
+/**
+ * Benchmarks for copying, snapshotting and sorting a tree table.
+ *
+ * @author Dominik Glaser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopySortBenchmark {
+	
+	// a comparator which does not match the creation order of the rows
+	private static final Comparator<Row> COMPARATOR = Comparator.comparingInt(r -> Integer.reverse(r.getCellContent(0).hashCode()));
+
+	@Param({ "FLAT", "BUSHY", "DEEP" })
+	private Shape shape;
+	
+	@Param({ "1000", "100000", "1000000" })
+	private int rows;
+	
+	@Param({ "10" })
+	private int columns;
+	
+	private TreeTable tree;
+	private TreeTable unsorted;
+	private Row changedRow;
+	private int change;
+	
+	@Setup
+	public void setup() {
+		tree = TreeTables.create(shape, rows, columns);
+		changedRow = tree.stream().skip(rows / 2).findFirst().get();
+		tree.snapshot();
+	}
+	
+	@Setup(Level.Invocation)
+	public void setupInvocation() {
+		unsorted = tree.copy();
+	}
+	
+	@Benchmark
+	public TreeTable copy() {
+		return tree.copy();
+	}
+	
+	@Benchmark
+	public TreeTable snapshot() {
+		// a single cell was modified since the last snapshot, so only its path is copied
+		changedRow.setCellContent(1, Integer.valueOf(change++));
+		return tree.snapshot();
+	}
+	
+	@Benchmark
+	public TreeTable sort() {
+		unsorted.sort(COMPARATOR);
+		return unsorted;
+	}
+	
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.dogla.treetable.MappedTreeTable;
+import io.github.dogla.treetable.TreeTable;
+import io.github.dogla.treetable.TreeTableToTextConverter;
+import io.github.dogla.treetable.benchmarks.TreeTables.Shape;
+
+/**
+ * Benchmarks for a memory-mapped tree table compared to the same tree table in the heap.
+ *
+ * @author Dominik Glaser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappedBenchmark {
+
+	@Param({ "FLAT", "BUSHY", "DEEP" })
+	private Shape shape;
+	
+	@Param({ "100000", "1000000" })
+	private int rows;
+	
+	@Param({ "10" })
+	private int columns;
+	
+	private Path path;
+	private TreeTable tree;
+	private MappedTreeTable mapped;
+	private TreeTableToTextConverter converter;
+	
+	@Setup
+	public void setup() throws IOException {
+		tree = TreeTables.create(shape, rows, columns);
+		path = Files.createTempFile("treetable", ".ttm"); //$NON-NLS-1$ //$NON-NLS-2$
+		MappedTreeTable.write(tree, path);
+		mapped = MappedTreeTable.open(path);
+		converter = new TreeTableToTextConverter();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		path.toFile().deleteOnExit();
+	}
+	
+	@Benchmark
+	public MappedTreeTable open() throws IOException {
+		// independent of the number of rows
+		return MappedTreeTable.open(path);
+	}
+	
+	@Benchmark
+	public void readCells(Blackhole blackhole) {
+		tree.stream().forEach(row -> blackhole.consume(row.getCellContent(columns - 1)));
+	}
+	
+	@Benchmark
+	public void readCellsMapped(Blackhole blackhole) {
+		mapped.stream().forEach(row -> blackhole.consume(row.getCellContent(columns - 1)));
+	}
+	
+	@Benchmark
+	public void render() throws IOException {
+		converter.render(tree, Writer.nullWriter());
+	}
+	
+	@Benchmark
+	public void renderMapped() throws IOException {
+		converter.render(mapped, Writer.nullWriter());
+	}
+	
+	@Benchmark
+	public TreeTable load() {
+		return mapped.copy();
+	}
+	
+}
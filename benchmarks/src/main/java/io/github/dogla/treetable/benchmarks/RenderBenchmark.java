@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.dogla.treetable.Column;
+import io.github.dogla.treetable.IncrementalTextRenderer;
+import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.TextIndex;
+import io.github.dogla.treetable.TreeTable;
+import io.github.dogla.treetable.TreeTableToCSVConverter;
+import io.github.dogla.treetable.TreeTableToJSONConverter;
+import io.github.dogla.treetable.TreeTableToTextConverter;
+import io.github.dogla.treetable.benchmarks.TreeTables.Shape;
+
+/**
+ * Benchmarks for the conversion of a tree table to text (and to CSV and JSON for comparison).
+ *
+ * @author Dominik Glaser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+	
+	/**
+	 * The line characters.
+	 */
+	public enum Style {
+		/** {@link TreeTableToTextConverter#withASCII()} */
+		ASCII,
+		/** {@link TreeTableToTextConverter#withASCIIExtended()} */
+		EXTENDED
+	}
+
+	@Param({ "FLAT", "BUSHY", "DEEP" })
+	private Shape shape;
+	
+	@Param({ "1000", "100000", "1000000" })
+	private int rows;
+	
+	@Param({ "10" })
+	private int columns;
+	
+	@Param({ "ASCII", "EXTENDED" })
+	private Style style;
+	
+	/** the maximum width of the columns (<code>0</code> to render without wrapping) */
+	@Param({ "0" })
+	private int maxWidth;
+	
+	private TreeTable tree;
+	private TreeTableToTextConverter converter;
+	private TreeTableToCSVConverter csvConverter;
+	private TreeTableToJSONConverter jsonConverter;
+	private TextIndex index;
+	private IncrementalTextRenderer renderer;
+	private Row changedRow;
+	private int change;
+	
+	@Setup
+	public void setup() {
+		tree = TreeTables.create(shape, rows, columns);
+		for (Column column : tree.getColumns()) {
+			column.setMaxWidth(maxWidth);
+		}
+		converter = new TreeTableToTextConverter();
+		if (style == Style.EXTENDED) {
+			converter.withASCIIExtended();
+		}
+		index = converter.index(tree);
+		csvConverter = new TreeTableToCSVConverter().withDepthColumn(true).withPathColumn(true);
+		jsonConverter = new TreeTableToJSONConverter();
+		renderer = new IncrementalTextRenderer(tree, converter);
+		renderer.refresh();
+		changedRow = index.getRow(index.getRowCount() / 2);
+	}
+	
+	@Benchmark
+	public String convert() {
+		return tree.toText(converter);
+	}
+	
+	@Benchmark
+	public void render() throws IOException {
+		converter.render(tree, Writer.nullWriter());
+	}
+	
+	@Benchmark
+	public void renderCSV() throws IOException {
+		csvConverter.render(tree, Writer.nullWriter());
+	}
+	
+	@Benchmark
+	public void renderJSON() throws IOException {
+		jsonConverter.render(tree, Writer.nullWriter());
+	}
+	
+	@Benchmark
+	public void renderPage() throws IOException {
+		// a page of a terminal UI, i.e. 50 rows in the middle of the table
+		converter.render(index, index.getRowCount() / 2, 50, Writer.nullWriter());
+	}
+	
+	@Benchmark
+	public void renderIncremental() throws IOException {
+		// a live view, i.e. one cell changed since the last rendering (without changing the column width)
+		changedRow.setCellContent(1, Integer.valueOf(change++ % 10));
+		renderer.render(Writer.nullWriter());
+	}
+	
+}
\ No newline at end of file
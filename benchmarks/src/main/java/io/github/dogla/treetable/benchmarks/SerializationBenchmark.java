@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.TreeTable;
+import io.github.dogla.treetable.TreeTableBinaryReader;
+import io.github.dogla.treetable.TreeTableBinaryWriter;
+import io.github.dogla.treetable.benchmarks.TreeTables.Shape;
+
+/**
+ * Benchmarks for persisting and reloading a tree table in the binary format compared to Java serialization
+ * of an equivalent object graph (cells, parameter maps and lists of sub rows).
+ * <p>
+ * The sizes of both representations are printed during the setup.
+ *
+ * @author Dominik Glaser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+	@Param({ "FLAT", "BUSHY", "DEEP" })
+	private Shape shape;
+	
+	@Param({ "100000", "1000000" })
+	private int rows;
+	
+	@Param({ "10" })
+	private int columns;
+	
+	private TreeTable tree;
+	private Node graph;
+	private byte[] binary;
+	private byte[] serialized;
+	
+	@Setup
+	public void setup() throws IOException {
+		tree = TreeTables.create(shape, rows, columns);
+		graph = new Node(null, tree.rows(), columns);
+		binary = writeBinary().toByteArray();
+		serialized = writeJava().toByteArray();
+		System.out.printf("%nbinary: %,d bytes, java serialization: %,d bytes%n", binary.length, serialized.length); //$NON-NLS-1$
+	}
+	
+	@Benchmark
+	public ByteArrayOutputStream writeBinary() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(binary != null ? binary.length : 1 << 16);
+		try (TreeTableBinaryWriter writer = new TreeTableBinaryWriter(out)) {
+			writer.write(tree);
+		}
+		return out;
+	}
+	
+	@Benchmark
+	public TreeTable readBinary() throws IOException {
+		try (TreeTableBinaryReader reader = new TreeTableBinaryReader(new ByteArrayInputStream(binary))) {
+			return reader.read();
+		}
+	}
+	
+	@Benchmark
+	public ByteArrayOutputStream writeJava() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(serialized != null ? serialized.length : 1 << 16);
+		try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+			oos.writeObject(graph);
+		}
+		return out;
+	}
+	
+	@Benchmark
+	public Object readJava() throws IOException, ClassNotFoundException {
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+			return ois.readObject();
+		}
+	}
+	
+	/**
+	 * A serializable row as it would be persisted without the binary format.
+	 */
+	private static final class Node implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final Object[] cells;
+		private final HashMap<String, Object> parameters = new HashMap<>();
+		private final ArrayList<Node> children;
+		
+		private Node(Row row, Iterable<Row> rows, int columns) {
+			if (row != null) {
+				cells = new Object[columns];
+				for (int i = 0; i < cells.length; i++) {
+					cells[i] = row.getCellContent(i);
+				}
+			} else {
+				cells = null;
+			}
+			children = new ArrayList<>();
+			for (Row child : rows) {
+				children.add(new Node(child, child.rows(), columns));
+			}
+		}
+		
+	}
+	
+}
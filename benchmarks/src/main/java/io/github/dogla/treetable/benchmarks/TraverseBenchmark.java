@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.TreeTable;
+import io.github.dogla.treetable.benchmarks.TreeTables.Shape;
+import io.github.dogla.treetable.util.ParallelRowWalker;
+import io.github.dogla.treetable.util.RowVisitResult;
+import io.github.dogla.treetable.util.RowVisitor;
+import io.github.dogla.treetable.util.RowWalker;
+
+/**
+ * Benchmarks for the traversal of a tree table.
+ * <p>
+ * {@link #walkRecursive(Blackhole)} is the former recursive walker and serves as reference for the iterative {@link RowWalker}.
+ *
+ * @author Dominik Glaser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraverseBenchmark {
+
+	@Param({ "FLAT", "BUSHY", "DEEP" })
+	private Shape shape;
+	
+	@Param({ "1000", "100000", "1000000" })
+	private int rows;
+	
+	@Param({ "10" })
+	private int columns;
+	
+	private TreeTable tree;
+	
+	@Setup
+	public void setup() {
+		tree = TreeTables.create(shape, rows, columns);
+	}
+	
+	@Benchmark
+	public void walk(Blackhole blackhole) {
+		tree.walk(row -> {
+			blackhole.consume(row);
+			return RowVisitResult.CONTINUE;
+		});
+	}
+	
+	@Benchmark
+	public void walkRecursive(Blackhole blackhole) {
+		new RecursiveRowWalker(row -> {
+			blackhole.consume(row);
+			return RowVisitResult.CONTINUE;
+		}).walk(tree);
+	}
+	
+	@Benchmark
+	public void walkParallel(Blackhole blackhole) {
+		new ParallelRowWalker(row -> {
+			blackhole.consume(row.getCellContent(0));
+			return RowVisitResult.CONTINUE;
+		}).walk(tree);
+	}
+	
+	@Benchmark
+	public long stream() {
+		return tree.stream().count();
+	}
+	
+	@Benchmark
+	public long streamParallel() {
+		return tree.stream().parallel().filter(r -> r.getCellContent(0) != null).count();
+	}
+	
+	/**
+	 * The former recursive implementation of the {@link RowWalker}.
+	 */
+	private static final class RecursiveRowWalker {
+		
+		private final RowVisitor visitor;
+		
+		private RecursiveRowWalker(RowVisitor visitor) {
+			this.visitor = visitor;
+		}
+		
+		private void walk(TreeTable tree) {
+			for (Row row : tree.getRows()) {
+				RowVisitResult result = walk(row);
+				if (result == null || result == RowVisitResult.TERMINATE) {
+					return;
+				}
+				if (result == RowVisitResult.SKIP_SIBLINGS) {
+					break;
+				}
+			}
+		}
+		
+		private RowVisitResult walk(Row row) {
+			final RowVisitResult result = visitor.visitRow(row);
+			if (result == null || result == RowVisitResult.TERMINATE) {
+				return RowVisitResult.TERMINATE;
+			}
+			if (result == RowVisitResult.SKIP_SUBTREE || result == RowVisitResult.SKIP_SIBLINGS) {
+				return result;
+			}
+			for (Row entry : row.getRows()) {
+				RowVisitResult subResult = walk(entry);
+				if (subResult == null || subResult == RowVisitResult.TERMINATE) {
+					return subResult;
+				}
+				if (subResult == RowVisitResult.SKIP_SIBLINGS) {
+					break;
+				}
+			}
+			return result;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.dogla.treetable.Column;
+import io.github.dogla.treetable.ColumnAlignment;
+import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.TreeTable;
+import io.github.dogla.treetable.TreeTableBuilder;
+
+/**
+ * Factory for the tree tables used by the benchmarks.
+ *
+ * @author Dominik Glaser
+ */
+@SuppressWarnings("nls")
+public final class TreeTables {
+	
+	/**
+	 * The shapes of the generated tree tables.
+	 */
+	public enum Shape {
+		/** All rows on the top level */
+		FLAT,
+		/** Each row has 10 sub rows (filled level by level) */
+		BUSHY,
+		/** Chains of 100 rows, each row has a single sub row */
+		DEEP
+	}
+	
+	private TreeTables() {
+		// no instances
+	}
+
+	/**
+	 * Creates a tree table with the given shape.
+	 * 
+	 * @param shape the shape
+	 * @param rows the number of rows
+	 * @param columns the number of columns
+	 * 
+	 * @return the tree table
+	 */
+	public static TreeTable create(Shape shape, int rows, int columns) {
+		TreeTable tree = new TreeTable(columns(columns));
+		switch (shape) {
+			case FLAT:
+				for (int i = 0; i < rows; i++) {
+					tree.addRow(cells(i, columns));
+				}
+				break;
+			case BUSHY:
+				List<Row> parents = new ArrayList<>(rows);
+				for (int i = 0; i < rows; i++) {
+					parents.add(i < 10 ? tree.addRow(cells(i, columns)) : parents.get((i - 10) / 10).addRow(cells(i, columns)));
+				}
+				break;
+			case DEEP:
+				Row row = null;
+				for (int i = 0; i < rows; i++) {
+					row = i % 100 == 0 ? tree.addRow(cells(i, columns)) : row.addRow(cells(i, columns));
+				}
+				break;
+		}
+		return tree;
+	}
+	
+	/**
+	 * Creates a tree table with the given shape by a {@link TreeTableBuilder}.
+	 * 
+	 * @param shape the shape
+	 * @param rows the number of rows
+	 * @param columns the number of columns
+	 * 
+	 * @return the tree table
+	 */
+	public static TreeTable build(Shape shape, int rows, int columns) {
+		TreeTableBuilder builder = TreeTable.builder(rows, columns(columns));
+		for (int i = 0; i < rows; i++) {
+			int parent;
+			switch (shape) {
+				case BUSHY:
+					parent = i < 10 ? -1 : (i - 10) / 10;
+					break;
+				case DEEP:
+					parent = i % 100 == 0 ? -1 : i - 1;
+					break;
+				default:
+					parent = -1;
+					break;
+			}
+			builder.addSubRow(parent, cells(i, columns));
+		}
+		return builder.build();
+	}
+	
+	/**
+	 * @param columns the number of columns
+	 * 
+	 * @return the columns (every third column is aligned to the right)
+	 */
+	public static Column[] columns(int columns) {
+		Column[] result = new Column[columns];
+		for (int i = 0; i < columns; i++) {
+			result[i] = new Column("Column " + i, i % 3 == 2 ? ColumnAlignment.RIGHT : ColumnAlignment.LEFT);
+		}
+		return result;
+	}
+	
+	/**
+	 * @param row the index of the row
+	 * @param columns the number of columns
+	 * 
+	 * @return the cells of the given row (strings and numbers)
+	 */
+	public static Object[] cells(int row, int columns) {
+		Object[] cells = new Object[columns];
+		for (int i = 0; i < columns; i++) {
+			cells[i] = i % 3 == 2 ? Integer.valueOf(row * 31 + i) : "cell " + row + "/" + i;
+		}
+		return cells;
+	}
+	
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+/**
+ * The constants of the binary format of the {@link TreeTableBinaryWriter} and the {@link TreeTableBinaryReader}
+ * and of the files of a {@link MappedTreeTable}.
+ *
+ * @author Dominik Glaser
+ */
+/*package*/ final class BinaryFormat {
+
+	/** the first bytes of each tree table ("TTB" and a zero byte) */
+	/*package*/ static final int MAGIC = 0x54544200;
+	/** the version of the format */
+	/*package*/ static final int VERSION = 1;
+	/** the first bytes of a file of a {@link MappedTreeTable} ("TTM" and a zero byte) */
+	/*package*/ static final int MAPPED_MAGIC = 0x54544D00;
+	/** the size of the fixed header of a file of a {@link MappedTreeTable} */
+	/*package*/ static final int MAPPED_HEADER_SIZE = 40;
+	/** the size of an entry of the node table of a file of a {@link MappedTreeTable} */
+	/*package*/ static final int NODE_SIZE = 16;
+
+	/** the flag of a row with parameters */
+	/*package*/ static final int FLAG_PARAMETERS = 1;
+	/** the flag of a row with data */
+	/*package*/ static final int FLAG_DATA = 2;
+
+	// the type tags of the values
+	/*package*/ static final int TAG_NULL = 0;
+	/*package*/ static final int TAG_EMPTY_STRING = 1;
+	/*package*/ static final int TAG_STRING = 2;
+	/*package*/ static final int TAG_SHARED_STRING = 3;
+	/*package*/ static final int TAG_STRING_REF = 4;
+	/*package*/ static final int TAG_TRUE = 5;
+	/*package*/ static final int TAG_FALSE = 6;
+	/*package*/ static final int TAG_INT = 7;
+	/*package*/ static final int TAG_LONG = 8;
+	/*package*/ static final int TAG_DOUBLE = 9;
+	/*package*/ static final int TAG_FLOAT = 10;
+	/*package*/ static final int TAG_SHORT = 11;
+	/*package*/ static final int TAG_BYTE = 12;
+	/*package*/ static final int TAG_CHAR = 13;
+	/** a reference to a string by its offset in the file (files of a {@link MappedTreeTable} only) */
+	/*package*/ static final int TAG_STRING_OFFSET = 14;
+
+	/** strings up to this length are added to the string table, longer strings are rarely repeated */
+	/*package*/ static final int MAX_SHARED_LENGTH = 64;
+	/** the size of the string table (a power of two) */
+	/*package*/ static final int STRING_TABLE_SIZE = 1 << 14;
+
+	/**
+	 * Returns the slot of the given string in the string table. The string table is a cache with a fixed size:
+	 * each string has exactly one slot and replaces the previous string in this slot, so the writer and the reader
+	 * need no maps and bounded memory, and the repeated values of a column are found at almost no cost.
+	 *
+	 * @param value the string
+	 *
+	 * @return the slot of the string
+	 */
+	/*package*/ static int slot(String value) {
+		int hash = value.hashCode();
+		return (hash ^ (hash >>> 14)) & (STRING_TABLE_SIZE - 1);
+	}
+
+	private BinaryFormat() {
+		// no instances
+	}
+
+}
@@ -24,6 +24,7 @@ public class Column {
 	
 	private String label;
 	private ColumnAlignment alignment;
+	private int maxWidth;
 //	private Map<String, Object> parameters = new HashMap<>();
 	
 	/**
@@ -55,6 +56,7 @@ public class Column {
 	public Column(Column column) {
 		this.label = column.label;
 		this.alignment = column.alignment;
+		this.maxWidth = column.maxWidth;
 //		this.parameters = new HashMap<>(column.parameters);
 	}
 
@@ -81,6 +83,23 @@ public class Column {
 		this.alignment = alignment;
 	}
 	
+	/**
+	 * @return the maximum width of the text in the column (<code>0</code> if the width is not limited)
+	 */
+	public int getMaxWidth() {
+		return maxWidth;
+	}
+	
+	/**
+	 * Sets the maximum width of the text in the column. Longer text is wrapped into multiple lines, 
+	 * preferably at spaces.
+	 * 
+	 * @param maxWidth the maximum width to set (<code>0</code> if the width should not be limited)
+	 */
+	public void setMaxWidth(int maxWidth) {
+		this.maxWidth = maxWidth;
+	}
+	
 	/**
 	 * Copies the given column.
 	 * 
@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds a {@link TreeTable} from multiple threads (see {@link TreeTable#concurrentBuilder(String...)}).
+ * <p>
+ * Rows are added to {@link Node}s, the handles of the rows while the tree is built. Adding a sub row is lock-free:
+ * the sub rows of a node are a chain which is extended by a single compare-and-set, so threads adding rows to different
+ * parents never contend and threads adding rows to the same parent only retry the compare-and-set.
+ * The sub rows of each parent keep the order in which they were added.
+ * <p>
+ * {@link #freeze()} converts the nodes into an immutable tree table (see {@link TreeTable#freeze()}), which can be read
+ * and rendered by multiple threads. All rows should be added before, i.e. the threads adding rows should have finished.
+ * Each node is sealed when it is converted, so a modification which races with {@link #freeze()} is either contained in
+ * the tree table or fails with an {@link IllegalStateException}, it is never lost.
+ *
+ * @author Dominik Glaser
+ */
+public final class ConcurrentTreeTableBuilder {
+
+	private static final VarHandle LAST_CHILD;
+	private static final VarHandle FROZEN;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			LAST_CHILD = lookup.findVarHandle(Node.class, "lastChild", Node.class); //$NON-NLS-1$
+			FROZEN = lookup.findVarHandle(ConcurrentTreeTableBuilder.class, "frozen", boolean.class); //$NON-NLS-1$
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Column[] columns;
+	private final Node root = new Node(null);
+	// the last sub row of a converted node, adding a sub row to it fails
+	private final Node sealed = new Node(null);
+	private volatile boolean frozen;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param columns the columns
+	 */
+	/*package*/ ConcurrentTreeTableBuilder(Column[] columns) {
+		this.columns = columns;
+	}
+
+	/**
+	 * Adds a row on the top level. This method may be called by multiple threads concurrently.
+	 *
+	 * @param cells the cells
+	 *
+	 * @return the node of the new row
+	 *
+	 * @throws IllegalStateException if the tree table is already frozen
+	 */
+	public Node addRow(Object... cells) {
+		return root.addRow(cells);
+	}
+
+	/**
+	 * Converts the added rows into an immutable tree table. The builder can not be used afterwards.
+	 *
+	 * @return the frozen tree table
+	 *
+	 * @throws IllegalStateException if the tree table is already frozen
+	 */
+	public TreeTable freeze() {
+		if (!FROZEN.compareAndSet(this, false, true)) {
+			throw new IllegalStateException("The tree table is already frozen"); //$NON-NLS-1$
+		}
+		TreeTable table = new TreeTable(columns);
+		// convert the nodes with an explicit stack to support arbitrary deep trees
+		ArrayDeque<Node> nodes = new ArrayDeque<>();
+		ArrayDeque<Row> rows = new ArrayDeque<>();
+		attachChildren(table, root, null, nodes, rows);
+		while (!nodes.isEmpty()) {
+			attachChildren(table, nodes.pop(), rows.pop(), nodes, rows);
+		}
+		table.freeze();
+		return table;
+	}
+
+	/**
+	 * Creates the rows for the sub rows of the given node and attaches them to the given parent row.
+	 *
+	 * @param table the tree table
+	 * @param node the node
+	 * @param parent the row of the node (<code>null</code> for the top level)
+	 * @param nodes the stack of the nodes to convert
+	 * @param rows the stack of the rows of these nodes
+	 */
+	private void attachChildren(TreeTable table, Node node, Row parent, ArrayDeque<Node> nodes, ArrayDeque<Row> rows) {
+		// the sub rows can not be extended afterwards
+		Node last = (Node) LAST_CHILD.getAndSet(node, sealed);
+		if (last == null) {
+			return;
+		}
+		// the chain starts with the last added sub row
+		int count = 0;
+		for (Node child = last; child != null; child = child.previousSibling) {
+			count++;
+		}
+		Node[] children = new Node[count];
+		for (Node child = last; child != null; child = child.previousSibling) {
+			children[--count] = child;
+		}
+		if (parent == null) {
+			table.initRows(children.length);
+		} else {
+			parent.initRows(children.length);
+		}
+		for (Node child : children) {
+			Row row = new Row(table, parent, columns, null);
+			row.adoptContent(child.content);
+			child.seal(row);
+			table.attach(row);
+			nodes.push(child);
+			rows.push(row);
+		}
+	}
+
+	/**
+	 * The handle of a row while the tree table is built. The methods of a node may be called by multiple threads concurrently.
+	 */
+	public final class Node {
+
+		private final Object[] content;
+		// the last added sub row, the sub rows are chained by their previous sibling
+		private volatile Node lastChild;
+		private Node previousSibling;
+		private Map<String, Object> parameters;
+		private Object data;
+		// whether the parameters and the data are converted
+		private boolean converted;
+
+		private Node(Object[] cells) {
+			if (cells != null && cells.length > 0) {
+				content = new Object[columns.length];
+				for (int i = 0; i < columns.length; i++) {
+					Object cell = i < cells.length ? cells[i] : null;
+					content[i] = cell != null ? cell : ""; //$NON-NLS-1$
+				}
+			} else {
+				content = null;
+			}
+		}
+
+		/**
+		 * Adds a sub row.
+		 *
+		 * @param cells the cells
+		 *
+		 * @return the node of the new row
+		 *
+		 * @throws IllegalStateException if the tree table is already frozen
+		 */
+		public Node addRow(Object... cells) {
+			Node child = new Node(cells);
+			Node last;
+			do {
+				last = lastChild;
+				// the node is converted by freeze() in the meantime
+				if (last == sealed) {
+					throw new IllegalStateException("The tree table is already frozen"); //$NON-NLS-1$
+				}
+				child.previousSibling = last;
+			} while (!LAST_CHILD.compareAndSet(this, last, child));
+			return child;
+		}
+
+		/**
+		 * Sets the value of the given parameter of the row.
+		 *
+		 * @param key the key of the parameter
+		 * @param value the value of the parameter
+		 *
+		 * @throws IllegalStateException if the tree table is already frozen
+		 */
+		public synchronized void setParameter(String key, Object value) {
+			checkNotConverted();
+			if (parameters == null) {
+				parameters = new HashMap<>();
+			}
+			parameters.put(key, value);
+		}
+
+		/**
+		 * Assigns the given data to the row.
+		 *
+		 * @param data the data
+		 *
+		 * @throws IllegalStateException if the tree table is already frozen
+		 */
+		public synchronized void setData(Object data) {
+			checkNotConverted();
+			this.data = data;
+		}
+
+		private void checkNotConverted() {
+			if (converted) {
+				throw new IllegalStateException("The tree table is already frozen"); //$NON-NLS-1$
+			}
+		}
+
+		/**
+		 * Copies the parameters and the data to the given row. They can not be modified afterwards.
+		 *
+		 * @param row the row of the node
+		 */
+		private synchronized void seal(Row row) {
+			converted = true;
+			if (parameters != null) {
+				row.getParameters().putAll(parameters);
+			}
+			if (data != null) {
+				row.setData(data);
+			}
+		}
+
+	}
+
+}
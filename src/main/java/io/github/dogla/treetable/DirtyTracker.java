@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects the modifications of a {@link TreeTable} since the last call of {@link #clear()},
+ * i.e. the changed rows, the changed columns and whether the structure (added, removed or sorted rows) changed.
+ * <p>
+ * A tracker is only notified while it is attached to the tree table (see {@link TreeTable#track()}),
+ * so tree tables without trackers do not pay for the tracking.
+ *
+ * @author Dominik Glaser
+ */
+/*package*/ final class DirtyTracker {
+
+	// rows are compared by equals: heap rows by identity, the views of a mapped tree table by their position
+	private final Set<Row> rows = new HashSet<>();
+	private final BitSet columns = new BitSet();
+	private boolean structureChanged;
+
+	/**
+	 * Marks the given row and the given range of columns as changed.
+	 *
+	 * @param row the row
+	 * @param fromColumn the index of the first changed column (inclusive)
+	 * @param toColumn the index of the last changed column (exclusive)
+	 */
+	/*package*/ void rowChanged(Row row, int fromColumn, int toColumn) {
+		rows.add(row);
+		columns.set(fromColumn, toColumn);
+	}
+
+	/**
+	 * Marks the structure as changed.
+	 */
+	/*package*/ void structureChanged() {
+		structureChanged = true;
+	}
+
+	/**
+	 * @param row the row
+	 *
+	 * @return <code>true</code> if the given row changed
+	 */
+	/*package*/ boolean isDirty(Row row) {
+		return rows.contains(row);
+	}
+
+	/**
+	 * @return the changed rows
+	 */
+	/*package*/ Set<Row> getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the indexes of the changed columns
+	 */
+	/*package*/ BitSet getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return <code>true</code> if rows were added, removed or sorted
+	 */
+	/*package*/ boolean isStructureChanged() {
+		return structureChanged;
+	}
+
+	/**
+	 * Forgets all modifications.
+	 */
+	/*package*/ void clear() {
+		rows.clear();
+		columns.clear();
+		structureChanged = false;
+	}
+
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.github.dogla.treetable.util.TextCells;
+
+/**
+ * Renders a {@link TreeTable} repeatedly (e.g. a live view in a terminal) and only recomputes what changed since the last rendering.
+ * <p>
+ * The renderer is attached to the tree table and records which rows were modified
+ * ({@link Row#setCellContent(int, Object)}, {@link Row#setParameter(String, Object)}, ...) and whether rows were added, removed or sorted.
+ * It caches the laid out cells and the rendered lines of each visible row and the column widths:
+ * <ul>
+ * <li>if only cells changed, only the modified rows are laid out again,</li>
+ * <li>if rows were added, removed or sorted, the rows are walked again, but only new rows and rows with a changed tree structure prefix are laid out again,</li>
+ * <li>the cached lines of a row are only written again if the row was laid out again or a column width changed.</li>
+ * </ul>
+ * The output is the same as {@link TreeTableToTextConverter#render(TreeTable, Appendable)} of the given converter.
+ * Changes of the column alignments, maximum widths and labels are detected, other changes of the converter require {@link #invalidate()}.
+ * <p>
+ * A renderer must be closed (see {@link #close()}) to detach it from the tree table when it is no longer used.
+ * The renderer is not thread safe.
+ *
+ * @author Dominik Glaser
+ */
+public class IncrementalTextRenderer implements AutoCloseable {
+
+	private final TreeTable treeTable;
+	private final TreeTableToTextConverter converter;
+	private DirtyTracker tracker;
+	// the visible rows in display order
+	private final List<Entry> entries = new ArrayList<>();
+	// rows are compared by equals: heap rows by identity, the views of a mapped tree table by their position
+	private Map<Row, Entry> entriesByRow = new HashMap<>();
+	// the configuration the entries were laid out with
+	private Column[] columns;
+	private ColumnAlignment[] alignments;
+	private int[] maxWidths;
+	private String[] labels;
+	private boolean tree;
+	private boolean multiLine;
+	private boolean lines;
+	// the number of rows per column and cell width, the width of a column is the largest width of any row (or of the label)
+	private int[][] counts;
+	private int[] labelWidths;
+	private int[] widths;
+	private boolean valid;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param treeTable the tree table
+	 * @param converter the converter defining the text representation
+	 */
+	public IncrementalTextRenderer(TreeTable treeTable, TreeTableToTextConverter converter) {
+		this.treeTable = Objects.requireNonNull(treeTable);
+		this.converter = Objects.requireNonNull(converter);
+		this.tracker = treeTable.track();
+	}
+
+	/**
+	 * @return the tree table
+	 */
+	public TreeTable getTreeTable() {
+		return treeTable;
+	}
+
+	/**
+	 * Updates the cached layout with the modifications of the tree table since the last refresh.
+	 * This is done by the render methods automatically.
+	 */
+	public void refresh() {
+		if (tracker == null) {
+			throw new IllegalStateException("The renderer is closed"); //$NON-NLS-1$
+		}
+		if (!valid || isConfigurationChanged()) {
+			reset();
+			update();
+		} else if (tracker.isStructureChanged()) {
+			if (treeTable.isTree() != tree) {
+				// the alignment of the first column depends on the tree structure
+				reset();
+			}
+			update();
+		} else if (!tracker.getColumns().isEmpty()) {
+			for (Row row : tracker.getRows()) {
+				Entry entry = entriesByRow.get(row);
+				if (entry != null) {
+					layout(entry);
+				}
+			}
+		}
+		tracker.clear();
+		valid = true;
+		updateWidths();
+	}
+
+	/**
+	 * Renders the text representation of the tree table to the given output.
+	 *
+	 * @param out the output to write to (e.g. a {@link java.io.Writer} or a {@link StringBuilder})
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	public void render(Appendable out) throws IOException {
+		refresh();
+		TextLayout frame = new TextLayout(columns, alignments, multiLine, 0);
+		frame.setWidths(widths);
+		converter.writeHeader(frame, out);
+		StringBuilder sb = null;
+		for (int i = 0; i < entries.size(); i++) {
+			Entry entry = entries.get(i);
+			if (entry.text == null) {
+				if (sb == null) {
+					sb = new StringBuilder();
+				}
+				sb.setLength(0);
+				entry.layout.setWidths(widths);
+				converter.writeRows(entry.layout, sb);
+				entry.text = sb.toString();
+			}
+			out.append(entry.text);
+		}
+		converter.writeFooter(frame, out);
+	}
+
+	/**
+	 * @return the text representation of the tree table
+	 *
+	 * @see #render(Appendable)
+	 */
+	public String toText() {
+		StringBuilder sb = new StringBuilder();
+		try {
+			render(sb);
+		} catch (IOException e) {
+			// a StringBuilder never throws an IOException
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Discards the cached layout, so all rows are laid out again on the next rendering
+	 * (e.g. after the tree lines or separators of the converter were changed).
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Detaches the renderer from the tree table and releases the cached layout.
+	 */
+	@Override
+	public void close() {
+		if (tracker != null) {
+			treeTable.untrack(tracker);
+			tracker = null;
+		}
+		entries.clear();
+		entriesByRow.clear();
+		valid = false;
+	}
+
+	/**
+	 * @return <code>true</code> if the configuration of the columns or of the converter changed since the last refresh
+	 */
+	private boolean isConfigurationChanged() {
+		Column[] current = treeTable.getColumns();
+		if (current != columns || converter.isMultiLine() != multiLine) {
+			return true;
+		}
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0 || !tree) {
+				if (columns[i].getAlignment() != alignments[i]) {
+					return true;
+				}
+			}
+			if (columns[i].getMaxWidth() != maxWidths[i] || !Objects.equals(columns[i].getLabel(), labels[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Discards all entries and takes over the current configuration.
+	 */
+	private void reset() {
+		entries.clear();
+		entriesByRow.clear();
+		columns = treeTable.getColumns();
+		tree = treeTable.isTree();
+		multiLine = converter.isMultiLine();
+		alignments = TreeTableToTextConverter.initAlignments(columns, tree);
+		maxWidths = new int[columns.length];
+		labels = new String[columns.length];
+		labelWidths = new int[columns.length];
+		counts = new int[columns.length][];
+		widths = new int[columns.length];
+		lines = multiLine;
+		for (int i = 0; i < columns.length; i++) {
+			maxWidths[i] = columns[i].getMaxWidth();
+			labels[i] = columns[i].getLabel();
+			labelWidths[i] = TextCells.width(labels[i]);
+			counts[i] = new int[16];
+			lines |= maxWidths[i] > 0;
+		}
+	}
+
+	/**
+	 * Walks through the visible rows and reuses the entries of rows which neither changed nor moved to another position in the tree.
+	 */
+	private void update() {
+		Map<Row, Entry> previous = entriesByRow;
+		Map<Row, Entry> current = new HashMap<>(previous.size());
+		entries.clear();
+		converter.walk(treeTable, tree, true, lines, (row, level, last, prefix, childPrefix) -> {
+			Entry entry = previous.remove(row);
+			if (entry == null) {
+				entry = new Entry(row);
+			}
+			if (entry.layout == null || tracker.isDirty(row) || !Objects.equals(prefix, entry.prefix) || !Objects.equals(childPrefix, entry.childPrefix)) {
+				entry.prefix = prefix;
+				entry.childPrefix = childPrefix;
+				layout(entry);
+			}
+			current.put(row, entry);
+			entries.add(entry);
+		});
+		// the remaining rows are not visible anymore
+		for (Entry entry : previous.values()) {
+			count(entry, -1);
+		}
+		entriesByRow = current;
+	}
+
+	/**
+	 * Lays out the cells of the given entry again.
+	 *
+	 * @param entry the entry
+	 */
+	private void layout(Entry entry) {
+		if (entry.layout != null) {
+			count(entry, -1);
+		}
+		TextLayout layout = new TextLayout(columns, alignments, multiLine, 1);
+		TreeTableToTextConverter.addRow(layout, entry.row, entry.prefix, entry.childPrefix, true);
+		entry.layout = layout;
+		entry.widths = layout.getWidths();
+		entry.text = null;
+		count(entry, 1);
+	}
+
+	/**
+	 * Adds the cell widths of the given entry to the counts or removes them.
+	 *
+	 * @param entry the entry
+	 * @param delta <code>1</code> to add the widths, <code>-1</code> to remove them
+	 */
+	private void count(Entry entry, int delta) {
+		for (int i = 0; i < columns.length; i++) {
+			int width = entry.widths[i];
+			if (width >= counts[i].length) {
+				counts[i] = Arrays.copyOf(counts[i], Math.max(width + 1, counts[i].length * 2));
+			}
+			counts[i][width] += delta;
+		}
+	}
+
+	/**
+	 * Updates the column widths from the counts, the cached lines of all rows are discarded if a width changed.
+	 */
+	private void updateWidths() {
+		boolean changed = false;
+		for (int i = 0; i < columns.length; i++) {
+			int[] c = counts[i];
+			int width = c.length - 1;
+			while (width > 0 && c[width] == 0) {
+				width--;
+			}
+			width = Math.max(width, labelWidths[i]);
+			if (width != widths[i]) {
+				widths[i] = width;
+				changed = true;
+			}
+		}
+		if (changed) {
+			for (int i = 0; i < entries.size(); i++) {
+				entries.get(i).text = null;
+			}
+		}
+	}
+
+	/**
+	 * The cached layout of a visible row.
+	 */
+	private static final class Entry {
+
+		private final Row row;
+		private String prefix;
+		private String childPrefix;
+		// the laid out cells of the row and their widths
+		private TextLayout layout;
+		private int[] widths;
+		// the rendered lines of the row or null if they must be written again
+		private String text;
+
+		private Entry(Row row) {
+			this.row = row;
+		}
+
+	}
+
+}
@@ -0,0 +1,419 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The memory-mapped file of a {@link MappedTreeTable} (see {@link MappedTreeTableWriter} for the layout).
+ * <p>
+ * The file is mapped in segments of 1 GB (a single mapping is limited to 2 GB). All values are decoded by absolute
+ * positions, so the file can be read by multiple threads without synchronization.
+ *
+ * @author Dominik Glaser
+ */
+/*package*/ final class MappedFile {
+
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+	private static final ColumnAlignment[] ALIGNMENTS = ColumnAlignment.values();
+
+	private final ByteBuffer[] segments;
+	private final long nodesOffset;
+	private final int columnCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param segments the mapped segments
+	 * @param nodesOffset the offset of the node table
+	 * @param columnCount the number of columns
+	 */
+	private MappedFile(ByteBuffer[] segments, long nodesOffset, int columnCount) {
+		this.segments = segments;
+		this.nodesOffset = nodesOffset;
+		this.columnCount = columnCount;
+	}
+
+	/**
+	 * Maps the given file and creates the tree table.
+	 *
+	 * @param path the path of the file
+	 *
+	 * @return the tree table
+	 *
+	 * @throws StreamCorruptedException if the file does not contain a tree table in the expected format
+	 * @throws IOException if the file can not be mapped
+	 */
+	/*package*/ static MappedTreeTable open(Path path) throws IOException {
+		ByteBuffer[] segments;
+		long size;
+		// the mappings stay valid after the channel is closed
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			size = channel.size();
+			if (size < BinaryFormat.MAPPED_HEADER_SIZE) {
+				throw new StreamCorruptedException("The file does not contain a tree table"); //$NON-NLS-1$
+			}
+			segments = new ByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for (int i = 0; i < segments.length; i++) {
+				long start = i * SEGMENT_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+			}
+		}
+		ByteBuffer header = segments[0];
+		if (header.getInt(0) != BinaryFormat.MAPPED_MAGIC) {
+			throw new StreamCorruptedException("The file does not contain a tree table"); //$NON-NLS-1$
+		}
+		int version = header.getInt(4);
+		if (version != BinaryFormat.VERSION) {
+			throw new StreamCorruptedException("Unsupported version: " + version); //$NON-NLS-1$
+		}
+		long nodesOffset = header.getLong(8);
+		long columnsOffset = header.getLong(16);
+		int rowCount = header.getInt(24);
+		int topLevelRowCount = header.getInt(28);
+		int height = header.getInt(32);
+		// the columns lie between the records and the node table, which ends with the file
+		if (rowCount < 0 || topLevelRowCount < 0 || topLevelRowCount > rowCount || height < 0
+				|| columnsOffset < BinaryFormat.MAPPED_HEADER_SIZE || columnsOffset >= nodesOffset
+				|| nodesOffset != size - (long) rowCount * BinaryFormat.NODE_SIZE) {
+			throw new StreamCorruptedException("Invalid header"); //$NON-NLS-1$
+		}
+		// the columns and the parameters of the tree table are decoded once
+		MappedFile reader = new MappedFile(segments, 0, 0);
+		try {
+			long position = columnsOffset;
+			long columnCount = reader.getVarLong(position);
+			// each column takes at least three bytes
+			if (columnCount < 0 || columnCount > (nodesOffset - columnsOffset) / 3) {
+				throw new StreamCorruptedException("Invalid column count: " + columnCount); //$NON-NLS-1$
+			}
+			Column[] columns = new Column[(int) columnCount];
+			position = reader.skipVarLong(position);
+			for (int i = 0; i < columns.length; i++) {
+				Object label = reader.readValue(position);
+				if (label != null && !(label instanceof String)) {
+					throw new StreamCorruptedException("Invalid column label: " + label); //$NON-NLS-1$
+				}
+				position = reader.skipValue(position);
+				int alignment = reader.get(position++) & 0xFF;
+				if (alignment > ALIGNMENTS.length) {
+					throw new StreamCorruptedException("Invalid column alignment: " + alignment); //$NON-NLS-1$
+				}
+				columns[i] = new Column((String) label, alignment > 0 ? ALIGNMENTS[alignment - 1] : null);
+				columns[i].setMaxWidth((int) reader.getVarLong(position));
+				position = reader.skipVarLong(position);
+			}
+			Map<String, Object> parameters = reader.readParameters(position);
+			MappedFile file = new MappedFile(segments, nodesOffset, columns.length);
+			return new MappedTreeTable(columns, parameters, file, rowCount, topLevelRowCount, height);
+		} catch (IndexOutOfBoundsException | ClassCastException | IllegalStateException e) {
+			// the columns or the parameters exceed the file or contain invalid values
+			StreamCorruptedException exception = new StreamCorruptedException("Invalid columns"); //$NON-NLS-1$
+			exception.initCause(e);
+			throw exception;
+		}
+	}
+
+	/**
+	 * @param node the index of the row
+	 *
+	 * @return the index of the first sub row of the given row
+	 */
+	/*package*/ int firstChild(int node) {
+		return getInt(nodesOffset + (long) node * BinaryFormat.NODE_SIZE);
+	}
+
+	/**
+	 * @param node the index of the row
+	 *
+	 * @return the number of sub rows of the given row
+	 */
+	/*package*/ int childCount(int node) {
+		return getInt(nodesOffset + (long) node * BinaryFormat.NODE_SIZE + 4);
+	}
+
+	private long record(int node) {
+		return getLong(nodesOffset + (long) node * BinaryFormat.NODE_SIZE + 8);
+	}
+
+	/**
+	 * @param node the index of the row
+	 *
+	 * @return the flags of the given row
+	 */
+	/*package*/ int flags(int node) {
+		return get(record(node));
+	}
+
+	/**
+	 * Determines the positions of all cells in a single scan (the cells are skipped, not decoded).
+	 *
+	 * @param node the index of the row
+	 *
+	 * @return the positions of the cells (see {@link #cell(long)})
+	 */
+	/*package*/ long[] cellPositions(int node) {
+		long[] positions = new long[columnCount];
+		long position = record(node) + 1;
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = position;
+			position = skipValue(position);
+		}
+		return positions;
+	}
+
+	/**
+	 * Decodes the content of a single cell.
+	 *
+	 * @param position the position of the cell (see {@link #cellPositions(int)})
+	 *
+	 * @return the cell content
+	 */
+	/*package*/ Object cell(long position) {
+		return readValue(position);
+	}
+
+	/**
+	 * Decodes the contents of all cells.
+	 *
+	 * @param node the index of the row
+	 *
+	 * @return the cell contents
+	 */
+	/*package*/ Object[] cells(int node) {
+		Object[] content = new Object[columnCount];
+		long position = record(node) + 1;
+		for (int i = 0; i < content.length; i++) {
+			content[i] = readValue(position);
+			position = skipValue(position);
+		}
+		return content;
+	}
+
+	/**
+	 * @param node the index of the row
+	 *
+	 * @return the parameters of the given row (<code>null</code> if the row has no parameters)
+	 */
+	/*package*/ Map<String, Object> parameters(int node) {
+		long position = record(node);
+		if ((get(position) & BinaryFormat.FLAG_PARAMETERS) == 0) {
+			return null;
+		}
+		return readParameters(skipCells(position + 1));
+	}
+
+	/**
+	 * @param node the index of the row
+	 *
+	 * @return the data of the given row
+	 */
+	/*package*/ Object data(int node) {
+		long position = record(node);
+		int flags = get(position);
+		if ((flags & BinaryFormat.FLAG_DATA) == 0) {
+			return null;
+		}
+		position = skipCells(position + 1);
+		if ((flags & BinaryFormat.FLAG_PARAMETERS) != 0) {
+			long count = getVarLong(position);
+			position = skipVarLong(position);
+			for (long i = 0; i < 2 * count; i++) {
+				position = skipValue(position);
+			}
+		}
+		return readValue(position);
+	}
+
+	private long skipCells(long position) {
+		for (int i = 0; i < columnCount; i++) {
+			position = skipValue(position);
+		}
+		return position;
+	}
+
+	private Map<String, Object> readParameters(long position) {
+		long count = getVarLong(position);
+		position = skipVarLong(position);
+		Map<String, Object> parameters = new HashMap<>();
+		for (long i = 0; i < count; i++) {
+			String key = (String) readValue(position);
+			position = skipValue(position);
+			parameters.put(key, readValue(position));
+			position = skipValue(position);
+		}
+		return parameters;
+	}
+
+	/**
+	 * Decodes the value at the given position.
+	 *
+	 * @param position the position of the type tag
+	 *
+	 * @return the value
+	 */
+	private Object readValue(long position) {
+		int tag = get(position++);
+		switch (tag) {
+			case BinaryFormat.TAG_NULL:
+				return null;
+			case BinaryFormat.TAG_EMPTY_STRING:
+				return ""; //$NON-NLS-1$
+			case BinaryFormat.TAG_STRING:
+				return readString(position);
+			case BinaryFormat.TAG_STRING_OFFSET:
+				return readString(getVarLong(position));
+			case BinaryFormat.TAG_TRUE:
+				return Boolean.TRUE;
+			case BinaryFormat.TAG_FALSE:
+				return Boolean.FALSE;
+			case BinaryFormat.TAG_INT:
+				return Integer.valueOf((int) zigZag(getVarLong(position)));
+			case BinaryFormat.TAG_LONG:
+				return Long.valueOf(zigZag(getVarLong(position)));
+			case BinaryFormat.TAG_DOUBLE:
+				return Double.valueOf(Double.longBitsToDouble(getLong(position)));
+			case BinaryFormat.TAG_FLOAT:
+				return Float.valueOf(Float.intBitsToFloat(getInt(position)));
+			case BinaryFormat.TAG_SHORT:
+				return Short.valueOf((short) zigZag(getVarLong(position)));
+			case BinaryFormat.TAG_BYTE:
+				return Byte.valueOf(get(position));
+			case BinaryFormat.TAG_CHAR:
+				return Character.valueOf((char) getVarLong(position));
+			default:
+				throw invalidTag(tag, position - 1);
+		}
+	}
+
+	/**
+	 * Skips the value at the given position.
+	 *
+	 * @param position the position of the type tag
+	 *
+	 * @return the position after the value
+	 */
+	private long skipValue(long position) {
+		int tag = get(position++);
+		switch (tag) {
+			case BinaryFormat.TAG_NULL:
+			case BinaryFormat.TAG_EMPTY_STRING:
+			case BinaryFormat.TAG_TRUE:
+			case BinaryFormat.TAG_FALSE:
+				return position;
+			case BinaryFormat.TAG_STRING:
+				long length = getVarLong(position);
+				return skipVarLong(position) + length;
+			case BinaryFormat.TAG_STRING_OFFSET:
+			case BinaryFormat.TAG_INT:
+			case BinaryFormat.TAG_LONG:
+			case BinaryFormat.TAG_SHORT:
+			case BinaryFormat.TAG_CHAR:
+				return skipVarLong(position);
+			case BinaryFormat.TAG_DOUBLE:
+				return position + 8;
+			case BinaryFormat.TAG_FLOAT:
+				return position + 4;
+			case BinaryFormat.TAG_BYTE:
+				return position + 1;
+			default:
+				throw invalidTag(tag, position - 1);
+		}
+	}
+
+	private static IllegalStateException invalidTag(int tag, long position) {
+		return new IllegalStateException("Invalid type tag " + tag + " at offset " + position); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Decodes the string at the given position.
+	 *
+	 * @param position the position of the length of the string
+	 *
+	 * @return the string
+	 */
+	private String readString(long position) {
+		long length = getVarLong(position);
+		position = skipVarLong(position);
+		ByteBuffer last = segments[segments.length - 1];
+		if (length < 0 || length > Integer.MAX_VALUE || position + length > (segments.length - 1) * SEGMENT_SIZE + last.limit()) {
+			throw new IllegalStateException("Invalid string length " + length + " at offset " + position); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		byte[] bytes = new byte[(int) length];
+		int local = (int) (position & SEGMENT_MASK);
+		ByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+		if (local + bytes.length <= segment.limit()) {
+			segment.duplicate().position(local).get(bytes);
+		} else {
+			// the string continues in the next segment
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = get(position + i);
+			}
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static long zigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private long getVarLong(long position) {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = get(position++);
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+
+	private long skipVarLong(long position) {
+		while ((get(position++) & 0x80) != 0) {
+			// skip the continued bytes
+		}
+		return position;
+	}
+
+	private byte get(long position) {
+		return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+	}
+
+	private int getInt(long position) {
+		int local = (int) (position & SEGMENT_MASK);
+		ByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+		if (local + 4 <= segment.limit()) {
+			return segment.getInt(local);
+		}
+		return ((get(position) & 0xFF) << 24) | ((get(position + 1) & 0xFF) << 16)
+				| ((get(position + 2) & 0xFF) << 8) | (get(position + 3) & 0xFF);
+	}
+
+	private long getLong(long position) {
+		return ((long) getInt(position) << 32) | (getInt(position + 4) & 0xFFFFFFFFL);
+	}
+
+}
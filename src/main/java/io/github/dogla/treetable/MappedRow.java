@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A row of a {@link MappedTreeTable}, i.e. a view of a row in the memory-mapped file.
+ * <p>
+ * The view only knows the index of the row in the node table of the file (and its parent row),
+ * the cells, the parameters and the data are decoded on each access. The positions of the cells are determined once
+ * per view, so reading all cells of a row takes linear time in the number of columns.
+ *
+ * @author Dominik Glaser
+ */
+/*package*/ final class MappedRow extends Row {
+
+	private final MappedTreeTable table;
+	private final int node;
+	// the positions of the cells in the file (determined on the first access to a cell)
+	private volatile long[] cellPositions;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param table the tree table
+	 * @param parent the parent row (<code>null</code> for a row on the top level)
+	 * @param node the index of the row in the node table
+	 */
+	/*package*/ MappedRow(MappedTreeTable table, MappedRow parent, int node) {
+		super(table, parent, table.getColumns(), null);
+		this.table = table;
+		this.node = node;
+	}
+
+	/**
+	 * Returns a view of the given consecutive rows.
+	 *
+	 * @param table the tree table
+	 * @param parent the parent row (<code>null</code> for the rows on the top level)
+	 * @param first the index of the first row in the node table
+	 * @param count the number of rows
+	 *
+	 * @return the rows
+	 */
+	/*package*/ static List<Row> rows(MappedTreeTable table, MappedRow parent, int first, int count) {
+		return new RowList(table, parent, first, count);
+	}
+
+	@Override
+	public Object getCellContent(int columnIndex) {
+		Objects.checkIndex(columnIndex, table.getColumns().length);
+		MappedFile file = table.file();
+		long[] positions = cellPositions;
+		if (positions == null) {
+			positions = file.cellPositions(node);
+			cellPositions = positions;
+		}
+		return file.cell(positions[columnIndex]);
+	}
+
+	@Override
+	public Row[] getRows() {
+		return rows().toArray(new Row[getRowCount()]);
+	}
+
+	@Override
+	public boolean hasRows() {
+		return getRowCount() > 0;
+	}
+
+	@Override
+	public int getRowCount() {
+		return table.file().childCount(node);
+	}
+
+	@Override
+	public Row getRow(int index) {
+		Objects.checkIndex(index, getRowCount());
+		return new MappedRow(table, this, table.file().firstChild(node) + index);
+	}
+
+	@Override
+	public List<Row> rows() {
+		MappedFile file = table.file();
+		return new RowList(table, this, file.firstChild(node), file.childCount(node));
+	}
+
+	@Override
+	public Map<String, Object> getParameters() {
+		Map<String, Object> parameters = table.file().parameters(node);
+		return parameters != null ? Collections.unmodifiableMap(parameters) : Collections.emptyMap();
+	}
+
+	@Override
+	public Object getParameter(String key) {
+		return hasParameters() ? table.file().parameters(node).get(key) : null;
+	}
+
+	@Override
+	/*package*/ boolean hasParameters() {
+		return (table.file().flags(node) & BinaryFormat.FLAG_PARAMETERS) != 0;
+	}
+
+	@Override
+	public Object getData() {
+		return table.file().data(node);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(table) + node;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof MappedRow)) {
+			return false;
+		}
+		MappedRow other = (MappedRow) obj;
+		return table == other.table && node == other.node;
+	}
+
+	/**
+	 * The view of consecutive rows.
+	 */
+	private static final class RowList extends AbstractList<Row> implements RandomAccess {
+
+		private final MappedTreeTable table;
+		private final MappedRow parent;
+		private final int first;
+		private final int count;
+
+		private RowList(MappedTreeTable table, MappedRow parent, int first, int count) {
+			this.table = table;
+			this.parent = parent;
+			this.first = first;
+			this.count = count;
+		}
+
+		@Override
+		public Row get(int index) {
+			Objects.checkIndex(index, count);
+			return new MappedRow(table, parent, first + index);
+		}
+
+		@Override
+		public int size() {
+			return count;
+		}
+
+	}
+
+}
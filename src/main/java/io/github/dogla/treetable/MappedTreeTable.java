@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A read-only tree table whose rows are views of a memory-mapped file.
+ * <p>
+ * The file is written by {@link #write(TreeTable, Path)} and mapped by {@link #open(Path)}. Opening a file only reads
+ * its header, the columns and the parameters of the tree table, so it takes constant time independent of the number
+ * of rows. The rows are created on access (e.g. by {@link #getRow(int)}) as small views, which know the position
+ * of the row in the file only, and the cells are decoded on each call of {@link Row#getCellContent(int)}.
+ * Walking, streaming and rendering run directly on the mapping, and multiple processes mapping the same file share
+ * the pages of the file in the page cache of the operating system.
+ * <p>
+ * A mapped tree table is frozen (see {@link #freeze()}), so it can be read by multiple threads and all modifications
+ * throw an {@link UnsupportedOperationException}. Use {@link #copy()} to load a modifiable tree table into the heap.
+ * As the rows are views, each access creates a new row: rows are equal if they are
+ * views of the same row of the same tree table, but not identical. The mapping is released when the tree table
+ * and all its rows are garbage collected.
+ *
+ * @author Dominik Glaser
+ */
+public final class MappedTreeTable extends TreeTable {
+
+	private final MappedFile file;
+	private final int rowCount;
+	private final int topLevelRowCount;
+	private final int height;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param columns the columns
+	 * @param parameters the parameters of the tree table
+	 * @param file the file
+	 * @param rowCount the number of all rows
+	 * @param topLevelRowCount the number of rows on the top level
+	 * @param height the height of the tree
+	 */
+	/*package*/ MappedTreeTable(Column[] columns, Map<String, Object> parameters, MappedFile file, int rowCount, int topLevelRowCount, int height) {
+		super(columns);
+		this.file = file;
+		this.rowCount = rowCount;
+		this.topLevelRowCount = topLevelRowCount;
+		this.height = height;
+		getParameters().putAll(parameters);
+		freeze();
+	}
+
+	/**
+	 * Writes the given tree table (with the parameters and the data of all rows) to a file, which can be
+	 * mapped by {@link #open(Path)}. The supported values are the same as the ones of the {@link TreeTableBinaryWriter}.
+	 *
+	 * @param treeTable the tree table
+	 * @param path the path of the file (replaced if it exists)
+	 *
+	 * @throws IOException if the file can not be written
+	 * @throws IllegalArgumentException if a cell, a parameter or the data of a row has an unsupported type
+	 *         (an existing file is kept)
+	 */
+	public static void write(TreeTable treeTable, Path path) throws IOException {
+		MappedTreeTableWriter.write(treeTable, path);
+	}
+
+	/**
+	 * Maps the given file, which was written by {@link #write(TreeTable, Path)}.
+	 *
+	 * @param path the path of the file
+	 *
+	 * @return the mapped tree table
+	 *
+	 * @throws StreamCorruptedException if the file does not contain a tree table in the expected format
+	 * @throws IOException if the file can not be mapped
+	 */
+	public static MappedTreeTable open(Path path) throws IOException {
+		return MappedFile.open(path);
+	}
+
+	/**
+	 * @return the file of the tree table
+	 */
+	/*package*/ MappedFile file() {
+		return file;
+	}
+
+	/**
+	 * @return the number of all rows of the tree table
+	 */
+	public int getTotalRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public Row[] getRows() {
+		return rows().toArray(new Row[topLevelRowCount]);
+	}
+
+	@Override
+	public int getRowCount() {
+		return topLevelRowCount;
+	}
+
+	@Override
+	public Row getRow(int index) {
+		Objects.checkIndex(index, topLevelRowCount);
+		return new MappedRow(this, null, index);
+	}
+
+	@Override
+	public List<Row> rows() {
+		return MappedRow.rows(this, null, 0, topLevelRowCount);
+	}
+
+	@Override
+	public boolean hasRows() {
+		return topLevelRowCount > 0;
+	}
+
+	@Override
+	public boolean isTree() {
+		return height > 1;
+	}
+
+	@Override
+	public int depth() {
+		return topLevelRowCount > 0 ? 1 : 0;
+	}
+
+	@Override
+	public int height() {
+		return height;
+	}
+
+	/**
+	 * Loads all rows into the given modifiable tree table in the heap (see {@link #copy()} and {@link TreeTable#TreeTable(TreeTable)}).
+	 *
+	 * @param copy the copy of this tree table
+	 */
+	@Override
+	/*package*/ void copyRows(TreeTable copy) {
+		// the rows are numbered level by level, so each parent is created before its sub rows
+		Row[] rows = new Row[rowCount];
+		for (int node = 0; node < rowCount; node++) {
+			if (node < topLevelRowCount) {
+				rows[node] = copyRow(copy, null, node);
+			}
+			int childCount = file.childCount(node);
+			if (childCount > 0) {
+				rows[node].initRows(childCount);
+				int firstChild = file.firstChild(node);
+				for (int i = 0; i < childCount; i++) {
+					rows[firstChild + i] = copyRow(copy, rows[node], firstChild + i);
+				}
+			}
+			// the row is referenced by its parent from now on
+			rows[node] = null;
+		}
+	}
+
+	private Row copyRow(TreeTable copy, Row parent, int node) {
+		Row row = new Row(copy, parent, copy.getColumns(), null);
+		row.adoptContent(file.cells(node));
+		Map<String, Object> parameters = file.parameters(node);
+		if (parameters != null) {
+			row.getParameters().putAll(parameters);
+		}
+		Object data = file.data(node);
+		if (data != null) {
+			row.setData(data);
+		}
+		copy.attach(row);
+		return row;
+	}
+
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes the file of a {@link MappedTreeTable}.
+ * <p>
+ * The file consists of
+ * <ul>
+ * <li>a header with a fixed size (the magic number, the version, the offsets of the node table and of the columns,
+ * the number of rows, the number of rows on the top level and the height of the tree),</li>
+ * <li>the records of the rows (the flags, the cells, the parameters and the data like in the format of the
+ * {@link TreeTableBinaryWriter}),</li>
+ * <li>the columns and the parameters of the tree table and</li>
+ * <li>the node table with an entry of a fixed size for each row (the index of its first sub row, the number of its sub rows
+ * and the offset of its record).</li>
+ * </ul>
+ * The rows are numbered level by level, so the sub rows of each row are consecutive in the node table and each row
+ * can be found in constant time. Repeated strings are written as references to the offset of their first occurrence.
+ * <p>
+ * The tree is walked once: the node table is collected in a temporary file (if it exceeds its buffer) and appended
+ * after the columns. The file is written to a temporary file in the same directory, which replaces the file at once,
+ * so tree tables which map the replaced file are not affected.
+ *
+ * @author Dominik Glaser
+ */
+/*package*/ final class MappedTreeTableWriter extends TreeTableBinaryWriter {
+
+	// shorter strings are not shared, the reference would not be shorter than the string
+	private static final int MIN_SHARED_LENGTH = 4;
+
+	private final FileChannel channel;
+	private final Path directory;
+	private final ByteBuffer nodes = ByteBuffer.allocate(1 << 16);
+	// the entries of the node table which exceed the buffer (created on demand)
+	private Path nodesPath;
+	private FileChannel nodesChannel;
+	private final String[] strings = new String[BinaryFormat.STRING_TABLE_SIZE];
+	private final long[] offsets = new long[BinaryFormat.STRING_TABLE_SIZE];
+
+	/**
+	 * Constructor.
+	 *
+	 * @param channel the channel positioned at the given offset
+	 * @param offset the offset of the first record
+	 * @param directory the directory of the temporary files
+	 */
+	private MappedTreeTableWriter(FileChannel channel, long offset, Path directory) {
+		super(Channels.newOutputStream(channel), offset);
+		this.channel = channel;
+		this.directory = directory;
+	}
+
+	/**
+	 * Writes the given tree table to the given file.
+	 *
+	 * @param treeTable the tree table
+	 * @param path the path of the file (replaced at once if it exists)
+	 *
+	 * @throws IOException if the file can not be written
+	 * @throws IllegalArgumentException if a cell, a parameter or the data of a row has an unsupported type
+	 */
+	/*package*/ static void write(TreeTable treeTable, Path path) throws IOException {
+		Path directory = path.toAbsolutePath().getParent();
+		// the temporary file is created like the file itself (and not with the restricted permissions of a temporary file)
+		Path temporary = path.resolveSibling(path.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			MappedTreeTableWriter writer = null;
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+				channel.position(BinaryFormat.MAPPED_HEADER_SIZE);
+				writer = new MappedTreeTableWriter(channel, BinaryFormat.MAPPED_HEADER_SIZE, directory);
+				writer.writeFile(treeTable);
+			} finally {
+				if (writer != null) {
+					writer.deleteNodes();
+				}
+			}
+			Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private void writeFile(TreeTable treeTable) throws IOException {
+		int columnCount = treeTable.getColumns().length;
+		// the rows whose sub rows are written next (rows without sub rows are not queued)
+		ArrayDeque<RowContainer> parents = new ArrayDeque<>();
+		parents.add(treeTable);
+		// the number of the rows numbered so far
+		long count = treeTable.getRowCount();
+		while (!parents.isEmpty()) {
+			RowContainer parent = parents.poll();
+			int rowCount = parent.getRowCount();
+			for (int i = 0; i < rowCount; i++) {
+				Row row = parent.getRow(i);
+				int childCount = row.getRowCount();
+				if (count + childCount > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException("Too many rows: " + (count + childCount)); //$NON-NLS-1$
+				}
+				writeNode(childCount > 0 ? (int) count : 0, childCount, offset());
+				writeRecord(row, columnCount);
+				if (childCount > 0) {
+					count += childCount;
+					parents.add(row);
+				}
+			}
+		}
+		long columnsOffset = offset();
+		writeColumns(treeTable);
+		flush();
+		long nodesOffset = offset();
+		appendNodes(nodesOffset);
+		ByteBuffer header = ByteBuffer.allocate(BinaryFormat.MAPPED_HEADER_SIZE);
+		header.putInt(BinaryFormat.MAPPED_MAGIC);
+		header.putInt(BinaryFormat.VERSION);
+		header.putLong(nodesOffset);
+		header.putLong(columnsOffset);
+		header.putInt((int) count);
+		header.putInt(treeTable.getRowCount());
+		header.putInt(treeTable.height());
+		header.flip();
+		writeFully(header, 0);
+	}
+
+	private void writeNode(int firstChild, int childCount, long recordOffset) throws IOException {
+		if (nodes.remaining() < BinaryFormat.NODE_SIZE) {
+			if (nodesChannel == null) {
+				nodesPath = Files.createTempFile(directory, "nodes", ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+				nodesChannel = FileChannel.open(nodesPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			}
+			nodes.flip();
+			while (nodes.hasRemaining()) {
+				nodesChannel.write(nodes);
+			}
+			nodes.clear();
+		}
+		nodes.putInt(firstChild).putInt(childCount).putLong(recordOffset);
+	}
+
+	/**
+	 * Appends the node table to the file.
+	 *
+	 * @param nodesOffset the offset of the node table, i.e. the end of the file
+	 *
+	 * @throws IOException if the file can not be written
+	 */
+	private void appendNodes(long nodesOffset) throws IOException {
+		long position = nodesOffset;
+		if (nodesChannel != null) {
+			ByteBuffer buffered = ByteBuffer.allocate(nodes.capacity());
+			nodesChannel.position(0);
+			while (nodesChannel.read(buffered) > 0) {
+				buffered.flip();
+				position += writeFully(buffered, position);
+				buffered.clear();
+			}
+		}
+		nodes.flip();
+		writeFully(nodes, position);
+	}
+
+	private void deleteNodes() throws IOException {
+		if (nodesChannel != null) {
+			nodesChannel.close();
+			Files.deleteIfExists(nodesPath);
+		}
+	}
+
+	private int writeFully(ByteBuffer buffer, long offset) throws IOException {
+		int length = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, offset + length - buffer.remaining());
+		}
+		return length;
+	}
+
+	@Override
+	/*package*/ void writeString(String value) throws IOException {
+		int length = value.length();
+		if (length == 0) {
+			writeByte(BinaryFormat.TAG_EMPTY_STRING);
+			return;
+		}
+		boolean shared = length >= MIN_SHARED_LENGTH && length <= BinaryFormat.MAX_SHARED_LENGTH;
+		int slot = 0;
+		if (shared) {
+			slot = BinaryFormat.slot(value);
+			if (value.equals(strings[slot])) {
+				writeByte(BinaryFormat.TAG_STRING_OFFSET);
+				writeVarLong(offsets[slot]);
+				return;
+			}
+		}
+		writeByte(BinaryFormat.TAG_STRING);
+		if (shared) {
+			strings[slot] = value;
+			offsets[slot] = offset();
+		}
+		writeUTF8(value);
+	}
+
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The parameters of a {@link Row} or a {@link TreeTable}, which notify the owner about each modification
+ * (including the modifications through the entry set and its iterator) and reject modifications of frozen rows and tree tables.
+ *
+ * @author Dominik Glaser
+ */
+/*package*/ final class ParameterMap extends AbstractMap<String, Object> {
+
+	// the owner (either the row or the tree table)
+	private final Row row;
+	private final TreeTable treeTable;
+	private final HashMap<String, Object> map;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param row the row
+	 * @param parameters the initial parameters
+	 */
+	/*package*/ ParameterMap(Row row, Map<String, Object> parameters) {
+		this(row, null, parameters);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param treeTable the tree table
+	 * @param parameters the initial parameters
+	 */
+	/*package*/ ParameterMap(TreeTable treeTable, Map<String, Object> parameters) {
+		this(null, treeTable, parameters);
+	}
+
+	private ParameterMap(Row row, TreeTable treeTable, Map<String, Object> parameters) {
+		this.row = row;
+		this.treeTable = treeTable;
+		this.map = parameters != null ? new HashMap<>(parameters) : new HashMap<>();
+	}
+
+	private void checkModifiable() {
+		if (row != null) {
+			row.checkModifiable();
+		} else {
+			treeTable.checkModifiable();
+		}
+	}
+
+	private void parameterChanged(String key, Object oldValue, Object newValue) {
+		if (row != null) {
+			row.parameterChanged(key, oldValue, newValue);
+		} else {
+			treeTable.parameterChanged(key, oldValue, newValue);
+		}
+	}
+
+	@Override
+	public Object get(Object key) {
+		return map.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return map.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		checkModifiable();
+		Object oldValue = map.put(key, value);
+		parameterChanged(key, oldValue, value);
+		return oldValue;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		checkModifiable();
+		if (!map.containsKey(key)) {
+			return null;
+		}
+		Object oldValue = map.remove(key);
+		parameterChanged((String) key, oldValue, null);
+		return oldValue;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<>() {
+
+			@Override
+			public int size() {
+				return map.size();
+			}
+
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				Iterator<Entry<String, Object>> iterator = map.entrySet().iterator();
+				return new Iterator<>() {
+
+					private Entry<String, Object> current;
+
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+
+					@Override
+					public Entry<String, Object> next() {
+						current = iterator.next();
+						return new ParameterEntry(current);
+					}
+
+					@Override
+					public void remove() {
+						checkModifiable();
+						iterator.remove();
+						parameterChanged(current.getKey(), current.getValue(), null);
+					}
+
+				};
+			}
+
+		};
+	}
+
+	/**
+	 * An entry of the parameters, which notifies the owner if its value is set.
+	 */
+	private final class ParameterEntry extends SimpleEntry<String, Object> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Entry<String, Object> entry;
+
+		private ParameterEntry(Entry<String, Object> entry) {
+			super(entry);
+			this.entry = entry;
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			checkModifiable();
+			Object oldValue = entry.setValue(value);
+			super.setValue(value);
+			parameterChanged(getKey(), oldValue, value);
+			return oldValue;
+		}
+
+	}
+
+}
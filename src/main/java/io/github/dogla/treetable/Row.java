@@ -15,51 +15,83 @@
  */
 package io.github.dogla.treetable;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import io.github.dogla.treetable.util.RowSpliterator;
 import io.github.dogla.treetable.util.RowVisitor;
 import io.github.dogla.treetable.util.RowWalker;
 
 /**
  * The bean indentifying a row of the {@link TreeTable} structure.
+ * <p>
+ * The cells are stored in an array indexed by the position of the column. Compared to a 
+ * <code>HashMap&lt;Column, Object&gt;</code> this saves about 36 bytes per cell (the map entry and its bucket) 
+ * plus the map itself, e.g. with 10 columns about 56 instead of 448 bytes per row (compressed oops).
+ * <p>
+ * The cells, the sub rows and the parameters are allocated on first write only. Most rows of a tree are leaves 
+ * without parameters, so this saves the empty <code>ArrayList</code> (24 bytes) and the empty 
+ * <code>HashMap</code> (48 bytes) for each of them.
  *
  * @author Dominik Glaser
  */
 public class Row implements RowContainer {
 	
+	private static final Row[] NO_ROWS = new Row[0];
+	
+	private TreeTable table;
 	private Column[] columns;
-	private Map<Column, Object> content = new HashMap<>();
-	private ArrayList<Row> rows = new ArrayList<>();
+	private Object[] content;
+	private ArrayList<Row> rows;
 	private Row parent;
-	private Map<String, Object> parameters = new HashMap<>();
+	private int depth;
+	private Map<String, Object> parameters;
 	private Object data;
+	// the frozen copy of this row in the last snapshot (null if the row or one of its sub rows was modified since)
+	private Row snapshot;
+	// the loading state of the sub rows (null if the sub rows are not loaded lazily)
+	private RowLoader.LazyRows lazy;
 
 	/**
 	 * Constructor.
 	 *
+	 * @param table the tree table
 	 * @param columns the columns
 	 * @param cells the cells
 	 */
-	/*package*/ Row(Column[] columns, Object[] cells) {
-		this(null, columns, cells);
+	/*package*/ Row(TreeTable table, Column[] columns, Object[] cells) {
+		this(table, null, columns, cells);
 	}
 	
 	/**
 	 * Constructor.
 	 *
+	 * @param table the tree table
 	 * @param parent the parent row
 	 * @param columns the columns
 	 * @param cells the cells
 	 */
-	/*package*/ Row(Row parent, Column[] columns, Object[] cells) {
+	/*package*/ Row(TreeTable table, Row parent, Column[] columns, Object[] cells) {
+		this.table = table;
 		this.columns = columns;
 		this.parent = parent;
+		this.depth = parent != null ? parent.depth + 1 : 1;
+		if (cells != null && cells.length > 0) {
+			initContent(cells);
+		}
+	}
+	
+	private void initContent(Object[] cells) {
+		this.content = new Object[columns.length];
 		for (int i = 0; i < columns.length; i++) {
-			Column column = columns[i];
 			Object cellContent = ""; //$NON-NLS-1$
 			if (cells != null && i < cells.length) {
 				Object cell = cells[i];
@@ -67,17 +99,40 @@ public class Row implements RowContainer {
 					cellContent = cell;
 				}
 			}
-			setCellContent(column, cellContent);
+			content[i] = cellContent;
 		}
 	}
 
+	/**
+	 * Takes over the given cells without copying them (used by the {@link TreeTableBuilder}).
+	 * 
+	 * @param cells the cells (one for each column, without <code>null</code> values)
+	 */
+	/*package*/ void adoptContent(Object[] cells) {
+		this.content = cells;
+	}
+
 	/**
 	 * @param column the column
 	 * 
-	 * @return the cell content of the given column
+	 * @return the cell content of the given column or <code>null</code> if the column is not part of the row
 	 */
 	public Object getCellContent(Column column) {
-		return content.get(column);
+		int index = indexOf(column);
+		return index >= 0 ? getCellContent(index) : null;
+	}
+
+	/**
+	 * @param columnIndex the index of the column
+	 * 
+	 * @return the cell content of the column with the given index
+	 */
+	public Object getCellContent(int columnIndex) {
+		if (content == null) {
+			Objects.checkIndex(columnIndex, columns.length);
+			return ""; //$NON-NLS-1$
+		}
+		return content[columnIndex];
 	}
 
 	/**
@@ -85,35 +140,298 @@ public class Row implements RowContainer {
 	 * 
 	 * @param column the column
 	 * @param cellContent the cell content
+	 * 
+	 * @throws IllegalArgumentException if the column is not part of the row
 	 */
 	public void setCellContent(Column column, Object cellContent) {
-		content.put(column, cellContent);
+		int index = indexOf(column);
+		if (index < 0) {
+			throw new IllegalArgumentException("Unknown column: " + column); //$NON-NLS-1$
+		}
+		setCellContent(index, cellContent);
+	}
+
+	/**
+	 * Sets the cell content of the column with the given index.
+	 * 
+	 * @param columnIndex the index of the column
+	 * @param cellContent the cell content
+	 */
+	public void setCellContent(int columnIndex, Object cellContent) {
+		checkModifiable();
+		if (content == null) {
+			initContent(null);
+		}
+		Object oldContent = content[columnIndex];
+		content[columnIndex] = cellContent;
+		if (table != null) {
+			table.cellChanged(this, columnIndex, oldContent, cellContent);
+		}
+	}
+	
+	/**
+	 * @param column the column
+	 * 
+	 * @return the index of the given column or <code>-1</code> if the column is not part of the row
+	 */
+	private int indexOf(Column column) {
+		// columns are usually shared, so try the cheap identity check first
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i] == column) {
+				return i;
+			}
+		}
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i].equals(column)) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	@Override
 	public Row addRow(Object... cells) {
-		Row child = new Row(this, columns, cells);
+		checkModifiable();
+		ensureLoaded();
+		Row child = new Row(table, this, columns, cells);
+		if (rows == null) {
+			rows = new ArrayList<>();
+		}
 		rows.add(child);
+		if (table != null) {
+			table.rowAdded(this, child);
+		}
 		return child;
 	}
 	
+	/**
+	 * Ensures the capacity of the list of sub rows for the given number of additional sub rows 
+	 * (used by the {@link TreeTableBuilder}). Sub rows which were already added are kept.
+	 * 
+	 * @param capacity the number of additional sub rows
+	 */
+	/*package*/ void initRows(int capacity) {
+		if (rows == null) {
+			rows = new ArrayList<>(capacity);
+		} else {
+			rows.ensureCapacity(rows.size() + capacity);
+		}
+	}
+	
+	/**
+	 * Appends the given sub row without notifying the tree table (used by the {@link TreeTableBuilder}).
+	 * 
+	 * @param child the sub row
+	 */
+	/*package*/ void attach(Row child) {
+		if (rows == null) {
+			rows = new ArrayList<>();
+		}
+		rows.add(child);
+	}
+	
+	/**
+	 * Removes the given sub row (with all its sub rows).
+	 * 
+	 * @param row the sub row to remove
+	 * 
+	 * @return <code>true</code> if the row was removed, <code>false</code> if it is not a sub row of this row
+	 */
+	public boolean removeRow(Row row) {
+		checkModifiable();
+		ensureLoaded();
+		int index = rows != null ? TreeTable.indexOf(rows, row) : -1;
+		if (index < 0) {
+			return false;
+		}
+		rows.remove(index);
+		if (table != null) {
+			table.rowRemoved(this, row, index);
+		}
+		return true;
+	}
+	
 	/**
 	 * Sorts the rows by the given comparator.
 	 * 
 	 * @param comparator the comparator
 	 */
 	public void sort(Comparator<Row> comparator) {
-		Collections.sort(rows, comparator);
+		checkModifiable();
+		ensureLoaded();
+		if (rows != null) {
+			Collections.sort(rows, comparator);
+			if (table != null) {
+				table.sorted(this);
+			}
+		}
 	}
 	
 	@Override
 	public Row[] getRows() {
-		return rows.toArray(new Row[rows.size()]);
+		ensureLoaded();
+		List<Row> list = rows;
+		if (list == null) {
+			return NO_ROWS;
+		}
+		return list.toArray(new Row[list.size()]);
 	}
 	
 	@Override
 	public boolean hasRows() {
-		return !rows.isEmpty();
+		if (lazy != null && !lazy.loaded) {
+			// unloaded rows may have sub rows, they are loaded on the first access
+			return true;
+		}
+		List<Row> list = rows;
+		return list != null && !list.isEmpty();
+	}
+	
+	@Override
+	public int getRowCount() {
+		ensureLoaded();
+		List<Row> list = rows;
+		return list != null ? list.size() : 0;
+	}
+	
+	@Override
+	public Row getRow(int index) {
+		ensureLoaded();
+		List<Row> list = rows;
+		if (list == null) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		return list.get(index);
+	}
+	
+	@Override
+	public List<Row> rows() {
+		ensureLoaded();
+		List<Row> list = rows;
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(list);
+	}
+	
+	/**
+	 * @return the sub rows without loading them (<code>null</code> if there are none or they are not loaded)
+	 */
+	/*package*/ List<Row> loadedRows() {
+		return rows;
+	}
+	
+	/**
+	 * Loads the sub rows of this row on demand from the given loader (see {@link RowLoader}). The sub rows are
+	 * loaded on the first access, e.g. by {@link #getRowCount()} or a walk into this row.
+	 * 
+	 * @param loader the loader (<code>null</code> to keep the loaded sub rows and to stop loading)
+	 * 
+	 * @throws IllegalStateException if the row already has sub rows
+	 * @throws UnsupportedOperationException if the tree table is frozen
+	 */
+	public void setRowLoader(RowLoader loader) {
+		checkModifiable();
+		if (loader == null) {
+			lazy = null;
+			return;
+		}
+		if (rows != null && !rows.isEmpty()) {
+			throw new IllegalStateException("The row already has sub rows"); //$NON-NLS-1$
+		}
+		lazy = new RowLoader.LazyRows(loader);
+	}
+	
+	/**
+	 * @return the loader of the sub rows (<code>null</code> if the sub rows are not loaded lazily)
+	 */
+	public RowLoader getRowLoader() {
+		return lazy != null ? lazy.loader : null;
+	}
+	
+	/**
+	 * @return <code>true</code> if the sub rows are loaded (always for rows without a {@link RowLoader})
+	 */
+	public boolean isLoaded() {
+		return lazy == null || lazy.loaded;
+	}
+	
+	/**
+	 * Unloads the sub rows of this row, they are loaded again from the {@link RowLoader} on the next access.
+	 * Modifications of the sub rows are lost. Rows without a loader are not affected.
+	 */
+	public void unloadRows() {
+		if (lazy != null && lazy.loaded) {
+			lazy.loader.unload(this);
+		}
+	}
+	
+	/**
+	 * Loads the sub rows if they are loaded lazily and not loaded yet. The rows of frozen tree tables are never loaded.
+	 * The callers read the sub rows only once afterwards, because they may be unloaded concurrently (see {@link RowLoader}).
+	 */
+	private void ensureLoaded() {
+		if (lazy == null) {
+			return;
+		}
+		if (lazy.loaded) {
+			lazy.loader.touch(this);
+		} else if (table == null || !table.isFrozen()) {
+			lazy.loader.load(this, lazy);
+		}
+	}
+	
+	/*package*/ TreeTable treeTable() {
+		return table;
+	}
+	
+	/*package*/ RowLoader.LazyRows getLazyRows() {
+		return lazy;
+	}
+	
+	/**
+	 * Appends the loaded sub rows with the given cells (used by the {@link RowLoader}).
+	 * 
+	 * @param cells the cells of the sub rows
+	 */
+	/*package*/ void attachLoaded(List<Object[]> cells) {
+		RowLoader loader = lazy.loader;
+		rows = new ArrayList<>(cells.size());
+		for (Object[] rowCells : cells) {
+			Row child = new Row(table, this, columns, rowCells);
+			if (loader.getSource().hasRows(child)) {
+				child.lazy = new RowLoader.LazyRows(loader);
+			}
+			rows.add(child);
+		}
+		if (table != null) {
+			table.rowsLoaded(this);
+		}
+	}
+	
+	/**
+	 * Discards the loaded sub rows (used by the {@link RowLoader}).
+	 */
+	/*package*/ void detachLoaded() {
+		rows = null;
+		if (table != null) {
+			table.rowsUnloaded(this);
+		}
+	}
+	
+	/**
+	 * Passes the sub rows whose own sub rows are loaded lazily and loaded to the given action (without loading anything).
+	 * 
+	 * @param action the action
+	 */
+	/*package*/ void forEachLoadedRow(Consumer<Row> action) {
+		if (rows != null) {
+			for (Row child : rows) {
+				if (child.lazy != null && child.lazy.loaded) {
+					action.accept(child);
+				}
+			}
+		}
 	}
 	
 	/**
@@ -123,16 +441,19 @@ public class Row implements RowContainer {
 		return parent;
 	}
 	
+	/**
+	 * @return the depth of the row, i.e. <code>1</code> for a row on the top level
+	 */
 	@Override
 	public int depth() {
-		int depth = 1;
-		Row p = parent;
-		while (p != null) {
-			depth++;
-			p = p.parent; 
-		}
 		return depth;
 	}
+
+	
+	@Override
+	public Stream<Row> stream() {
+		return StreamSupport.stream(new RowSpliterator(this), false);
+	}
 	
 	@Override
 	public void walk(RowVisitor visitor) {
@@ -142,34 +463,155 @@ public class Row implements RowContainer {
 	/**
 	 * Copies the given row with all sub rows to the given parent row.
 	 * 
+	 * @param table the tree table
+	 * @param parent the parent row
+	 * @param columns the columns
+	 * 
+	 * @return the new row
+	 */
+	/*package*/ Row copy(TreeTable table, Row parent, Column[] columns) {
+		Row copy = copyRow(table, parent, columns);
+		// copy the sub rows with an explicit stack to support arbitrary deep trees
+		ArrayDeque<Row> sources = new ArrayDeque<>();
+		ArrayDeque<Row> targets = new ArrayDeque<>();
+		sources.push(this);
+		targets.push(copy);
+		while (!sources.isEmpty()) {
+			Row source = sources.pop();
+			Row target = targets.pop();
+			if (source.rows != null && !source.rows.isEmpty()) {
+				target.rows = new ArrayList<>(source.rows.size());
+				for (Row rowToCopy : source.rows) {
+					Row rowCopy = rowToCopy.copyRow(table, target, columns);
+					target.rows.add(rowCopy);
+					sources.push(rowToCopy);
+					targets.push(rowCopy);
+				}
+			}
+		}
+		return copy;
+	}
+	
+	/**
+	 * Returns the frozen copy of this row for a snapshot: the copy of the last snapshot if neither the row 
+	 * nor its sub rows were modified since, otherwise a new copy which shares all unmodified sub rows.
+	 * 
+	 * @param table the snapshot
+	 * @param parent the copy of the parent row in the snapshot
+	 * 
+	 * @return the frozen copy
+	 */
+	/*package*/ Row snapshot(TreeTable table, Row parent) {
+		if (snapshot != null) {
+			return snapshot;
+		}
+		Row copy = snapshotRow(table, parent);
+		// copy the modified sub rows with an explicit stack to support arbitrary deep trees
+		ArrayDeque<Row> sources = new ArrayDeque<>();
+		ArrayDeque<Row> targets = new ArrayDeque<>();
+		sources.push(this);
+		targets.push(copy);
+		while (!sources.isEmpty()) {
+			Row source = sources.pop();
+			Row target = targets.pop();
+			if (source.rows != null && !source.rows.isEmpty()) {
+				target.rows = new ArrayList<>(source.rows.size());
+				for (Row child : source.rows) {
+					Row childCopy = child.snapshot;
+					if (childCopy == null) {
+						childCopy = child.snapshotRow(table, target);
+						sources.push(child);
+						targets.push(childCopy);
+					}
+					target.rows.add(childCopy);
+				}
+			}
+		}
+		return copy;
+	}
+	
+	private Row snapshotRow(TreeTable table, Row parent) {
+		Row copy = copyRow(table, parent, columns);
+		copy.data = data;
+		snapshot = copy;
+		return copy;
+	}
+	
+	/**
+	 * Discards the copies of this row and its ancestors in the last snapshot after the row was modified.
+	 */
+	/*package*/ void invalidateSnapshot() {
+		// if a row has no copy, its ancestors have none either
+		for (Row row = this; row != null && row.snapshot != null; row = row.parent) {
+			row.snapshot = null;
+		}
+	}
+	
+	/**
+	 * Copies the given row without its sub rows.
+	 * 
+	 * @param table the tree table
 	 * @param parent the parent row
 	 * @param columns the columns
 	 * 
 	 * @return the new row
 	 */
-	/*package*/ Row copy(Row parent, Column[] columns) {
-		Row copy = new Row(parent, columns, null);
-		for (int i = 0; i < this.columns.length; i++) {
-			Column origColumn = this.columns[i];
-			Column copiedColumn = columns[i];
-			copy.setCellContent(copiedColumn, getCellContent(origColumn));
+	private Row copyRow(TreeTable table, Row parent, Column[] columns) {
+		Row copy = new Row(table, parent, columns, null);
+		if (content != null) {
+			copy.content = content.clone();
 		}
-		copy.parameters = new HashMap<>(this.parameters);
-		
-		Row[] rowsToCopy = getRows();
-		for (Row rowToCopy : rowsToCopy) {
-			copy.rows.add(rowToCopy.copy(copy, columns));
+		if (parameters != null && !parameters.isEmpty()) {
+			copy.parameters = new ParameterMap(copy, parameters);
 		}
 		return copy;
 	}
 	
 	/**
+	 * Returns the additional parameters of the given row. Modifications of the returned map are reported 
+	 * to the listeners of the tree table.
+	 * 
 	 * @return the additional parameters of the given row
 	 */
 	public Map<String, Object> getParameters() {
+		if (parameters == null) {
+			if (table != null && table.isFrozen()) {
+				// reading a frozen row must not modify it
+				return Collections.emptyMap();
+			}
+			parameters = new ParameterMap(this, null);
+		}
 		return parameters;
 	}
 	
+	/**
+	 * Returns the value of the given parameter without allocating the parameters of the row.
+	 * 
+	 * @param key the key of the parameter
+	 * 
+	 * @return the value of the given parameter or <code>null</code> if the parameter is not set
+	 */
+	public Object getParameter(String key) {
+		return parameters != null ? parameters.get(key) : null;
+	}
+	
+	/**
+	 * @return <code>true</code> if at least one parameter is set (without allocating the parameters of the row)
+	 */
+	/*package*/ boolean hasParameters() {
+		return parameters != null && !parameters.isEmpty();
+	}
+
+	/**
+	 * Sets the value of the given parameter.
+	 * 
+	 * @param key the key of the parameter
+	 * @param value the value of the parameter
+	 */
+	public void setParameter(String key, Object value) {
+		getParameters().put(key, value);
+	}
+	
 	/**
 	 * @return the assigned data object of the given row
 	 */
@@ -183,16 +625,41 @@ public class Row implements RowContainer {
 	 * @param data the data
 	 */
 	public void setData(Object data) {
+		checkModifiable();
 		this.data = data;
+		if (table != null) {
+			table.dataChanged(this);
+		}
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if the tree table is frozen
+	 */
+	/*package*/ void checkModifiable() {
+		if (table != null) {
+			table.checkModifiable();
+		}
+	}
+	
+	/**
+	 * Called by the parameters after a parameter was modified.
+	 * 
+	 * @param key the key of the parameter
+	 * @param oldValue the old value
+	 * @param newValue the new value (<code>null</code> if the parameter was removed)
+	 */
+	/*package*/ void parameterChanged(String key, Object oldValue, Object newValue) {
+		if (table != null) {
+			table.parameterChanged(this, key, oldValue, newValue);
+		}
 	}
 	
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		String separator = ""; //$NON-NLS-1$
-		for (Column column : columns) {
-			Object content = getCellContent(column);
-			sb.append(separator).append(content);
+		for (int i = 0; i < columns.length; i++) {
+			sb.append(separator).append(getCellContent(i));
 			separator = ", "; //$NON-NLS-1$
 		}
 		return sb.toString();
@@ -15,6 +15,10 @@
  */
 package io.github.dogla.treetable;
 
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
 import io.github.dogla.treetable.util.RowVisitor;
 
 /**
@@ -34,9 +38,42 @@ public interface RowContainer {
 	Row addRow(Object... cells);
 
 	/**
-	 * @return all rows of the container
+	 * @return all rows of the container (a copy of the underlying rows)
 	 */
 	Row[] getRows();
+	
+	/**
+	 * @return the number of rows of the container
+	 */
+	int getRowCount();
+	
+	/**
+	 * @param index the index of the row
+	 * 
+	 * @return the row with the given index
+	 * 
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	Row getRow(int index);
+	
+	/**
+	 * Returns an unmodifiable view of the rows of the container. In contrast to {@link #getRows()} the rows are not copied.
+	 * 
+	 * @return the rows of the container
+	 */
+	List<Row> rows();
+	
+	/**
+	 * Performs the given action for each row of the container without copying the rows.
+	 * 
+	 * @param action the action
+	 */
+	default void forEachRow(Consumer<? super Row> action) {
+		int count = getRowCount();
+		for (int i = 0; i < count; i++) {
+			action.accept(getRow(i));
+		}
+	}
 
 	/**
 	 * @return <code>true</code> if the container has rows
@@ -49,6 +86,14 @@ public interface RowContainer {
 	 */
 	int depth();
 
+	/**
+	 * Returns a sequential depth-first stream of the rows of the underlying row container (in the order of {@link #walk(RowVisitor)}).
+	 * Use {@link Stream#parallel()} to process independent subtrees in parallel.
+	 * 
+	 * @return the stream of the rows
+	 */
+	Stream<Row> stream();
+	
 	/**
 	 * Walks to the structure of the underlying row container and calls the corresponding callbacks of the given row visitor.
 	 * 
@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Loads the sub rows of rows on demand from a {@link RowSource} (see {@link Row#setRowLoader(RowLoader)}).
+ * <p>
+ * The sub rows of a lazy row are loaded on the first access, e.g. by {@link Row#getRowCount()}, {@link Row#getRow(int)}
+ * or a walk into the row. Loaded rows are lazy rows themselves (unless {@link RowSource#hasRows(Row)} returns
+ * <code>false</code>), so only the visited part of the tree is loaded. Loading is not a modification: no events are fired,
+ * but snapshots and the incremental rendering are updated.
+ * <p>
+ * With {@link #withPrefetch(boolean)} the sub rows of all siblings of a row are requested in one batch when the
+ * sub rows of the row are loaded, so visiting a level of the tree costs a single request of the source.
+ * With {@link #withMaxLoadedRows(int)} the sub rows of the least recently accessed rows are unloaded,
+ * so the memory is bounded while a large tree is browsed (see also {@link Row#unloadRows()}).
+ * <p>
+ * The rows are loaded by the thread accessing them, which waits for the future of the source if necessary.
+ * Loading, unloading and the access order are synchronized on the loader, so lazy rows can be walked by multiple threads
+ * (e.g. by a {@link io.github.dogla.treetable.util.ParallelRowWalker}). Concurrent accesses of the same row wait for the
+ * same request, accesses of other rows do not wait (except for synchronous sources, which are called while the loader is locked).
+ * With a limit, rows may be unloaded while other threads still walk their sub rows: these threads keep the sub rows
+ * they already read, which are detached from the tree table. All other modifications require external synchronization as usual.
+ * <p>
+ * The rows of frozen tree tables are not loaded, copies and snapshots contain the loaded rows only.
+ *
+ * @author Dominik Glaser
+ */
+public final class RowLoader {
+
+	private final RowSource source;
+	private boolean prefetch;
+	private int maxLoadedRows;
+	// the rows whose sub rows are loaded in the order of their last access (maintained only if the rows are limited)
+	private final LinkedHashMap<Row, Boolean> loadedRows = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param source the source of the sub rows
+	 */
+	public RowLoader(RowSource source) {
+		this.source = source;
+	}
+
+	/**
+	 * @return the source of the sub rows
+	 */
+	public RowSource getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the prefetch.
+	 *
+	 * @return the prefetch
+	 */
+	public boolean isPrefetch() {
+		return prefetch;
+	}
+
+	/**
+	 * Sets the prefetch, i.e. whether the sub rows of all siblings of a row are requested in one batch
+	 * (see {@link RowSource#loadRows(List)}) when the sub rows of the row are loaded.
+	 *
+	 * @param prefetch the prefetch to set
+	 *
+	 * @return the instance itself
+	 */
+	public RowLoader withPrefetch(boolean prefetch) {
+		this.prefetch = prefetch;
+		return this;
+	}
+
+	/**
+	 * Returns the maxLoadedRows.
+	 *
+	 * @return the maxLoadedRows
+	 */
+	public int getMaxLoadedRows() {
+		return maxLoadedRows;
+	}
+
+	/**
+	 * Sets the maxLoadedRows, i.e. the maximum number of rows whose sub rows are loaded at the same time. If more
+	 * rows are loaded, the sub rows of the least recently accessed rows are unloaded (except for the ancestors of the row
+	 * being loaded) and loaded again on the next access. Modifications of unloaded rows are lost.
+	 *
+	 * @param maxLoadedRows the maxLoadedRows to set (<code>0</code> if the loaded rows are not limited)
+	 *
+	 * @return the instance itself
+	 */
+	public RowLoader withMaxLoadedRows(int maxLoadedRows) {
+		this.maxLoadedRows = maxLoadedRows;
+		return this;
+	}
+
+	/**
+	 * Loads the sub rows of the given row.
+	 *
+	 * @param row the row
+	 * @param lazy the loading state of the row
+	 *
+	 * @throws IllegalStateException if the source failed to load the sub rows (the row remains unloaded)
+	 */
+	/*package*/ void load(Row row, LazyRows lazy) {
+		CompletableFuture<List<Object[]>> future;
+		synchronized (this) {
+			if (lazy.loaded) {
+				// loaded by another thread meanwhile
+				return;
+			}
+			future = lazy.pending;
+			if (future == null) {
+				future = prefetch ? prefetch(row) : source.loadRows(row);
+				// concurrent accesses of the row wait for the same future
+				lazy.pending = future;
+			}
+		}
+		// wait without holding the lock, so other rows can be loaded meanwhile
+		List<Object[]> cells;
+		try {
+			cells = future.join();
+		} catch (CompletionException | CancellationException e) {
+			synchronized (this) {
+				if (lazy.pending == future) {
+					lazy.pending = null;
+				}
+			}
+			throw new IllegalStateException("The sub rows could not be loaded", e.getCause() != null ? e.getCause() : e); //$NON-NLS-1$
+		}
+		synchronized (this) {
+			if (lazy.loaded) {
+				return;
+			}
+			lazy.pending = null;
+			row.attachLoaded(cells);
+			// published after the sub rows (volatile)
+			lazy.loaded = true;
+			if (maxLoadedRows > 0) {
+				loadedRows.put(row, Boolean.TRUE);
+				evict(row);
+			}
+		}
+	}
+
+	/**
+	 * Requests the sub rows of the given row and its unloaded siblings in one batch.
+	 *
+	 * @param row the row
+	 *
+	 * @return the future of the sub rows of the given row
+	 */
+	private CompletableFuture<List<Object[]>> prefetch(Row row) {
+		RowContainer container = row.parent() != null ? row.parent() : row.treeTable();
+		if (container == null) {
+			return source.loadRows(row);
+		}
+		List<Row> rows = new ArrayList<>();
+		int count = container.getRowCount();
+		for (int i = 0; i < count; i++) {
+			Row sibling = container.getRow(i);
+			LazyRows lazy = sibling.getLazyRows();
+			if (sibling == row || (lazy != null && lazy.loader == this && !lazy.loaded && lazy.pending == null)) {
+				rows.add(sibling);
+			}
+		}
+		CompletableFuture<List<List<Object[]>>> batch = source.loadRows(rows);
+		CompletableFuture<List<Object[]>> result = null;
+		for (int i = 0; i < rows.size(); i++) {
+			int index = i;
+			CompletableFuture<List<Object[]>> future = batch.thenApply(list -> list.get(index));
+			if (rows.get(i) == row) {
+				result = future;
+			} else {
+				rows.get(i).getLazyRows().pending = future;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Marks the given row as recently accessed.
+	 *
+	 * @param row the row
+	 */
+	/*package*/ void touch(Row row) {
+		if (maxLoadedRows > 0) {
+			// the access order is modified by each access
+			synchronized (this) {
+				loadedRows.get(row);
+			}
+		}
+	}
+
+	/**
+	 * Unloads the sub rows of the least recently accessed rows until the limit is reached.
+	 *
+	 * @param loading the row being loaded (it and its ancestors are not unloaded)
+	 */
+	private void evict(Row loading) {
+		Iterator<Row> iterator = loadedRows.keySet().iterator();
+		while (loadedRows.size() > maxLoadedRows && iterator.hasNext()) {
+			Row row = iterator.next();
+			if (!isAncestor(row, loading)) {
+				// the iterator is invalid after the sub rows of the row are unloaded
+				unload(row);
+				iterator = loadedRows.keySet().iterator();
+			}
+		}
+	}
+
+	private static boolean isAncestor(Row row, Row descendant) {
+		for (Row current = descendant; current != null; current = current.parent()) {
+			if (current == row) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Unloads the sub rows of the given row.
+	 *
+	 * @param row the row
+	 */
+	/*package*/ synchronized void unload(Row row) {
+		if (!row.getLazyRows().loaded) {
+			return;
+		}
+		if (!loadedRows.isEmpty()) {
+			// forget the loaded descendants
+			ArrayDeque<Row> rows = new ArrayDeque<>();
+			rows.push(row);
+			while (!rows.isEmpty()) {
+				Row current = rows.pop();
+				loadedRows.remove(current);
+				current.forEachLoadedRow(rows::push);
+			}
+		}
+		row.getLazyRows().loaded = false;
+		row.detachLoaded();
+	}
+
+	/**
+	 * The loading state of a lazy row.
+	 */
+	/*package*/ static final class LazyRows {
+
+		/*package*/ final RowLoader loader;
+		/*package*/ volatile boolean loaded;
+		// the prefetched sub rows (null if they were not requested yet)
+		/*package*/ CompletableFuture<List<Object[]>> pending;
+
+		/*package*/ LazyRows(RowLoader loader) {
+			this.loader = loader;
+		}
+
+	}
+
+}
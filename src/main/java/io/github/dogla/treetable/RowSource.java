@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * The source of the sub rows of lazily loaded rows (see {@link RowLoader}), e.g. a database or a file system.
+ * <p>
+ * The sub rows are returned as a future, so a source can load them asynchronously (e.g. to prefetch the sub rows of
+ * the siblings of a row while the row itself is displayed). A synchronous source can be created by {@link #of(Function)}.
+ *
+ * @author Dominik Glaser
+ */
+@FunctionalInterface
+public interface RowSource {
+
+	/**
+	 * Loads the sub rows of the given row.
+	 *
+	 * @param parent the row
+	 *
+	 * @return the future of the cells of the sub rows (one array for each sub row)
+	 */
+	CompletableFuture<List<Object[]>> loadRows(Row parent);
+
+	/**
+	 * Loads the sub rows of the given rows in one batch (used to prefetch the sub rows of siblings, see
+	 * {@link RowLoader#withPrefetch(boolean)}). The default implementation calls {@link #loadRows(Row)} for each row,
+	 * sources which can load multiple rows at once (e.g. by a single query) should override it.
+	 *
+	 * @param parents the rows
+	 *
+	 * @return the future of the cells of the sub rows of each given row (in the order of the given rows)
+	 */
+	default CompletableFuture<List<List<Object[]>>> loadRows(List<Row> parents) {
+		List<CompletableFuture<List<Object[]>>> futures = new ArrayList<>(parents.size());
+		for (Row parent : parents) {
+			futures.add(loadRows(parent));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenApply(v -> {
+			List<List<Object[]>> result = new ArrayList<>(futures.size());
+			for (CompletableFuture<List<Object[]>> future : futures) {
+				result.add(future.join());
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Returns whether the given loaded row may have sub rows. The sub rows of rows without sub rows
+	 * (e.g. files in contrast to directories) are never requested.
+	 *
+	 * @param row the loaded row
+	 *
+	 * @return <code>true</code> if the row may have sub rows (the default), <code>false</code> if it is a leaf
+	 */
+	default boolean hasRows(Row row) {
+		return true;
+	}
+
+	/**
+	 * Creates a source which loads the sub rows synchronously.
+	 *
+	 * @param loader the function returning the cells of the sub rows of a row
+	 *
+	 * @return the source
+	 */
+	static RowSource of(Function<Row, List<Object[]>> loader) {
+		return parent -> CompletableFuture.completedFuture(loader.apply(parent));
+	}
+
+}
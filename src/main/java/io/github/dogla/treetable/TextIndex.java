@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * The rows of a {@link TreeTable} in the order they are displayed by the {@link TreeTableToTextConverter},
+ * i.e. the index to render a window of rows (see {@link TreeTableToTextConverter#render(TextIndex, int, int, Appendable)}).
+ * <p>
+ * For each visible row the index holds the row, the position of its parent row and whether it is the last visible row of its parent,
+ * so the prefix visualizing the tree structure of any row can be computed from its ancestors only.
+ * The index is a snapshot of the structure of the tree table: it must be created again after rows are added or sorted.
+ *
+ * @author Dominik Glaser
+ */
+public final class TextIndex {
+
+	private final TreeTable treeTable;
+	private final boolean tree;
+	private Row[] rows = new Row[16];
+	private int[] parents = new int[16];
+	private final BitSet lastRows = new BitSet();
+	private int size;
+	// the position of the last added row on each level (only used while the index is built)
+	private int[] levels = new int[16];
+	// the column widths of all rows, computed on demand by the given converter
+	private TreeTableToTextConverter widthsConverter;
+	private int[] widths;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param treeTable the tree table
+	 * @param tree <code>true</code> if the tree structure is visualized
+	 */
+	/*package*/ TextIndex(TreeTable treeTable, boolean tree) {
+		this.treeTable = treeTable;
+		this.tree = tree;
+	}
+
+	/**
+	 * Adds the next visible row.
+	 *
+	 * @param row the row
+	 * @param level the level of the row (<code>0</code> for the rows on the top level)
+	 * @param last <code>true</code> if the row is the last visible row of its parent
+	 */
+	/*package*/ void add(Row row, int level, boolean last) {
+		if (size == rows.length) {
+			rows = Arrays.copyOf(rows, size * 2);
+			parents = Arrays.copyOf(parents, size * 2);
+		}
+		if (level == levels.length) {
+			levels = Arrays.copyOf(levels, level * 2);
+		}
+		rows[size] = row;
+		parents[size] = level == 0 ? -1 : levels[level - 1];
+		lastRows.set(size, last);
+		levels[level] = size;
+		size++;
+	}
+
+	/**
+	 * @return the tree table
+	 */
+	public TreeTable getTreeTable() {
+		return treeTable;
+	}
+
+	/**
+	 * @return the number of visible rows
+	 */
+	public int getRowCount() {
+		return size;
+	}
+
+	/**
+	 * @param index the position of the row in the display order
+	 *
+	 * @return the row at the given position
+	 */
+	public Row getRow(int index) {
+		return rows[Objects.checkIndex(index, size)];
+	}
+
+	/**
+	 * @return <code>true</code> if the tree structure is visualized
+	 */
+	/*package*/ boolean isTree() {
+		return tree;
+	}
+
+	/**
+	 * @param index the position of the row
+	 *
+	 * @return the position of the parent row or <code>-1</code> for a row on the top level
+	 */
+	/*package*/ int getParent(int index) {
+		return parents[index];
+	}
+
+	/**
+	 * @param index the position of the row
+	 *
+	 * @return <code>true</code> if the row is the last visible row of its parent
+	 */
+	/*package*/ boolean isLast(int index) {
+		return lastRows.get(index);
+	}
+
+	/**
+	 * @param converter the converter
+	 *
+	 * @return the cached column widths of all rows computed by the given converter or <code>null</code>
+	 */
+	/*package*/ int[] getWidths(TreeTableToTextConverter converter) {
+		return converter == widthsConverter ? widths : null;
+	}
+
+	/**
+	 * Caches the column widths of all rows.
+	 *
+	 * @param converter the converter which computed the widths
+	 * @param widths the widths
+	 */
+	/*package*/ void setWidths(TreeTableToTextConverter converter, int[] widths) {
+		this.widthsConverter = converter;
+		this.widths = widths;
+	}
+
+	/**
+	 * Releases the memory only needed while the index is built.
+	 */
+	/*package*/ void complete() {
+		levels = null;
+		if (rows.length > size) {
+			rows = Arrays.copyOf(rows, size);
+			parents = Arrays.copyOf(parents, size);
+		}
+	}
+
+}
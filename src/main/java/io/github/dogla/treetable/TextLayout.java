@@ -0,0 +1,403 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.util.Arrays;
+
+import io.github.dogla.treetable.util.TextCells;
+
+/**
+ * The layout of a {@link TreeTable} computed by the {@link TreeTableToTextConverter}.
+ * <p>
+ * The layout holds the displayed text of each cell (in the visible row order) and the width of each column.
+ * Large tree tables are rendered with a layout of a single row, which is cleared for each row after the widths
+ * of the columns were measured.
+ * <p>
+ * If the cells may span multiple lines (line breaks or a maximum column width), the layout additionally holds
+ * the number of lines of each row and the margins of each cell, i.e. the leading prefix and indent and the trailing
+ * indent which are repeated on each line. The lines themselves are not stored, they are found again while writing.
+ *
+ * @author Dominik Glaser
+ */
+/*package*/ class TextLayout {
+
+	private final Column[] columns;
+	private final ColumnAlignment[] alignments;
+	private final int[] widths;
+	private final int[] maxWidths;
+	private final boolean multiLine;
+	private final boolean lines;
+	private String[] cells;
+	private int[] leads;
+	private int[] trails;
+	private int[] heights;
+	private String[] continuations;
+	private int rowCount;
+	// the number of characters of the stored texts plus one for each stored cell
+	private long storedSize;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param columns the columns
+	 * @param alignments the effective alignments of the columns
+	 * @param multiLine <code>true</code> if line breaks inside the cells start new lines
+	 */
+	/*package*/ TextLayout(Column[] columns, ColumnAlignment[] alignments, boolean multiLine) {
+		this(columns, alignments, multiLine, 16);
+	}
+	
+	/**
+	 * Constructor.
+	 *
+	 * @param columns the columns
+	 * @param alignments the effective alignments of the columns
+	 * @param multiLine <code>true</code> if line breaks inside the cells start new lines
+	 * @param capacity the initial number of rows the layout can hold
+	 */
+	/*package*/ TextLayout(Column[] columns, ColumnAlignment[] alignments, boolean multiLine, int capacity) {
+		this.columns = columns;
+		this.alignments = alignments;
+		this.multiLine = multiLine;
+		this.widths = new int[columns.length];
+		this.maxWidths = new int[columns.length];
+		this.cells = new String[columns.length * capacity];
+		boolean wrapped = false;
+		for (int i = 0; i < columns.length; i++) {
+			widths[i] = TextCells.width(columns[i].getLabel());
+			maxWidths[i] = columns[i].getMaxWidth();
+			wrapped |= maxWidths[i] > 0;
+		}
+		this.lines = multiLine || wrapped;
+		if (lines) {
+			this.leads = new int[cells.length];
+			this.trails = new int[cells.length];
+			this.heights = new int[capacity];
+			this.continuations = new String[capacity];
+		}
+	}
+
+	/**
+	 * Appends a new row to the layout.
+	 *
+	 * @return the index of the new row
+	 */
+	/*package*/ int addRow() {
+		int needed = (rowCount + 1) * columns.length;
+		if (needed > cells.length) {
+			cells = Arrays.copyOf(cells, Math.max(needed, cells.length * 2));
+			if (lines) {
+				leads = Arrays.copyOf(leads, cells.length);
+				trails = Arrays.copyOf(trails, cells.length);
+			}
+		}
+		if (lines) {
+			if (rowCount == heights.length) {
+				heights = Arrays.copyOf(heights, Math.max(1, rowCount * 2));
+				continuations = Arrays.copyOf(continuations, Math.max(1, rowCount * 2));
+			}
+			heights[rowCount] = 1;
+		}
+		return rowCount++;
+	}
+
+	/**
+	 * Removes all rows, the widths of the columns are kept (used to lay out one row after another).
+	 */
+	/*package*/ void clear() {
+		if (lines) {
+			Arrays.fill(continuations, 0, rowCount, null);
+		}
+		rowCount = 0;
+		storedSize = 0;
+	}
+
+	/**
+	 * Sets the displayed text of the given cell and updates the width of the column and the height of the row.
+	 *
+	 * @param row the row index
+	 * @param column the column index
+	 * @param text the text
+	 * @param lead the length of the leading part of the text which is not wrapped (prefix and indent)
+	 * @param trail the length of the trailing part of the text which is not wrapped (indent of spaces)
+	 */
+	/*package*/ void setCell(int row, int column, String text, int lead, int trail) {
+		int index = row * columns.length + column;
+		cells[index] = text;
+		storedSize += text.length() + 1;
+		int count = measure(column, text, lead, trail);
+		if (lines) {
+			leads[index] = lead;
+			trails[index] = trail;
+			if (count > heights[row]) {
+				heights[row] = count;
+			}
+		}
+	}
+
+	/**
+	 * Updates the width of the column with the given text without storing it.
+	 *
+	 * @param column the column index
+	 * @param text the text
+	 * @param lead the length of the leading part of the text which is not wrapped (prefix and indent)
+	 * @param trail the length of the trailing part of the text which is not wrapped (indent of spaces)
+	 *
+	 * @return the number of lines of the text
+	 */
+	/*package*/ int measure(int column, String text, int lead, int trail) {
+		if (!lines) {
+			int w = TextCells.width(text);
+			if (w > widths[column]) {
+				widths[column] = w;
+			}
+			return 1;
+		}
+		int end = text.length() - trail;
+		int maxWidth = maxWidths[column];
+		int start = lead;
+		int max = 0;
+		int count = 0;
+		do {
+			int lineEnd = lineEnd(text, start, end, maxWidth, multiLine);
+			max = Math.max(max, TextCells.width(text, start, lineEnd));
+			count++;
+			start = nextLine(text, lineEnd, end, multiLine);
+		} while (start >= 0);
+		int w = TextCells.width(text, 0, lead) + max + trail;
+		if (w > widths[column]) {
+			widths[column] = w;
+		}
+		return count;
+	}
+
+	/**
+	 * Extends the widths of the columns to the given widths (e.g. the widths of all rows if only some rows are in the layout).
+	 *
+	 * @param minWidths the minimum widths of the columns
+	 */
+	/*package*/ void initWidths(int[] minWidths) {
+		for (int i = 0; i < widths.length; i++) {
+			widths[i] = Math.max(widths[i], minWidths[i]);
+		}
+	}
+
+	/**
+	 * Replaces the widths of the columns (e.g. the widths of all rows if the rows are laid out separately).
+	 *
+	 * @param widths the widths of the columns
+	 */
+	/*package*/ void setWidths(int[] widths) {
+		System.arraycopy(widths, 0, this.widths, 0, this.widths.length);
+	}
+
+	/**
+	 * @return a copy of the widths of the columns
+	 */
+	/*package*/ int[] getWidths() {
+		return widths.clone();
+	}
+
+	/**
+	 * @param row the row index
+	 * @param column the column index
+	 *
+	 * @return the displayed text of the given cell
+	 */
+	/*package*/ String getCell(int row, int column) {
+		return cells[row * columns.length + column];
+	}
+
+	/**
+	 * @param row the row index
+	 * @param column the column index
+	 *
+	 * @return the length of the leading part of the given cell which is not wrapped
+	 */
+	/*package*/ int getLead(int row, int column) {
+		return leads[row * columns.length + column];
+	}
+
+	/**
+	 * @param row the row index
+	 * @param column the column index
+	 *
+	 * @return the length of the trailing part of the given cell which is not wrapped
+	 */
+	/*package*/ int getTrail(int row, int column) {
+		return trails[row * columns.length + column];
+	}
+
+	/**
+	 * @param row the row index
+	 *
+	 * @return the number of lines of the given row
+	 */
+	/*package*/ int getHeight(int row) {
+		return lines ? heights[row] : 1;
+	}
+
+	/**
+	 * Sets the leading part of the first cell for all lines of the given row except the first one
+	 * (e.g. the vertical lines of the tree structure).
+	 *
+	 * @param row the row index
+	 * @param continuation the leading part (with the same length as the leading part of the first line)
+	 */
+	/*package*/ void setContinuation(int row, String continuation) {
+		continuations[row] = continuation;
+	}
+
+	/**
+	 * @param row the row index
+	 *
+	 * @return the leading part of the first cell for all lines of the given row except the first one
+	 *         or <code>null</code> if the lines start with spaces
+	 */
+	/*package*/ String getContinuation(int row) {
+		return continuations[row];
+	}
+
+	/**
+	 * @return the columns
+	 */
+	/*package*/ Column[] getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @param column the column index
+	 *
+	 * @return the effective alignment of the given column
+	 */
+	/*package*/ ColumnAlignment getAlignment(int column) {
+		return alignments[column];
+	}
+
+	/**
+	 * @param column the column index
+	 *
+	 * @return the width of the given column
+	 */
+	/*package*/ int getWidth(int column) {
+		return widths[column];
+	}
+
+	/**
+	 * @param column the column index
+	 *
+	 * @return the maximum width of the text of the given column (<code>0</code> if the width is not limited)
+	 */
+	/*package*/ int getMaxWidth(int column) {
+		return maxWidths[column];
+	}
+
+	/**
+	 * @return <code>true</code> if line breaks inside the cells start new lines
+	 */
+	/*package*/ boolean isMultiLine() {
+		return multiLine;
+	}
+
+	/**
+	 * @return <code>true</code> if the cells may span multiple lines
+	 */
+	/*package*/ boolean hasLines() {
+		return lines;
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	/*package*/ int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return the size of the stored texts, i.e. the number of their characters plus one for each cell
+	 */
+	/*package*/ long getStoredSize() {
+		return storedSize;
+	}
+
+	/**
+	 * Finds the end of the line starting at the given index, i.e. the next line break or the position where the
+	 * line is wrapped (the last space before the maximum width is exceeded, or the maximum width itself if there is no space).
+	 *
+	 * @param text the text
+	 * @param start the start index of the line
+	 * @param end the end index of the text
+	 * @param maxWidth the maximum display width of a line (<code>0</code> if the width is not limited)
+	 * @param multiLine <code>true</code> if line breaks start new lines
+	 *
+	 * @return the end index of the line (exclusive)
+	 */
+	/*package*/ static int lineEnd(String text, int start, int end, int maxWidth, boolean multiLine) {
+		if (maxWidth <= 0 && !multiLine) {
+			return end;
+		}
+		int width = 0;
+		int space = -1;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c == '\r') {
+				continue;
+			}
+			if (c == '\n' && multiLine) {
+				return i;
+			}
+			boolean isSpace = c == ' ' || c == '\n';
+			int codePoint = c < 0x80 ? c : TextCells.codePointAt(text, i, end);
+			int w = c < 0x80 ? 1 : TextCells.width(codePoint);
+			if (maxWidth > 0 && width + w > maxWidth && width > 0) {
+				return isSpace || space <= start ? i : space;
+			}
+			if (isSpace) {
+				space = i;
+			}
+			width += w;
+			i += Character.charCount(codePoint) - 1;
+		}
+		return end;
+	}
+
+	/**
+	 * Finds the start of the line following the line with the given end index.
+	 *
+	 * @param text the text
+	 * @param lineEnd the end index of the current line
+	 * @param end the end index of the text
+	 * @param multiLine <code>true</code> if line breaks start new lines
+	 *
+	 * @return the start index of the next line or <code>-1</code> if there is no further line
+	 */
+	/*package*/ static int nextLine(String text, int lineEnd, int end, boolean multiLine) {
+		if (lineEnd >= end) {
+			return -1;
+		}
+		char c = text.charAt(lineEnd);
+		if (c == '\n' && multiLine) {
+			// an empty line after a trailing line break is kept
+			return lineEnd + 1;
+		}
+		if (c == ' ' || c == '\n') {
+			// the space at the wrap position is dropped
+			return lineEnd + 1 < end ? lineEnd + 1 : -1;
+		}
+		return lineEnd;
+	}
+
+}
@@ -15,14 +15,18 @@
  */
 package io.github.dogla.treetable;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import io.github.dogla.treetable.util.RowSpliterator;
 import io.github.dogla.treetable.util.RowVisitor;
 import io.github.dogla.treetable.util.RowWalker;
 
@@ -33,9 +37,20 @@ import io.github.dogla.treetable.util.RowWalker;
  */
 public class TreeTable implements RowContainer {
 	
-	private Map<String, Object> parameters = new HashMap<>();
+	private ParameterMap parameters = new ParameterMap(this, null);
 	private Column[] columns;
-	private List<Row> rows = new ArrayList<>();
+	private ArrayList<Row> rows = new ArrayList<>();
+	// the maximum depth of all rows or -1 if it must be computed again (after rows were removed)
+	private int height;
+	// the attached trackers and listeners (null if none is attached, so there are no costs without them)
+	private List<DirtyTracker> trackers;
+	private List<TreeTableListener> listeners;
+	// the nesting depth of the current batch and the events collected during the batch
+	private int batchDepth;
+	private List<TreeTableEvent> pendingEvents;
+	private boolean frozen;
+	// the last snapshot (null if the tree table was modified since)
+	private TreeTable snapshot;
 
 	/**
 	 * Constructor.
@@ -57,7 +72,53 @@ public class TreeTable implements RowContainer {
 	}
 	
 	/**
-	 * Copy Constructor.
+	 * Creates a builder to load a large tree table in a single pass.
+	 * 
+	 * @param expectedRows the expected number of rows (used to size the storage of the builder)
+	 * @param columns the columns
+	 * 
+	 * @return the builder
+	 */
+	public static TreeTableBuilder builder(int expectedRows, String... columns) {
+		return builder(expectedRows, Arrays.stream(columns).map(c -> new Column(c)).toArray(Column[]::new));
+	}
+	
+	/**
+	 * Creates a builder to load a large tree table in a single pass.
+	 * 
+	 * @param expectedRows the expected number of rows (used to size the storage of the builder)
+	 * @param columns the columns
+	 * 
+	 * @return the builder
+	 */
+	public static TreeTableBuilder builder(int expectedRows, Column[] columns) {
+		return new TreeTableBuilder(columns, expectedRows);
+	}
+	
+	/**
+	 * Creates a builder to fill a tree table from multiple threads.
+	 * 
+	 * @param columns the columns
+	 * 
+	 * @return the builder
+	 */
+	public static ConcurrentTreeTableBuilder concurrentBuilder(String... columns) {
+		return concurrentBuilder(Arrays.stream(columns).map(c -> new Column(c)).toArray(Column[]::new));
+	}
+	
+	/**
+	 * Creates a builder to fill a tree table from multiple threads.
+	 * 
+	 * @param columns the columns
+	 * 
+	 * @return the builder
+	 */
+	public static ConcurrentTreeTableBuilder concurrentBuilder(Column[] columns) {
+		return new ConcurrentTreeTableBuilder(columns);
+	}
+	
+	/**
+	 * Copy Constructor. The listeners are not copied and the copy is never frozen.
 	 *
 	 * @param treeTable the tree table to copy
 	 */
@@ -66,10 +127,9 @@ public class TreeTable implements RowContainer {
 		for (int i = 0; i < columns.length; i++) {
 			columns[i] = treeTable.columns[i].copy();
 		}
-		for (Row row : treeTable.rows) {
-			rows.add(row.copy(null, columns));
-		}
-		this.parameters = new HashMap<>(treeTable.parameters);
+		this.parameters = new ParameterMap(this, treeTable.parameters);
+		treeTable.copyRows(this);
+		this.height = treeTable.height();
 	}
 
 	/**
@@ -84,6 +144,21 @@ public class TreeTable implements RowContainer {
 		return rows.toArray(new Row[rows.size()]);
 	}
 	
+	@Override
+	public int getRowCount() {
+		return rows.size();
+	}
+	
+	@Override
+	public Row getRow(int index) {
+		return rows.get(index);
+	}
+	
+	@Override
+	public List<Row> rows() {
+		return Collections.unmodifiableList(rows);
+	}
+	
 	/**
 	 * Adds the given cells to the given row.
 	 * 
@@ -102,25 +177,97 @@ public class TreeTable implements RowContainer {
 
 	@Override
 	public Row addRow(Object... cells) {
-		Row row = new Row(columns, cells);
+		checkModifiable();
+		Row row = new Row(this, columns, cells);
 		this.rows.add(row);
+		rowAdded(this, row);
 		return row;
 	}
 	
+	/**
+	 * Ensures the capacity of the rows on the top level for the given number of additional rows 
+	 * (used by the {@link TreeTableBuilder}). Rows which were already added are kept.
+	 * 
+	 * @param capacity the number of additional rows
+	 */
+	/*package*/ void initRows(int capacity) {
+		rows.ensureCapacity(rows.size() + capacity);
+	}
+	
+	/**
+	 * Appends the given row to its parent row or to the top level without notifying the trackers and listeners 
+	 * (used by the {@link TreeTableBuilder}).
+	 * 
+	 * @param row the row
+	 */
+	/*package*/ void attach(Row row) {
+		Row parent = row.parent();
+		if (parent == null) {
+			rows.add(row);
+		} else {
+			parent.attach(row);
+		}
+		if (height >= 0 && row.depth() > height) {
+			height = row.depth();
+		}
+	}
+	
+	/**
+	 * Removes the given row (with all its sub rows) from the top level of the table.
+	 * 
+	 * @param row the row to remove
+	 * 
+	 * @return <code>true</code> if the row was removed, <code>false</code> if it is not a row on the top level
+	 * 
+	 * @see Row#removeRow(Row)
+	 */
+	public boolean removeRow(Row row) {
+		checkModifiable();
+		int index = indexOf(rows, row);
+		if (index < 0) {
+			return false;
+		}
+		rows.remove(index);
+		rowRemoved(this, row, index);
+		return true;
+	}
+	
+	/**
+	 * @param rows the rows
+	 * @param row the row to find
+	 * 
+	 * @return the index of the given row (compared by identity) or <code>-1</code>
+	 */
+	/*package*/ static int indexOf(List<Row> rows, Row row) {
+		for (int i = rows.size() - 1; i >= 0; i--) {
+			if (rows.get(i) == row) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
 	/**
 	 * Sorts the rows by the given comparator.
 	 * 
 	 * @param comparator the comparator
 	 */
 	public void sort(Comparator<Row> comparator) {
+		checkModifiable();
 		Collections.sort(rows, comparator);
+		sorted(this);
 	}
 	
 	/**
 	 * @return <code>true</code> if at least one row as sub rows.
 	 */
 	public boolean isTree() {
-		return rows.stream().anyMatch(r -> r.hasRows());
+		for (int i = 0; i < rows.size(); i++) {
+			if (rows.get(i).hasRows()) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	@Override
@@ -144,6 +291,29 @@ public class TreeTable implements RowContainer {
 		return convert(handler);
 	}
 	
+	/**
+	 * Writes the default text representation of the given tree/table to the given output.
+	 * 
+	 * @param out the output to write to
+	 * 
+	 * @throws IOException if the output can not be written
+	 */
+	public void toText(Appendable out) throws IOException {
+		toText(new TreeTableToTextConverter(), out);
+	}
+	
+	/**
+	 * Writes the text representation of the given tree/table line by line to the given output.
+	 * 
+	 * @param handler the handler to convert the underlying tree/table to the corresponding text
+	 * @param out the output to write to
+	 * 
+	 * @throws IOException if the output can not be written
+	 */
+	public void toText(TreeTableToTextConverter handler, Appendable out) throws IOException {
+		handler.render(this, out);
+	}
+	
 	/**
 	 * Converts the underlying tree/table.
 	 * 
@@ -156,11 +326,28 @@ public class TreeTable implements RowContainer {
 		return converter.convert(this);
 	}
 
+	@Override
+	public Stream<Row> stream() {
+		return StreamSupport.stream(new RowSpliterator(this), false);
+	}
+	
 	@Override
 	public void walk(RowVisitor visitor) {
 		new RowWalker(visitor).walk(this);
 	}
 
+	/**
+	 * Copies all rows of this tree table to the top level of the given copy (used by the copy constructor).
+	 * 
+	 * @param copy the copy of this tree table
+	 */
+	/*package*/ void copyRows(TreeTable copy) {
+		copy.rows.ensureCapacity(rows.size());
+		for (Row row : rows) {
+			copy.rows.add(row.copy(copy, null, copy.columns));
+		}
+	}
+
 	/**
 	 * Copies the given tree.
 	 * 
@@ -175,16 +362,397 @@ public class TreeTable implements RowContainer {
 		return !rows.isEmpty();
 	}
 
+	/**
+	 * @return <code>1</code> if the table has rows (the depth of the rows on the top level), otherwise <code>0</code>
+	 */
 	@Override
 	public int depth() {
-		return rows.stream().mapToInt(r -> r.depth()).max().orElseGet(() -> 0);
+		return rows.isEmpty() ? 0 : 1;
+	}
+	
+	/**
+	 * Returns the height of the tree, i.e. the maximum depth of all rows (<code>0</code> if the table has no rows).
+	 * The height is kept up to date when rows are added, so this is a constant time operation
+	 * (except for the first call after rows were removed). Only loaded rows are taken into account, i.e. the sub rows
+	 * of lazy rows (see {@link RowLoader}) are not loaded.
+	 * 
+	 * @return the height of the tree
+	 */
+	public int height() {
+		if (height < 0) {
+			// walk the loaded rows with an explicit stack to support arbitrary deep trees
+			int max = 0;
+			ArrayDeque<Row> stack = new ArrayDeque<>(rows);
+			while (!stack.isEmpty()) {
+				Row row = stack.pop();
+				max = Math.max(max, row.depth());
+				List<Row> subRows = row.loadedRows();
+				if (subRows != null) {
+					for (int i = 0; i < subRows.size(); i++) {
+						stack.push(subRows.get(i));
+					}
+				}
+			}
+			height = max;
+		}
+		return height;
+	}
+	
+	/**
+	 * Makes the tree table immutable: rows can not be added, removed or sorted anymore and the cells, parameters 
+	 * and data of the rows can not be modified (an {@link UnsupportedOperationException} is thrown instead).
+	 * A frozen tree table can be read and rendered by multiple threads without synchronization 
+	 * (after it was safely published). Use {@link #copy()} to get a modifiable copy.
+	 * 
+	 * @return this tree table
+	 */
+	public TreeTable freeze() {
+		// compute the lazily computed height now, so reading does not modify the tree table
+		height();
+		frozen = true;
+		return this;
+	}
+	
+	/**
+	 * Returns an immutable snapshot of the current state of the tree table, which can be read and rendered by 
+	 * multiple threads without synchronization while the tree table is modified further (publish the snapshot safely, 
+	 * e.g. by a <code>volatile</code> field).
+	 * <p>
+	 * Snapshots are persistent: a new snapshot only copies the rows which were modified since the last snapshot 
+	 * (and their ancestors), all other rows are shared with the last snapshot. If the tree table was not modified 
+	 * at all, the last snapshot is returned again. As rows are shared, {@link Row#parent()} of a row of a snapshot 
+	 * returns the parent row of the snapshot the row was copied for. The columns (i.e. the display settings) are 
+	 * shared with the tree table. A frozen tree table is its own snapshot.
+	 * 
+	 * @return the snapshot
+	 */
+	public TreeTable snapshot() {
+		if (frozen) {
+			return this;
+		}
+		if (snapshot == null) {
+			TreeTable result = new TreeTable(columns);
+			result.rows.ensureCapacity(rows.size());
+			for (Row row : rows) {
+				result.rows.add(row.snapshot(result, null));
+			}
+			result.height = height();
+			result.parameters = new ParameterMap(result, parameters);
+			result.freeze();
+			snapshot = result;
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * @return <code>true</code> if the tree table is immutable
+	 * 
+	 * @see #freeze()
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if the tree table is frozen
+	 */
+	/*package*/ void checkModifiable() {
+		if (frozen) {
+			throw new UnsupportedOperationException("The tree table is frozen"); //$NON-NLS-1$
+		}
+	}
+	
+	/**
+	 * Adds the given listener, which is notified about all modifications of the tree table.
+	 * 
+	 * @param listener the listener
+	 */
+	public void addTreeTableListener(TreeTableListener listener) {
+		if (listeners == null) {
+			listeners = new ArrayList<>(1);
+		}
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes the given listener.
+	 * 
+	 * @param listener the listener
+	 */
+	public void removeTreeTableListener(TreeTableListener listener) {
+		if (listeners != null) {
+			listeners.remove(listener);
+			if (listeners.isEmpty()) {
+				listeners = null;
+			}
+		}
+	}
+	
+	/**
+	 * Starts a batch of modifications: the events are collected and delivered to the listeners together 
+	 * when the (outermost) batch ends, e.g. to avoid one callback per row when a large tree is loaded.
+	 * Batches may be nested, each call must be followed by a call of {@link #endBatch()}:
+	 * 
+	 * <pre>
+	 * table.beginBatch();
+	 * try {
+	 *     ...
+	 * } finally {
+	 *     table.endBatch();
+	 * }
+	 * </pre>
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
+	
+	/**
+	 * Ends a batch of modifications started by {@link #beginBatch()} and delivers the collected events 
+	 * if the outermost batch ends.
+	 * 
+	 * @throws IllegalStateException if no batch was started
+	 */
+	public void endBatch() {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("No batch was started"); //$NON-NLS-1$
+		}
+		if (--batchDepth == 0 && pendingEvents != null) {
+			List<TreeTableEvent> events = Collections.unmodifiableList(pendingEvents);
+			pendingEvents = null;
+			deliver(events);
+		}
+	}
+	
+	/**
+	 * Delivers the given event to the listeners (inside of a batch it is only collected).
+	 * 
+	 * @param event the event
+	 */
+	private void fire(TreeTableEvent event) {
+		if (batchDepth > 0) {
+			if (pendingEvents == null) {
+				pendingEvents = new ArrayList<>();
+			}
+			pendingEvents.add(event);
+		} else {
+			deliver(Collections.singletonList(event));
+		}
+	}
+	
+	/**
+	 * @param events the events to deliver to the listeners
+	 */
+	private void deliver(List<TreeTableEvent> events) {
+		if (listeners != null) {
+			// listeners may remove themselves while they are notified
+			for (TreeTableListener listener : listeners.toArray(new TreeTableListener[listeners.size()])) {
+				listener.treeTableChanged(events);
+			}
+		}
+	}
+	
+	/**
+	 * Attaches a new tracker which collects the modifications of the tree table.
+	 * 
+	 * @return the tracker
+	 */
+	/*package*/ DirtyTracker track() {
+		if (trackers == null) {
+			trackers = new ArrayList<>(1);
+		}
+		DirtyTracker tracker = new DirtyTracker();
+		trackers.add(tracker);
+		return tracker;
+	}
+	
+	/**
+	 * Detaches the given tracker.
+	 * 
+	 * @param tracker the tracker
+	 */
+	/*package*/ void untrack(DirtyTracker tracker) {
+		if (trackers != null) {
+			trackers.remove(tracker);
+			if (trackers.isEmpty()) {
+				trackers = null;
+			}
+		}
+	}
+	
+	/**
+	 * Called after a row was added, updates the height of the tree and notifies the trackers and listeners.
+	 * 
+	 * @param container the container the row was added to
+	 * @param row the added row
+	 */
+	/*package*/ void rowAdded(RowContainer container, Row row) {
+		invalidateSnapshot(container);
+		if (height >= 0 && row.depth() > height) {
+			height = row.depth();
+		}
+		structureChanged();
+		if (listeners != null) {
+			fire(TreeTableEvent.rowAdded(this, container, row));
+		}
+	}
+	
+	/**
+	 * Called after the sub rows of the given row were loaded by a {@link RowLoader}. Loading is not a modification,
+	 * so no listeners are notified, but the height, the snapshot and the trackers are updated.
+	 * 
+	 * @param row the row
+	 */
+	/*package*/ void rowsLoaded(Row row) {
+		invalidateSnapshot(row);
+		if (height >= 0 && row.hasRows() && row.depth() + 1 > height) {
+			height = row.depth() + 1;
+		}
+		structureChanged();
+	}
+	
+	/**
+	 * Called after the sub rows of the given row were unloaded by a {@link RowLoader}. The height is kept,
+	 * because the sub rows are loaded again on the next access.
+	 * 
+	 * @param row the row
+	 */
+	/*package*/ void rowsUnloaded(Row row) {
+		invalidateSnapshot(row);
+		structureChanged();
+	}
+	
+	/**
+	 * Called after a row was removed.
+	 * 
+	 * @param container the container the row was removed from
+	 * @param row the removed row
+	 * @param index the former index of the row
+	 */
+	/*package*/ void rowRemoved(RowContainer container, Row row, int index) {
+		// the height is computed again on demand
+		height = -1;
+		invalidateSnapshot(container);
+		structureChanged();
+		if (listeners != null) {
+			fire(TreeTableEvent.rowRemoved(this, container, row, index));
+		}
+	}
+	
+	/**
+	 * Called after the rows of the given container were sorted.
+	 * 
+	 * @param container the container
+	 */
+	/*package*/ void sorted(RowContainer container) {
+		invalidateSnapshot(container);
+		structureChanged();
+		if (listeners != null) {
+			fire(TreeTableEvent.sorted(this, container));
+		}
+	}
+	
+	/**
+	 * Called after the content of a cell was changed.
+	 * 
+	 * @param row the row
+	 * @param columnIndex the index of the column
+	 * @param oldContent the old content of the cell
+	 * @param newContent the new content of the cell
+	 */
+	/*package*/ void cellChanged(Row row, int columnIndex, Object oldContent, Object newContent) {
+		invalidateSnapshot(row);
+		rowChanged(row, columnIndex, columnIndex + 1);
+		if (listeners != null) {
+			fire(TreeTableEvent.cellChanged(this, row, columnIndex, oldContent, newContent));
+		}
+	}
+	
+	/**
+	 * Called after a parameter of a row was changed.
+	 * 
+	 * @param row the row
+	 * @param key the key of the parameter
+	 * @param oldValue the old value
+	 * @param newValue the new value (<code>null</code> if the parameter was removed)
+	 */
+	/*package*/ void parameterChanged(Row row, String key, Object oldValue, Object newValue) {
+		invalidateSnapshot(row);
+		// the parameters may affect all cells (e.g. the indent)
+		rowChanged(row, 0, columns.length);
+		if (listeners != null) {
+			fire(TreeTableEvent.parameterChanged(this, row, key, oldValue, newValue));
+		}
+	}
+	
+	/**
+	 * Called after a parameter of the tree table was changed.
+	 * 
+	 * @param key the key of the parameter
+	 * @param oldValue the old value
+	 * @param newValue the new value (<code>null</code> if the parameter was removed)
+	 */
+	/*package*/ void parameterChanged(String key, Object oldValue, Object newValue) {
+		// the parameters are part of the snapshot
+		snapshot = null;
+		if (listeners != null) {
+			fire(TreeTableEvent.parameterChanged(this, null, key, oldValue, newValue));
+		}
+	}
+	
+	/**
+	 * Called after the data of a row was assigned. The data is not displayed, so only the trackers are notified
+	 * without a changed column.
+	 * 
+	 * @param row the row
+	 */
+	/*package*/ void dataChanged(Row row) {
+		invalidateSnapshot(row);
+		rowChanged(row, 0, 0);
+	}
+	
+	/**
+	 * Discards the copies of the given container and its ancestors in the last snapshot.
+	 * 
+	 * @param container the modified container
+	 */
+	private void invalidateSnapshot(RowContainer container) {
+		snapshot = null;
+		if (container instanceof Row) {
+			((Row) container).invalidateSnapshot();
+		}
+	}
+	
+	/**
+	 * Notifies the attached trackers that the given row changed.
+	 * 
+	 * @param row the row
+	 * @param fromColumn the index of the first changed column (inclusive)
+	 * @param toColumn the index of the last changed column (exclusive)
+	 */
+	private void rowChanged(Row row, int fromColumn, int toColumn) {
+		if (trackers != null) {
+			for (int i = 0; i < trackers.size(); i++) {
+				trackers.get(i).rowChanged(row, fromColumn, toColumn);
+			}
+		}
+	}
+	
+	/**
+	 * Notifies the attached trackers that rows were added, removed or sorted.
+	 */
+	private void structureChanged() {
+		if (trackers != null) {
+			for (int i = 0; i < trackers.size(); i++) {
+				trackers.get(i).structureChanged();
+			}
+		}
 	}
 
 	/**
-	 * @return the parameters assigned to the given tree
+	 * @return the parameters assigned to the given tree (unmodifiable if the tree table is frozen)
 	 */
 	public Map<String, Object> getParameters() {
-		return parameters;
+		return frozen ? Collections.unmodifiableMap(parameters) : parameters;
 	}
 
 }
@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads tree tables written by a {@link TreeTableBinaryWriter}.
+ * <p>
+ * The rows are created and attached in a single pass: the number of sub rows is known before the sub rows are read,
+ * so the lists of the sub rows are allocated with their exact size and no listeners or trackers are involved.
+ * The input stream is read in large chunks into an internal buffer.
+ *
+ * @author Dominik Glaser
+ */
+public class TreeTableBinaryReader implements Closeable {
+
+	private static final ColumnAlignment[] ALIGNMENTS = ColumnAlignment.values();
+	// the maximum capacity allocated in advance for a count read from the stream (larger lists grow while they are read)
+	private static final int MAX_CAPACITY = 1 << 16;
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[1 << 16];
+	private int position;
+	private int limit;
+	private final String[] strings = new String[BinaryFormat.STRING_TABLE_SIZE];
+
+	/**
+	 * Constructor.
+	 *
+	 * @param in the input stream
+	 */
+	public TreeTableBinaryReader(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the next tree table.
+	 *
+	 * @return the tree table
+	 *
+	 * @throws EOFException if the end of the stream is reached (before the next tree table)
+	 * @throws StreamCorruptedException if the stream does not contain a tree table in the expected format
+	 *         (including a stream which ends within a tree table)
+	 * @throws IOException if the input can not be read
+	 */
+	public TreeTable read() throws IOException {
+		if (readInt() != BinaryFormat.MAGIC) {
+			throw new StreamCorruptedException("The stream does not contain a tree table"); //$NON-NLS-1$
+		}
+		try {
+			return readTreeTable();
+		} catch (EOFException e) {
+			StreamCorruptedException exception = new StreamCorruptedException("The stream ends within a tree table"); //$NON-NLS-1$
+			exception.initCause(e);
+			throw exception;
+		}
+	}
+
+	private TreeTable readTreeTable() throws IOException {
+		int version = readByte();
+		if (version != BinaryFormat.VERSION) {
+			throw new StreamCorruptedException("Unsupported version: " + version); //$NON-NLS-1$
+		}
+		// each tree table has its own string table
+		Arrays.fill(strings, null);
+		// the counts are not trusted: a corrupt count must not allocate more than the stream contains
+		int columnCount = readVarInt();
+		List<Column> columnList = new ArrayList<>(Math.min(columnCount, MAX_CAPACITY));
+		for (int i = 0; i < columnCount; i++) {
+			Object label = readValue();
+			if (label != null && !(label instanceof String)) {
+				throw new StreamCorruptedException("Invalid column label: " + label); //$NON-NLS-1$
+			}
+			int alignment = readByte();
+			if (alignment > ALIGNMENTS.length) {
+				throw new StreamCorruptedException("Invalid column alignment: " + alignment); //$NON-NLS-1$
+			}
+			Column column = new Column((String) label, alignment > 0 ? ALIGNMENTS[alignment - 1] : null);
+			column.setMaxWidth(readVarInt());
+			columnList.add(column);
+		}
+		Column[] columns = columnList.toArray(new Column[columnCount]);
+		TreeTable table = new TreeTable(columns);
+		table.getParameters().putAll(readParameters());
+		int rowCount = readVarInt();
+		// the number of rows announced so far, which must fit into the tree table
+		long announced = rowCount;
+		table.initRows(Math.min(rowCount, MAX_CAPACITY));
+		// the rows whose sub rows are read and the numbers of their remaining sub rows
+		Row[] parents = new Row[16];
+		int[] remaining = new int[16];
+		int size = 0;
+		remaining[size++] = rowCount;
+		while (size > 0) {
+			if (remaining[size - 1] == 0) {
+				parents[--size] = null;
+				continue;
+			}
+			remaining[size - 1]--;
+			Row row = new Row(table, parents[size - 1], columns, null);
+			int childCount = readVarInt();
+			int flags = readByte();
+			Object[] content = new Object[columns.length];
+			for (int i = 0; i < content.length; i++) {
+				content[i] = readValue();
+			}
+			row.adoptContent(content);
+			if ((flags & BinaryFormat.FLAG_PARAMETERS) != 0) {
+				row.getParameters().putAll(readParameters());
+			}
+			if ((flags & BinaryFormat.FLAG_DATA) != 0) {
+				row.setData(readValue());
+			}
+			table.attach(row);
+			if (childCount > 0) {
+				announced += childCount;
+				if (announced > Integer.MAX_VALUE) {
+					throw new StreamCorruptedException("Invalid row count: " + announced); //$NON-NLS-1$
+				}
+				row.initRows(Math.min(childCount, MAX_CAPACITY));
+				if (size == parents.length) {
+					parents = Arrays.copyOf(parents, size * 2);
+					remaining = Arrays.copyOf(remaining, size * 2);
+				}
+				parents[size] = row;
+				remaining[size] = childCount;
+				size++;
+			}
+		}
+		return table;
+	}
+
+	private Map<String, Object> readParameters() throws IOException {
+		int count = readVarInt();
+		Map<String, Object> parameters = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			Object key = readValue();
+			if (!(key instanceof String)) {
+				throw new StreamCorruptedException("Invalid parameter key: " + key); //$NON-NLS-1$
+			}
+			parameters.put((String) key, readValue());
+		}
+		return parameters;
+	}
+
+	/**
+	 * Reads a value with its type tag.
+	 *
+	 * @return the value
+	 *
+	 * @throws IOException if the input can not be read
+	 */
+	private Object readValue() throws IOException {
+		int tag = readByte();
+		switch (tag) {
+			case BinaryFormat.TAG_NULL:
+				return null;
+			case BinaryFormat.TAG_EMPTY_STRING:
+				return ""; //$NON-NLS-1$
+			case BinaryFormat.TAG_STRING:
+				return readString();
+			case BinaryFormat.TAG_SHARED_STRING:
+				String value = readString();
+				strings[BinaryFormat.slot(value)] = value;
+				return value;
+			case BinaryFormat.TAG_STRING_REF:
+				int slot = readVarInt();
+				if (slot >= strings.length || strings[slot] == null) {
+					throw new StreamCorruptedException("Invalid string reference: " + slot); //$NON-NLS-1$
+				}
+				return strings[slot];
+			case BinaryFormat.TAG_TRUE:
+				return Boolean.TRUE;
+			case BinaryFormat.TAG_FALSE:
+				return Boolean.FALSE;
+			case BinaryFormat.TAG_INT:
+				return Integer.valueOf((int) zigZag(readVarLong()));
+			case BinaryFormat.TAG_LONG:
+				return Long.valueOf(zigZag(readVarLong()));
+			case BinaryFormat.TAG_DOUBLE:
+				return Double.valueOf(Double.longBitsToDouble(readLong()));
+			case BinaryFormat.TAG_FLOAT:
+				return Float.valueOf(Float.intBitsToFloat(readInt()));
+			case BinaryFormat.TAG_SHORT:
+				return Short.valueOf((short) zigZag(readVarLong()));
+			case BinaryFormat.TAG_BYTE:
+				return Byte.valueOf((byte) readByte());
+			case BinaryFormat.TAG_CHAR:
+				return Character.valueOf((char) readVarInt());
+			default:
+				throw new StreamCorruptedException("Invalid type tag: " + tag); //$NON-NLS-1$
+		}
+	}
+
+	private String readString() throws IOException {
+		int length = readVarInt();
+		if (length <= buffer.length) {
+			ensure(length);
+			String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return value;
+		}
+		// the array grows with the bytes read, so a corrupt length does not allocate more than the stream contains
+		byte[] bytes = new byte[Math.max(buffer.length, limit - position)];
+		int read = limit - position;
+		System.arraycopy(buffer, position, bytes, 0, read);
+		position = limit;
+		while (read < length) {
+			if (read == bytes.length) {
+				bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+			}
+			int count = in.read(bytes, read, bytes.length - read);
+			if (count < 0) {
+				throw new EOFException();
+			}
+			read += count;
+		}
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private static long zigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private int readVarInt() throws IOException {
+		long value = readVarLong();
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new StreamCorruptedException("Invalid count: " + value); //$NON-NLS-1$
+		}
+		return (int) value;
+	}
+
+	private long readVarLong() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("Invalid variable length integer"); //$NON-NLS-1$
+	}
+
+	private int readByte() throws IOException {
+		if (position == limit) {
+			ensure(1);
+		}
+		return buffer[position++] & 0xFF;
+	}
+
+	private int readInt() throws IOException {
+		ensure(4);
+		int value = ((buffer[position] & 0xFF) << 24) | ((buffer[position + 1] & 0xFF) << 16)
+				| ((buffer[position + 2] & 0xFF) << 8) | (buffer[position + 3] & 0xFF);
+		position += 4;
+		return value;
+	}
+
+	private long readLong() throws IOException {
+		return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Ensures that the given number of bytes is available in the buffer.
+	 *
+	 * @param bytes the number of bytes (at most the size of the buffer)
+	 *
+	 * @throws IOException if the input can not be read or ends before
+	 */
+	private void ensure(int bytes) throws IOException {
+		if (limit - position >= bytes) {
+			return;
+		}
+		System.arraycopy(buffer, position, buffer, 0, limit - position);
+		limit -= position;
+		position = 0;
+		while (limit < bytes) {
+			int count = in.read(buffer, limit, buffer.length - limit);
+			if (count < 0) {
+				throw new EOFException();
+			}
+			limit += count;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
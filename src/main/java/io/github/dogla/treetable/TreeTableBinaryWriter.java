@@ -0,0 +1,368 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Writes tree tables in a compact binary format, which can be read by a {@link TreeTableBinaryReader}.
+ * <p>
+ * The format consists of a header with the columns and the parameters of the tree table, followed by the rows
+ * in the order of {@link TreeTable#walk(io.github.dogla.treetable.util.RowVisitor)}, i.e. each row before its sub rows.
+ * Each row starts with the number of its sub rows, so the reader can attach the rows without any lookup.
+ * Counts and integral numbers are encoded as variable length integers (small values take a single byte)
+ * and each value is preceded by a type tag. Short strings are kept in a string table of a fixed size and repeated
+ * strings are written as a reference into this table, so repeated values (e.g. a status column) take only a few bytes.
+ * <p>
+ * The supported values of the cells, the parameters and the data are <code>null</code>, strings, booleans,
+ * characters, bytes, shorts, integers, longs, floats and doubles. Other values are rejected with an
+ * {@link IllegalArgumentException}, because they could not be restored with their type. The values are checked
+ * while they are written (a separate pass would walk all rows twice), so the stream then ends with an incomplete
+ * tree table, which the reader rejects with a {@link java.io.StreamCorruptedException}, and the writer must not be
+ * used any more. Convert other values (e.g. the data of the rows) into supported ones before writing.
+ * <p>
+ * The rows are written with an explicit stack (arbitrary deep trees are supported) into an internal buffer,
+ * which is passed to the output stream in large chunks.
+ *
+ * @author Dominik Glaser
+ */
+public class TreeTableBinaryWriter implements Closeable, Flushable {
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[1 << 16];
+	private int position;
+	// the number of bytes passed to the output stream so far
+	private long written;
+	private final String[] strings = new String[BinaryFormat.STRING_TABLE_SIZE];
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out the output stream
+	 */
+	public TreeTableBinaryWriter(OutputStream out) {
+		this(out, 0);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out the output stream
+	 * @param offset the offset of the output stream in the file (see {@link #offset()})
+	 */
+	/*package*/ TreeTableBinaryWriter(OutputStream out, long offset) {
+		this.out = out;
+		this.written = offset;
+	}
+
+	/**
+	 * Writes the given tree table (with the parameters and the data of all rows). Multiple tree tables can be written
+	 * to the same stream.
+	 *
+	 * @param treeTable the tree table
+	 *
+	 * @throws IOException if the output can not be written
+	 * @throws IllegalArgumentException if a cell, a parameter or the data of a row has an unsupported type
+	 *         (the tree table is written incompletely, see above)
+	 */
+	public void write(TreeTable treeTable) throws IOException {
+		// each tree table has its own string table
+		Arrays.fill(strings, null);
+		writeInt(BinaryFormat.MAGIC);
+		writeByte(BinaryFormat.VERSION);
+		writeColumns(treeTable);
+		Column[] columns = treeTable.getColumns();
+		writeVarInt(treeTable.getRowCount());
+		// walk with an explicit stack to support arbitrary deep trees
+		RowContainer[] containers = new RowContainer[16];
+		int[] positions = new int[16];
+		int size = 0;
+		containers[size++] = treeTable;
+		while (size > 0) {
+			RowContainer container = containers[size - 1];
+			int index = positions[size - 1]++;
+			if (index >= container.getRowCount()) {
+				containers[--size] = null;
+				continue;
+			}
+			Row row = container.getRow(index);
+			writeRow(row, columns.length);
+			if (row.hasRows()) {
+				if (size == containers.length) {
+					containers = Arrays.copyOf(containers, size * 2);
+					positions = Arrays.copyOf(positions, size * 2);
+				}
+				containers[size] = row;
+				positions[size] = 0;
+				size++;
+			}
+		}
+	}
+
+	/**
+	 * Writes the columns and the parameters of the given tree table.
+	 *
+	 * @param treeTable the tree table
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	/*package*/ void writeColumns(TreeTable treeTable) throws IOException {
+		Column[] columns = treeTable.getColumns();
+		writeVarInt(columns.length);
+		for (Column column : columns) {
+			writeValue(column.getLabel());
+			ColumnAlignment alignment = column.getAlignment();
+			writeByte(alignment != null ? alignment.ordinal() + 1 : 0);
+			// negative widths are not limited either
+			writeVarInt(Math.max(column.getMaxWidth(), 0));
+		}
+		writeParameters(treeTable.getParameters());
+	}
+
+	private void writeRow(Row row, int columnCount) throws IOException {
+		writeVarInt(row.getRowCount());
+		writeRecord(row, columnCount);
+	}
+
+	/**
+	 * Writes the flags, the cells, the parameters and the data of the given row.
+	 *
+	 * @param row the row
+	 * @param columnCount the number of columns
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	/*package*/ void writeRecord(Row row, int columnCount) throws IOException {
+		boolean parameters = row.hasParameters();
+		Object data = row.getData();
+		writeByte((parameters ? BinaryFormat.FLAG_PARAMETERS : 0) | (data != null ? BinaryFormat.FLAG_DATA : 0));
+		for (int i = 0; i < columnCount; i++) {
+			writeValue(row.getCellContent(i));
+		}
+		if (parameters) {
+			writeParameters(row.getParameters());
+		}
+		if (data != null) {
+			writeValue(data);
+		}
+	}
+
+	private void writeParameters(Map<String, Object> parameters) throws IOException {
+		writeVarInt(parameters.size());
+		for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+			writeValue(entry.getKey());
+			writeValue(entry.getValue());
+		}
+	}
+
+	/**
+	 * Writes the given value with its type tag.
+	 *
+	 * @param value the value
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	/*package*/ void writeValue(Object value) throws IOException {
+		if (value == null) {
+			writeByte(BinaryFormat.TAG_NULL);
+		} else if (value instanceof String) {
+			writeString((String) value);
+		} else if (value instanceof Integer) {
+			writeByte(BinaryFormat.TAG_INT);
+			writeVarLong(zigZag((Integer) value));
+		} else if (value instanceof Long) {
+			writeByte(BinaryFormat.TAG_LONG);
+			writeVarLong(zigZag((Long) value));
+		} else if (value instanceof Double) {
+			writeByte(BinaryFormat.TAG_DOUBLE);
+			writeLong(Double.doubleToRawLongBits((Double) value));
+		} else if (value instanceof Boolean) {
+			writeByte((Boolean) value ? BinaryFormat.TAG_TRUE : BinaryFormat.TAG_FALSE);
+		} else if (value instanceof Float) {
+			writeByte(BinaryFormat.TAG_FLOAT);
+			writeInt(Float.floatToRawIntBits((Float) value));
+		} else if (value instanceof Short) {
+			writeByte(BinaryFormat.TAG_SHORT);
+			writeVarLong(zigZag((Short) value));
+		} else if (value instanceof Byte) {
+			writeByte(BinaryFormat.TAG_BYTE);
+			writeByte((Byte) value);
+		} else if (value instanceof Character) {
+			writeByte(BinaryFormat.TAG_CHAR);
+			writeVarInt((Character) value);
+		} else {
+			throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Writes the given string with its type tag.
+	 *
+	 * @param value the string
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	/*package*/ void writeString(String value) throws IOException {
+		int length = value.length();
+		if (length == 0) {
+			writeByte(BinaryFormat.TAG_EMPTY_STRING);
+			return;
+		}
+		if (length <= BinaryFormat.MAX_SHARED_LENGTH) {
+			int slot = BinaryFormat.slot(value);
+			if (value.equals(strings[slot])) {
+				writeByte(BinaryFormat.TAG_STRING_REF);
+				writeVarInt(slot);
+				return;
+			}
+			strings[slot] = value;
+			writeByte(BinaryFormat.TAG_SHARED_STRING);
+		} else {
+			writeByte(BinaryFormat.TAG_STRING);
+		}
+		writeUTF8(value);
+	}
+
+	/**
+	 * Writes the length of the UTF-8 representation of the given string and the UTF-8 representation itself.
+	 *
+	 * @param value the string
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	/*package*/ void writeUTF8(String value) throws IOException {
+		int length = value.length();
+		// fast path for ASCII strings, which are the UTF-8 bytes themselves
+		if (length < buffer.length / 2) {
+			ensure(length + 5);
+			int start = position;
+			writeVarInt(length);
+			int offset = position;
+			int i = 0;
+			for (; i < length; i++) {
+				char c = value.charAt(i);
+				if (c >= 0x80) {
+					break;
+				}
+				buffer[offset + i] = (byte) c;
+			}
+			if (i == length) {
+				position = offset + length;
+				return;
+			}
+			position = start;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		writeBytes(bytes);
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/*package*/ void writeVarInt(int value) throws IOException {
+		ensure(5);
+		while ((value & ~0x7F) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	/*package*/ void writeVarLong(long value) throws IOException {
+		ensure(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	/*package*/ void writeByte(int value) throws IOException {
+		ensure(1);
+		buffer[position++] = (byte) value;
+	}
+
+	/*package*/ void writeInt(int value) throws IOException {
+		ensure(4);
+		buffer[position++] = (byte) (value >>> 24);
+		buffer[position++] = (byte) (value >>> 16);
+		buffer[position++] = (byte) (value >>> 8);
+		buffer[position++] = (byte) value;
+	}
+
+	/*package*/ void writeLong(long value) throws IOException {
+		writeInt((int) (value >>> 32));
+		writeInt((int) value);
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		if (bytes.length > buffer.length - position) {
+			drain();
+			if (bytes.length > buffer.length) {
+				out.write(bytes);
+				written += bytes.length;
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if (buffer.length - position < bytes) {
+			drain();
+		}
+	}
+
+	private void drain() throws IOException {
+		if (position > 0) {
+			out.write(buffer, 0, position);
+			written += position;
+			position = 0;
+		}
+	}
+
+	/**
+	 * @return the offset of the next written byte in the file (the number of bytes written so far)
+	 */
+	/*package*/ long offset() {
+		return written + position;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			drain();
+		} finally {
+			out.close();
+		}
+	}
+
+}
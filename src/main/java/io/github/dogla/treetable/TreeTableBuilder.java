@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Builds a large {@link TreeTable} in a single pass (see {@link TreeTable#builder(int, String...)}).
+ * <p>
+ * The rows are identified by their index in the order they were added, so sub rows are attached by the index of their parent row
+ * (<code>-1</code> for the rows on the top level) and the rows can be loaded from flat sources like a database result or a file.
+ * The rows are collected in arrays sized for the expected number of rows and are attached to their parents when the tree table is built,
+ * so the lists of sub rows are allocated once with their final size. The cells of a column batch
+ * (see {@link #addRows(int[], Object[]...)}) are stored without copying them again.
+ * <p>
+ * No events are delivered for the rows added by a builder. A builder can only be used once.
+ *
+ * @author Dominik Glaser
+ */
+public final class TreeTableBuilder {
+
+	private final Column[] columns;
+	private TreeTable table;
+	private Row[] rows;
+	private int[] parents;
+	private int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param columns the columns
+	 * @param expectedRows the expected number of rows
+	 */
+	/*package*/ TreeTableBuilder(Column[] columns, int expectedRows) {
+		if (expectedRows < 0) {
+			throw new IllegalArgumentException("Negative number of rows: " + expectedRows); //$NON-NLS-1$
+		}
+		this.columns = columns;
+		this.table = new TreeTable(columns);
+		this.rows = new Row[Math.max(expectedRows, 16)];
+		this.parents = new int[rows.length];
+	}
+
+	/**
+	 * Adds a row on the top level.
+	 *
+	 * @param cells the cells
+	 *
+	 * @return the index of the new row
+	 */
+	public int addRow(Object... cells) {
+		return addSubRow(-1, cells);
+	}
+
+	/**
+	 * Adds a sub row to the given parent row.
+	 *
+	 * @param parentIndex the index of the parent row or <code>-1</code> for a row on the top level
+	 * @param cells the cells
+	 *
+	 * @return the index of the new row
+	 *
+	 * @throws IndexOutOfBoundsException if there is no row with the given parent index
+	 */
+	public int addSubRow(int parentIndex, Object... cells) {
+		return add(parentIndex, new Row(table, parent(parentIndex), columns, cells));
+	}
+
+	/**
+	 * Adds the given rows on the top level.
+	 *
+	 * @param cells the cells of the rows
+	 *
+	 * @return the index of the first new row (the rows have consecutive indexes)
+	 */
+	public int addRows(Iterable<Object[]> cells) {
+		return addSubRows(-1, cells);
+	}
+
+	/**
+	 * Adds the given sub rows to the given parent row.
+	 *
+	 * @param parentIndex the index of the parent row or <code>-1</code> for rows on the top level
+	 * @param cells the cells of the rows
+	 *
+	 * @return the index of the first new row (the rows have consecutive indexes)
+	 *
+	 * @throws IndexOutOfBoundsException if there is no row with the given parent index
+	 */
+	public int addSubRows(int parentIndex, Iterable<Object[]> cells) {
+		Row parent = parent(parentIndex);
+		int first = size;
+		for (Object[] rowCells : cells) {
+			add(parentIndex, new Row(table, parent, columns, rowCells));
+		}
+		return first;
+	}
+
+	/**
+	 * Adds a batch of rows given column by column, i.e. the row <code>r</code> of the batch has the parent index
+	 * <code>parentIndexes[r]</code> and the cells <code>columnValues[0][r], columnValues[1][r], ...</code>.
+	 * The parent index may refer to a row of the same batch which is added before.
+	 *
+	 * @param parentIndexes the index of the parent row of each row (<code>-1</code> for rows on the top level)
+	 * @param columnValues the cells of each column (missing columns are empty)
+	 *
+	 * @return the index of the first new row (the rows have consecutive indexes)
+	 *
+	 * @throws IllegalArgumentException if there are more value arrays than columns or a value array is too short
+	 * @throws IndexOutOfBoundsException if there is no row with a given parent index
+	 */
+	public int addRows(int[] parentIndexes, Object[]... columnValues) {
+		int count = parentIndexes.length;
+		if (columnValues.length > columns.length) {
+			throw new IllegalArgumentException("Too many columns: " + columnValues.length); //$NON-NLS-1$
+		}
+		for (Object[] values : columnValues) {
+			if (values.length < count) {
+				throw new IllegalArgumentException("Too few values: " + values.length); //$NON-NLS-1$
+			}
+		}
+		ensureCapacity(size + count);
+		int first = size;
+		for (int r = 0; r < count; r++) {
+			int parentIndex = parentIndexes[r];
+			Row row = new Row(table, parent(parentIndex), columns, null);
+			Object[] content = new Object[columns.length];
+			for (int c = 0; c < columns.length; c++) {
+				Object value = c < columnValues.length ? columnValues[c][r] : null;
+				content[c] = value != null ? value : ""; //$NON-NLS-1$
+			}
+			row.adoptContent(content);
+			add(parentIndex, row);
+		}
+		return first;
+	}
+
+	/**
+	 * @return the number of added rows
+	 */
+	public int getRowCount() {
+		return size;
+	}
+
+	/**
+	 * @param index the index of the row
+	 *
+	 * @return the row with the given index
+	 *
+	 * @throws IndexOutOfBoundsException if there is no row with the given index
+	 */
+	public Row getRow(int index) {
+		checkOpen();
+		return rows[Objects.checkIndex(index, size)];
+	}
+
+	/**
+	 * Builds the tree table by attaching all rows to their parents. The builder can not be used afterwards.
+	 *
+	 * @return the tree table
+	 */
+	public TreeTable build() {
+		checkOpen();
+		// count the sub rows first to allocate each list once with its final size
+		int[] counts = new int[size];
+		int topLevel = 0;
+		for (int i = 0; i < size; i++) {
+			int parent = parents[i];
+			if (parent < 0) {
+				topLevel++;
+			} else {
+				counts[parent]++;
+			}
+		}
+		table.initRows(topLevel);
+		for (int i = 0; i < size; i++) {
+			if (counts[i] > 0) {
+				rows[i].initRows(counts[i]);
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			table.attach(rows[i]);
+		}
+		TreeTable result = table;
+		table = null;
+		rows = null;
+		parents = null;
+		return result;
+	}
+
+	/**
+	 * @param parentIndex the index of the parent row or <code>-1</code>
+	 *
+	 * @return the parent row or <code>null</code> for the top level
+	 */
+	private Row parent(int parentIndex) {
+		checkOpen();
+		return parentIndex == -1 ? null : rows[Objects.checkIndex(parentIndex, size)];
+	}
+
+	private int add(int parentIndex, Row row) {
+		ensureCapacity(size + 1);
+		rows[size] = row;
+		parents[size] = parentIndex;
+		return size++;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > rows.length) {
+			int length = Math.max(capacity, rows.length + (rows.length >> 1));
+			rows = Arrays.copyOf(rows, length);
+			parents = Arrays.copyOf(parents, length);
+		}
+	}
+
+	private void checkOpen() {
+		if (table == null) {
+			throw new IllegalStateException("The tree table is already built"); //$NON-NLS-1$
+		}
+	}
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+/**
+ * A modification of a {@link TreeTable} delivered to the {@link TreeTableListener}s.
+ * <p>
+ * Depending on the type of the event the following properties are set:
+ * <ul>
+ * <li>{@link Type#ROW_ADDED}, {@link Type#ROW_REMOVED}: the container and the row, for removed rows also the former index</li>
+ * <li>{@link Type#CELL_CHANGED}: the row, the column index and the old and new value</li>
+ * <li>{@link Type#SORTED}: the container</li>
+ * <li>{@link Type#PARAMETER_CHANGED}: the row (<code>null</code> for a parameter of the tree table), the key and the old and
+ * new value (<code>null</code> if the parameter is removed)</li>
+ * </ul>
+ *
+ * @author Dominik Glaser
+ */
+public final class TreeTableEvent {
+
+	/**
+	 * The type of an event.
+	 */
+	public enum Type {
+		/** a row was added */
+		ROW_ADDED,
+		/** a row (with its sub rows) was removed */
+		ROW_REMOVED,
+		/** the content of a cell changed */
+		CELL_CHANGED,
+		/** the rows of a container were sorted */
+		SORTED,
+		/** a parameter of a row or of the tree table changed */
+		PARAMETER_CHANGED
+	}
+
+	private final Type type;
+	private final TreeTable treeTable;
+	private final RowContainer container;
+	private final Row row;
+	private final int index;
+	private final String key;
+	private final Object oldValue;
+	private final Object newValue;
+
+	private TreeTableEvent(Type type, TreeTable treeTable, RowContainer container, Row row, int index, String key, Object oldValue, Object newValue) {
+		this.type = type;
+		this.treeTable = treeTable;
+		this.container = container;
+		this.row = row;
+		this.index = index;
+		this.key = key;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+
+	/**
+	 * @param treeTable the tree table
+	 * @param container the container the row was added to
+	 * @param row the added row
+	 *
+	 * @return the event for an added row
+	 */
+	/*package*/ static TreeTableEvent rowAdded(TreeTable treeTable, RowContainer container, Row row) {
+		return new TreeTableEvent(Type.ROW_ADDED, treeTable, container, row, container.getRowCount() - 1, null, null, null);
+	}
+
+	/**
+	 * @param treeTable the tree table
+	 * @param container the container the row was removed from
+	 * @param row the removed row
+	 * @param index the former index of the row inside the container
+	 *
+	 * @return the event for a removed row
+	 */
+	/*package*/ static TreeTableEvent rowRemoved(TreeTable treeTable, RowContainer container, Row row, int index) {
+		return new TreeTableEvent(Type.ROW_REMOVED, treeTable, container, row, index, null, null, null);
+	}
+
+	/**
+	 * @param treeTable the tree table
+	 * @param row the row
+	 * @param columnIndex the index of the changed column
+	 * @param oldValue the old value of the cell
+	 * @param newValue the new value of the cell
+	 *
+	 * @return the event for a changed cell
+	 */
+	/*package*/ static TreeTableEvent cellChanged(TreeTable treeTable, Row row, int columnIndex, Object oldValue, Object newValue) {
+		return new TreeTableEvent(Type.CELL_CHANGED, treeTable, null, row, columnIndex, null, oldValue, newValue);
+	}
+
+	/**
+	 * @param treeTable the tree table
+	 * @param container the container whose rows were sorted
+	 *
+	 * @return the event for sorted rows
+	 */
+	/*package*/ static TreeTableEvent sorted(TreeTable treeTable, RowContainer container) {
+		return new TreeTableEvent(Type.SORTED, treeTable, container, null, -1, null, null, null);
+	}
+
+	/**
+	 * @param treeTable the tree table
+	 * @param row the row or <code>null</code> for a parameter of the tree table
+	 * @param key the key of the parameter
+	 * @param oldValue the old value of the parameter
+	 * @param newValue the new value of the parameter (<code>null</code> if the parameter was removed)
+	 *
+	 * @return the event for a changed parameter
+	 */
+	/*package*/ static TreeTableEvent parameterChanged(TreeTable treeTable, Row row, String key, Object oldValue, Object newValue) {
+		return new TreeTableEvent(Type.PARAMETER_CHANGED, treeTable, null, row, -1, key, oldValue, newValue);
+	}
+
+	/**
+	 * @return the type of the event
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the modified tree table
+	 */
+	public TreeTable getTreeTable() {
+		return treeTable;
+	}
+
+	/**
+	 * @return the container (the tree table or the parent row) the row was added to, removed from or whose rows were sorted
+	 *         or <code>null</code>
+	 */
+	public RowContainer getContainer() {
+		return container;
+	}
+
+	/**
+	 * @return the added, removed or modified row or <code>null</code> if the rows of a container were sorted
+	 *         or a parameter of the tree table changed
+	 */
+	public Row getRow() {
+		return row;
+	}
+
+	/**
+	 * @return the index of the added or removed row inside its container, <code>-1</code> for other events
+	 */
+	public int getIndex() {
+		return type == Type.ROW_ADDED || type == Type.ROW_REMOVED ? index : -1;
+	}
+
+	/**
+	 * @return the index of the changed column, <code>-1</code> for other events
+	 */
+	public int getColumnIndex() {
+		return type == Type.CELL_CHANGED ? index : -1;
+	}
+
+	/**
+	 * @return the key of the changed parameter or <code>null</code>
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the old value of the cell or parameter
+	 */
+	public Object getOldValue() {
+		return oldValue;
+	}
+
+	/**
+	 * @return the new value of the cell or parameter
+	 */
+	public Object getNewValue() {
+		return newValue;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(type.name());
+		if (row != null) {
+			sb.append(" [").append(row).append(']'); //$NON-NLS-1$
+		}
+		if (type == Type.CELL_CHANGED || type == Type.PARAMETER_CHANGED) {
+			sb.append(' ').append(key != null ? key : Integer.toString(index)).append(": ") //$NON-NLS-1$
+				.append(oldValue).append(" -> ").append(newValue); //$NON-NLS-1$
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.util.List;
+
+/**
+ * The listener for modifications of a {@link TreeTable} (see {@link TreeTable#addTreeTableListener(TreeTableListener)}).
+ * <p>
+ * The events are delivered after the modifications were done. Outside of a batch each modification is delivered at once,
+ * inside of a batch (see {@link TreeTable#beginBatch()}) all modifications are delivered together when the batch ends.
+ *
+ * @author Dominik Glaser
+ */
+@FunctionalInterface
+public interface TreeTableListener {
+
+	/**
+	 * Called after the tree table was modified.
+	 *
+	 * @param events the events in the order of the modifications (an unmodifiable list)
+	 */
+	void treeTableChanged(List<TreeTableEvent> events);
+
+}
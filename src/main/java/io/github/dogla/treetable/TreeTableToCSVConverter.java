@@ -0,0 +1,475 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The converter to create a CSV (or TSV) representation of a tree table.
+ * <p>
+ * Each row is written as one record in the order of {@link TreeTable#walk(io.github.dogla.treetable.util.RowVisitor)}, i.e. each row
+ * before its sub rows. The tree structure can be encoded by a depth column (<code>1</code> for the rows on the top level)
+ * and a path column (the contents of the first column of the ancestors and the row itself). Path separators and
+ * backslashes inside these contents are escaped by a backslash, so the path can be split unambiguously.
+ * <p>
+ * The records are written directly to the output. Fields which need no quoting are written as they are
+ * (after a single scan), so no intermediate strings are created for textual cells.
+ *
+ * @author Dominik Glaser
+ */
+public class TreeTableToCSVConverter implements TreeTableConverter<String> {
+
+	/**
+	 * The quoting of the fields.
+	 */
+	public enum Quoting {
+		/** only fields containing the separator, the quote or a line break are quoted (RFC 4180) */
+		MINIMAL,
+		/** all fields are quoted */
+		ALL,
+		/** no field is quoted, separators and line breaks inside the fields are replaced by spaces (e.g. for TSV) */
+		NONE
+	}
+
+	private static final String DEPTH_LABEL = "Depth"; //$NON-NLS-1$
+	private static final String PATH_LABEL = "Path"; //$NON-NLS-1$
+	private static final char PATH_ESCAPE = '\\';
+
+	private boolean printHeader = true;
+	private boolean depthColumn;
+	private boolean pathColumn;
+	private char separator = ',';
+	private char quote = '"';
+	private Quoting quoting = Quoting.MINIMAL;
+	private String pathSeparator = "/"; //$NON-NLS-1$
+	private String lineSeparator = "\n"; //$NON-NLS-1$
+
+	/**
+	 * Returns the printHeader.
+	 *
+	 * @return the printHeader
+	 */
+	public boolean isPrintHeader() {
+		return printHeader;
+	}
+
+	/**
+	 * Sets the printHeader, i.e. whether the first record contains the labels of the columns.
+	 *
+	 * @param printHeader the printHeader to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToCSVConverter withPrintHeader(boolean printHeader) {
+		this.printHeader = printHeader;
+		return this;
+	}
+
+	/**
+	 * Returns the depthColumn.
+	 *
+	 * @return the depthColumn
+	 */
+	public boolean isDepthColumn() {
+		return depthColumn;
+	}
+
+	/**
+	 * Sets the depthColumn, i.e. whether the depth of each row is written as first field.
+	 *
+	 * @param depthColumn the depthColumn to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToCSVConverter withDepthColumn(boolean depthColumn) {
+		this.depthColumn = depthColumn;
+		return this;
+	}
+
+	/**
+	 * Returns the pathColumn.
+	 *
+	 * @return the pathColumn
+	 */
+	public boolean isPathColumn() {
+		return pathColumn;
+	}
+
+	/**
+	 * Sets the pathColumn, i.e. whether the path of each row (the first column of its ancestors and itself joined
+	 * by the path separator) is written in front of the cells.
+	 *
+	 * @param pathColumn the pathColumn to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToCSVConverter withPathColumn(boolean pathColumn) {
+		this.pathColumn = pathColumn;
+		return this;
+	}
+
+	/**
+	 * Returns the separator.
+	 *
+	 * @return the separator
+	 */
+	public char getSeparator() {
+		return separator;
+	}
+
+	/**
+	 * Sets the separator of the fields.
+	 *
+	 * @param separator the separator to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToCSVConverter withSeparator(char separator) {
+		this.separator = separator;
+		return this;
+	}
+
+	/**
+	 * Returns the quote.
+	 *
+	 * @return the quote
+	 */
+	public char getQuote() {
+		return quote;
+	}
+
+	/**
+	 * Sets the quote character (quotes inside quoted fields are doubled).
+	 *
+	 * @param quote the quote to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToCSVConverter withQuote(char quote) {
+		this.quote = quote;
+		return this;
+	}
+
+	/**
+	 * Returns the quoting.
+	 *
+	 * @return the quoting
+	 */
+	public Quoting getQuoting() {
+		return quoting;
+	}
+
+	/**
+	 * Sets the quoting of the fields.
+	 *
+	 * @param quoting the quoting to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToCSVConverter withQuoting(Quoting quoting) {
+		this.quoting = quoting;
+		return this;
+	}
+
+	/**
+	 * Returns the pathSeparator.
+	 *
+	 * @return the pathSeparator
+	 */
+	public String getPathSeparator() {
+		return pathSeparator;
+	}
+
+	/**
+	 * Sets the separator of the elements of the path column. The separator and backslashes inside the elements are
+	 * escaped by a backslash.
+	 *
+	 * @param pathSeparator the pathSeparator to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToCSVConverter withPathSeparator(String pathSeparator) {
+		this.pathSeparator = pathSeparator;
+		return this;
+	}
+
+	/**
+	 * Returns the lineSeparator.
+	 *
+	 * @return the lineSeparator
+	 */
+	public String getLineSeparator() {
+		return lineSeparator;
+	}
+
+	/**
+	 * Sets the separator of the records.
+	 *
+	 * @param lineSeparator the lineSeparator to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToCSVConverter withLineSeparator(String lineSeparator) {
+		this.lineSeparator = lineSeparator;
+		return this;
+	}
+
+	/**
+	 * Sets the separator and the quoting for tab separated values.
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToCSVConverter withTSV() {
+		withSeparator('\t');
+		withQuoting(Quoting.NONE);
+		return this;
+	}
+
+	@Override
+	public String convert(TreeTable treeTable) {
+		StringBuilder sb = new StringBuilder();
+		try {
+			render(treeTable, sb);
+		} catch (IOException e) {
+			// a StringBuilder never throws an IOException
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the CSV representation of the given tree table to the given output stream.
+	 *
+	 * @param treeTable the tree table
+	 * @param out the output stream (not closed)
+	 * @param charset the charset
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	public void render(TreeTable treeTable, OutputStream out, Charset charset) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset), 1 << 16);
+		render(treeTable, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes the CSV representation of the given tree table record by record to the given output.
+	 * Wrap unbuffered outputs (e.g. a {@link java.io.FileWriter}) into a {@link java.io.BufferedWriter}.
+	 *
+	 * @param treeTable the tree table
+	 * @param out the output to write to (e.g. a {@link java.io.Writer} or a {@link StringBuilder})
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	public void render(TreeTable treeTable, Appendable out) throws IOException {
+		Column[] columns = treeTable.getColumns();
+		if (isPrintHeader()) {
+			boolean first = true;
+			if (depthColumn) {
+				first = field(out, DEPTH_LABEL, first);
+			}
+			if (pathColumn) {
+				first = field(out, PATH_LABEL, first);
+			}
+			for (Column column : columns) {
+				first = field(out, column.getLabel(), first);
+			}
+			out.append(lineSeparator);
+		}
+		// the path of the current row and the lengths of the paths of its ancestors
+		StringBuilder path = pathColumn ? new StringBuilder() : null;
+		int[] pathLengths = new int[16];
+		// walk with an explicit stack to support arbitrary deep trees
+		RowContainer[] containers = new RowContainer[16];
+		int[] positions = new int[16];
+		int size = 0;
+		containers[size++] = treeTable;
+		while (size > 0) {
+			RowContainer container = containers[size - 1];
+			int position = positions[size - 1]++;
+			if (position >= container.getRowCount()) {
+				containers[--size] = null;
+				continue;
+			}
+			Row row = container.getRow(position);
+			int depth = size;
+			boolean first = true;
+			if (depthColumn) {
+				first = false;
+				if (quoting == Quoting.ALL) {
+					out.append(quote).append(Integer.toString(depth)).append(quote);
+				} else {
+					out.append(Integer.toString(depth));
+				}
+			}
+			if (path != null) {
+				if (depth == pathLengths.length) {
+					pathLengths = Arrays.copyOf(pathLengths, depth * 2);
+				}
+				path.setLength(pathLengths[depth - 1]);
+				if (depth > 1) {
+					path.append(pathSeparator);
+				}
+				appendSegment(path, row.getCellContent(0));
+				pathLengths[depth] = path.length();
+				first = field(out, path, first);
+			}
+			for (int i = 0; i < columns.length; i++) {
+				Object content = row.getCellContent(i);
+				first = field(out, content instanceof CharSequence ? (CharSequence) content : content != null ? content.toString() : "", first); //$NON-NLS-1$
+			}
+			out.append(lineSeparator);
+			if (row.hasRows()) {
+				if (size == containers.length) {
+					containers = Arrays.copyOf(containers, size * 2);
+					positions = Arrays.copyOf(positions, size * 2);
+				}
+				containers[size] = row;
+				positions[size] = 0;
+				size++;
+			}
+		}
+	}
+
+	private static void appendContent(StringBuilder sb, Object content) {
+		if (content instanceof CharSequence) {
+			sb.append((CharSequence) content);
+		} else if (content != null) {
+			sb.append(content);
+		}
+	}
+
+	/**
+	 * Appends the given content as an element of the path, the path separator and the escape character inside the
+	 * content are escaped.
+	 *
+	 * @param path the path
+	 * @param content the content of the element
+	 */
+	private void appendSegment(StringBuilder path, Object content) {
+		int start = path.length();
+		appendContent(path, content);
+		if (path.indexOf(pathSeparator, start) < 0 && path.indexOf(String.valueOf(PATH_ESCAPE), start) < 0) {
+			return;
+		}
+		String segment = path.substring(start);
+		path.setLength(start);
+		int separatorLength = pathSeparator.length();
+		for (int i = 0; i < segment.length();) {
+			if (separatorLength > 0 && segment.startsWith(pathSeparator, i)) {
+				path.append(PATH_ESCAPE).append(pathSeparator);
+				i += separatorLength;
+			} else {
+				char c = segment.charAt(i++);
+				if (c == PATH_ESCAPE) {
+					path.append(PATH_ESCAPE);
+				}
+				path.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Writes a field (preceded by the separator if it is not the first field of the record).
+	 *
+	 * @param out the output to write to
+	 * @param value the value of the field
+	 * @param first <code>true</code> if it is the first field of the record
+	 *
+	 * @return <code>false</code>, i.e. the value for the next field
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	private boolean field(Appendable out, CharSequence value, boolean first) throws IOException {
+		if (!first) {
+			out.append(separator);
+		}
+		int length = value.length();
+		if (quoting == Quoting.ALL) {
+			appendQuoted(out, value, 0);
+			return false;
+		}
+		// fast path: a single scan and the value is written as it is
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c == separator || c == quote || c == '\n' || c == '\r') {
+				if (quoting == Quoting.NONE) {
+					appendReplaced(out, value, i);
+				} else {
+					appendQuoted(out, value, i);
+				}
+				return false;
+			}
+		}
+		out.append(value);
+		return false;
+	}
+
+	/**
+	 * Writes the given value quoted, quotes inside the value are doubled.
+	 *
+	 * @param out the output to write to
+	 * @param value the value
+	 * @param start the index of the first character which may need escaping (all characters before are written as they are)
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	private void appendQuoted(Appendable out, CharSequence value, int start) throws IOException {
+		out.append(quote);
+		int length = value.length();
+		int from = 0;
+		for (int i = start; i < length; i++) {
+			if (value.charAt(i) == quote) {
+				out.append(value, from, i + 1).append(quote);
+				from = i + 1;
+			}
+		}
+		out.append(value, from, length).append(quote);
+	}
+
+	/**
+	 * Writes the given value with separators and line breaks replaced by spaces (carriage returns are removed).
+	 *
+	 * @param out the output to write to
+	 * @param value the value
+	 * @param start the index of the first character which may need to be replaced
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	private void appendReplaced(Appendable out, CharSequence value, int start) throws IOException {
+		int length = value.length();
+		int from = 0;
+		for (int i = start; i < length; i++) {
+			char c = value.charAt(i);
+			if (c == separator || c == '\n' || c == '\r') {
+				out.append(value, from, i);
+				if (c != '\r') {
+					out.append(' ');
+				}
+				from = i + 1;
+			}
+		}
+		out.append(value, from, length);
+	}
+
+}
@@ -0,0 +1,390 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The converter to create a JSON representation of a tree table.
+ * <p>
+ * By default the tree table is written as one nested document:
+ * <pre>
+ * {"columns":["Name","Size"],"rows":[
+ *   {"cells":{"Name":"C:","Size":""},"parameters":{...},"data":...,"rows":[...]}, ...]}
+ * </pre>
+ * The keys of the cells are the labels of the columns. <code>parameters</code>, <code>data</code> and <code>rows</code>
+ * are omitted if the row has no parameters, no data or no sub rows.
+ * <p>
+ * In the NDJSON mode (see {@link #withNDJSON(boolean)}) each row is written as a separate document on its own line,
+ * each row before its sub rows. The rows are numbered in this order, starting with <code>0</code>:
+ * <pre>
+ * {"id":0,"parent":null,"depth":1,"cells":{"Name":"C:","Size":""}}
+ * {"id":1,"parent":0,"depth":2,"cells":{"Name":"Windows","Size":""}}
+ * </pre>
+ * The documents are written directly to the output during a walk with an explicit stack, so the converter needs
+ * no memory beyond the current path of the walk. Strings which need no escaping are written as they are (after a single scan).
+ * <p>
+ * Strings, numbers, booleans and <code>null</code> are written as JSON values, maps as objects, iterables and arrays
+ * as arrays and all other objects as their string representation.
+ *
+ * @author Dominik Glaser
+ */
+public class TreeTableToJSONConverter implements TreeTableConverter<String> {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private boolean ndjson;
+	private boolean printParameters = true;
+	private boolean printData = true;
+
+	/**
+	 * Returns the ndjson.
+	 *
+	 * @return the ndjson
+	 */
+	public boolean isNDJSON() {
+		return ndjson;
+	}
+
+	/**
+	 * Sets the ndjson, i.e. whether each row is written as a separate document on its own line
+	 * (with the id of its parent) instead of a single nested document.
+	 *
+	 * @param ndjson the ndjson to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToJSONConverter withNDJSON(boolean ndjson) {
+		this.ndjson = ndjson;
+		return this;
+	}
+
+	/**
+	 * Returns the printParameters.
+	 *
+	 * @return the printParameters
+	 */
+	public boolean isPrintParameters() {
+		return printParameters;
+	}
+
+	/**
+	 * Sets the printParameters, i.e. whether the parameters of the rows are written.
+	 *
+	 * @param printParameters the printParameters to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToJSONConverter withPrintParameters(boolean printParameters) {
+		this.printParameters = printParameters;
+		return this;
+	}
+
+	/**
+	 * Returns the printData.
+	 *
+	 * @return the printData
+	 */
+	public boolean isPrintData() {
+		return printData;
+	}
+
+	/**
+	 * Sets the printData, i.e. whether the data of the rows is written.
+	 *
+	 * @param printData the printData to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToJSONConverter withPrintData(boolean printData) {
+		this.printData = printData;
+		return this;
+	}
+
+	@Override
+	public String convert(TreeTable treeTable) {
+		StringBuilder sb = new StringBuilder();
+		try {
+			render(treeTable, sb);
+		} catch (IOException e) {
+			// a StringBuilder never throws an IOException
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the JSON representation of the given tree table to the given output stream.
+	 *
+	 * @param treeTable the tree table
+	 * @param out the output stream (not closed)
+	 * @param charset the charset
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	public void render(TreeTable treeTable, OutputStream out, Charset charset) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset), 1 << 16);
+		render(treeTable, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes the JSON representation of the given tree table row by row to the given output.
+	 * Wrap unbuffered outputs (e.g. a {@link java.io.FileWriter}) into a {@link java.io.BufferedWriter}.
+	 *
+	 * @param treeTable the tree table
+	 * @param out the output to write to (e.g. a {@link java.io.Writer} or a {@link StringBuilder})
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	public void render(TreeTable treeTable, Appendable out) throws IOException {
+		Column[] columns = treeTable.getColumns();
+		if (!ndjson) {
+			out.append("{\"columns\":["); //$NON-NLS-1$
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					out.append(',');
+				}
+				appendString(out, columns[i].getLabel());
+			}
+			out.append("],\"rows\":["); //$NON-NLS-1$
+		}
+		// walk with an explicit stack to support arbitrary deep trees
+		RowContainer[] containers = new RowContainer[16];
+		int[] positions = new int[16];
+		// the ids of the rows on the stack (NDJSON mode only)
+		int[] ids = new int[16];
+		int nextId = 0;
+		int size = 0;
+		containers[size++] = treeTable;
+		while (size > 0) {
+			RowContainer container = containers[size - 1];
+			int position = positions[size - 1]++;
+			if (position >= container.getRowCount()) {
+				containers[--size] = null;
+				if (!ndjson) {
+					// closes the sub rows and the parent row (or the rows and the document)
+					out.append("]}"); //$NON-NLS-1$
+				}
+				continue;
+			}
+			Row row = container.getRow(position);
+			int depth = size;
+			if (ndjson) {
+				out.append("{\"id\":").append(Integer.toString(nextId)).append(",\"parent\":"); //$NON-NLS-1$ //$NON-NLS-2$
+				out.append(depth > 1 ? Integer.toString(ids[depth - 1]) : "null"); //$NON-NLS-1$
+				out.append(",\"depth\":").append(Integer.toString(depth)).append(','); //$NON-NLS-1$
+			} else {
+				if (position > 0) {
+					out.append(',');
+				}
+				out.append('{');
+			}
+			appendRow(out, row, columns);
+			if (ndjson) {
+				out.append("}\n"); //$NON-NLS-1$
+				if (depth == ids.length) {
+					ids = Arrays.copyOf(ids, depth * 2);
+				}
+				ids[depth] = nextId++;
+			}
+			if (row.hasRows()) {
+				if (!ndjson) {
+					out.append(",\"rows\":["); //$NON-NLS-1$
+				}
+				if (size == containers.length) {
+					containers = Arrays.copyOf(containers, size * 2);
+					positions = Arrays.copyOf(positions, size * 2);
+				}
+				containers[size] = row;
+				positions[size] = 0;
+				size++;
+			} else if (!ndjson) {
+				out.append('}');
+			}
+		}
+		if (!ndjson) {
+			out.append('\n');
+		}
+	}
+
+	/**
+	 * Writes the cells, the parameters and the data of the given row (without the surrounding braces).
+	 *
+	 * @param out the output to write to
+	 * @param row the row
+	 * @param columns the columns
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	private void appendRow(Appendable out, Row row, Column[] columns) throws IOException {
+		out.append("\"cells\":{"); //$NON-NLS-1$
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			appendString(out, columns[i].getLabel());
+			out.append(':');
+			appendValue(out, row.getCellContent(i));
+		}
+		out.append('}');
+		if (printParameters && row.hasParameters()) {
+			out.append(",\"parameters\":"); //$NON-NLS-1$
+			appendValue(out, row.getParameters());
+		}
+		if (printData && row.getData() != null) {
+			out.append(",\"data\":"); //$NON-NLS-1$
+			appendValue(out, row.getData());
+		}
+	}
+
+	/**
+	 * Writes the given value as JSON value.
+	 *
+	 * @param out the output to write to
+	 * @param value the value
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	private static void appendValue(Appendable out, Object value) throws IOException {
+		if (value == null) {
+			out.append("null"); //$NON-NLS-1$
+		} else if (value instanceof CharSequence) {
+			appendString(out, (CharSequence) value);
+		} else if (value instanceof Boolean) {
+			out.append(value.toString());
+		} else if (value instanceof Number) {
+			appendNumber(out, (Number) value);
+		} else if (value instanceof Map) {
+			out.append('{');
+			boolean first = true;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (!first) {
+					out.append(',');
+				}
+				first = false;
+				appendString(out, String.valueOf(entry.getKey()));
+				out.append(':');
+				appendValue(out, entry.getValue());
+			}
+			out.append('}');
+		} else if (value instanceof Iterable) {
+			out.append('[');
+			boolean first = true;
+			for (Object element : (Iterable<?>) value) {
+				if (!first) {
+					out.append(',');
+				}
+				first = false;
+				appendValue(out, element);
+			}
+			out.append(']');
+		} else if (value.getClass().isArray()) {
+			out.append('[');
+			int length = Array.getLength(value);
+			for (int i = 0; i < length; i++) {
+				if (i > 0) {
+					out.append(',');
+				}
+				appendValue(out, Array.get(value, i));
+			}
+			out.append(']');
+		} else {
+			appendString(out, value.toString());
+		}
+	}
+
+	/**
+	 * Writes the given number. Numbers which can not be represented in JSON (i.e. <code>NaN</code> and infinity)
+	 * are written as strings.
+	 *
+	 * @param out the output to write to
+	 * @param number the number
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	private static void appendNumber(Appendable out, Number number) throws IOException {
+		if ((number instanceof Double && !Double.isFinite(number.doubleValue()))
+				|| (number instanceof Float && !Float.isFinite(number.floatValue()))) {
+			appendString(out, number.toString());
+		} else {
+			out.append(number.toString());
+		}
+	}
+
+	/**
+	 * Writes the given value as JSON string. Quotes, backslashes, control characters and the line and paragraph
+	 * separators (U+2028, U+2029, which are not allowed in JavaScript strings) are escaped.
+	 *
+	 * @param out the output to write to
+	 * @param value the value
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	/*package*/ static void appendString(Appendable out, CharSequence value) throws IOException {
+		out.append('"');
+		int length = value.length();
+		int from = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+				continue;
+			}
+			// the characters since the last escaped character are written as they are
+			out.append(value, from, i);
+			from = i + 1;
+			switch (c) {
+				case '"':
+					out.append("\\\""); //$NON-NLS-1$
+					break;
+				case '\\':
+					out.append("\\\\"); //$NON-NLS-1$
+					break;
+				case '\n':
+					out.append("\\n"); //$NON-NLS-1$
+					break;
+				case '\r':
+					out.append("\\r"); //$NON-NLS-1$
+					break;
+				case '\t':
+					out.append("\\t"); //$NON-NLS-1$
+					break;
+				case '\b':
+					out.append("\\b"); //$NON-NLS-1$
+					break;
+				case '\f':
+					out.append("\\f"); //$NON-NLS-1$
+					break;
+				default:
+					out.append("\\u") //$NON-NLS-1$
+							.append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+							.append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+					break;
+			}
+		}
+		out.append(value, from, length).append('"');
+	}
+
+}
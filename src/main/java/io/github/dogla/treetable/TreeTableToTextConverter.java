@@ -15,12 +15,13 @@
  */
 package io.github.dogla.treetable;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Function;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntFunction;
 
-import io.github.dogla.treetable.util.RowVisitResult;
-import io.github.dogla.treetable.util.RowVisitor;
+import io.github.dogla.treetable.util.TextCells;
 
 /**
  * Converter to produce a text representation of a {@link TreeTable}.
@@ -30,9 +31,14 @@ import io.github.dogla.treetable.util.RowVisitor;
 @SuppressWarnings("nls")
 public class TreeTableToTextConverter implements TreeTableConverter<String> {
 
+	// the maximum size of the cell texts kept by render(TreeTable, Appendable) (see TextLayout#getStoredSize())
+	private static final long CACHE_SIZE = 1 << 20;
+
 	private boolean printHeader = true;
 	private boolean printOuterLines = true;
 	private boolean printInnerLines = true;
+	private boolean multiLine;
+	private boolean globalWidths;
 	
 	private String columnSeperator;
 	private String treeLineVertical;
@@ -50,8 +56,6 @@ public class TreeTableToTextConverter implements TreeTableConverter<String> {
 	private String lineSeperatorBottomMiddle;
 	private String lineSeperatorBottomRight;
 	
-	private Map<Column, Integer> columnWidths = new HashMap<>();
-	
 	/**
 	 * Constructor.
 	 */
@@ -122,6 +126,51 @@ public class TreeTableToTextConverter implements TreeTableConverter<String> {
 		return this;
 	}
 	
+	/**
+	 * Returns the multiLine.
+	 *
+	 * @return the multiLine
+	 */
+	public boolean isMultiLine() {
+		return multiLine;
+	}
+
+	/**
+	 * Sets the multiLine, i.e. whether line breaks inside the cells start new lines. 
+	 * Otherwise line breaks are replaced by spaces.
+	 *
+	 * @param multiLine the multiLine to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToTextConverter withMultiLine(boolean multiLine) {
+		this.multiLine = multiLine;
+		return this;
+	}
+	
+	/**
+	 * Returns the globalWidths.
+	 *
+	 * @return the globalWidths
+	 */
+	public boolean isGlobalWidths() {
+		return globalWidths;
+	}
+
+	/**
+	 * Sets the globalWidths, i.e. whether a window of rows (see {@link #render(TextIndex, int, int, Appendable)}) 
+	 * is rendered with the column widths of all rows or only with the widths of the rows inside the window.
+	 * The widths of all rows are computed once and cached in the {@link TextIndex}.
+	 *
+	 * @param globalWidths the globalWidths to set
+	 *
+	 * @return the instance itself
+	 */
+	public TreeTableToTextConverter withGlobalWidths(boolean globalWidths) {
+		this.globalWidths = globalWidths;
+		return this;
+	}
+	
 	/**
 	 * Returns the columnSeperator.
 	 *
@@ -488,162 +537,525 @@ public class TreeTableToTextConverter implements TreeTableConverter<String> {
 	
 	@Override
 	public String convert(TreeTable treeTable) {
-		TreeTable tt = treeTable.copy();
-		if (tt.isTree()) {
-			initTreeStructure(tt);
+		StringBuilder sb = new StringBuilder();
+		try {
+			render(treeTable, sb);
+		} catch (IOException e) {
+			// a StringBuilder never throws an IOException
+			throw new UncheckedIOException(e);
 		}
-		initIndentStructure(tt);
-		Column[] columns = tt.getColumns();
-		initColumnWidths(tt);
-		
+		return sb.toString();
+	}
+
+	/**
+	 * Renders the text representation of the given tree table directly to the given output.
+	 * <p>
+	 * The first walk computes the column widths and keeps the text of the cells of the first rows, up to a bounded size. 
+	 * These rows are written from the kept text, so the text of each cell is computed once for most tables. The rows 
+	 * exceeding the bound are laid out again by a second walk and written one by one, so neither the text representation 
+	 * nor the text of the cells of a large table are kept in memory. Wrap unbuffered outputs (e.g. a {@link java.io.FileWriter}) 
+	 * into a {@link java.io.BufferedWriter} to avoid a system call for each written fragment.
+	 * 
+	 * @param treeTable the tree table
+	 * @param out the output to write to (e.g. a {@link java.io.Writer} or a {@link StringBuilder})
+	 * 
+	 * @throws IOException if the output can not be written
+	 */
+	public void render(TreeTable treeTable, Appendable out) throws IOException {
+		Column[] columns = treeTable.getColumns();
+		boolean tree = treeTable.isTree();
+		ColumnAlignment[] alignments = initAlignments(columns, tree);
+		TextLayout cache = new TextLayout(columns, alignments, isMultiLine());
+		walk(treeTable, tree, true, cache.hasLines(), (row, level, last, prefix, childPrefix) -> {
+			// the rows are stored until the bound is reached, the remaining rows are only measured
+			addRow(cache, row, prefix, childPrefix, cache.getStoredSize() < CACHE_SIZE);
+		});
+		int[] cursors = new int[columns.length];
+		writeHeader(cache, out);
+		int cached = cache.getRowCount();
+		for (int r = 0; r < cached; r++) {
+			writeRow(cache, r, cursors, out);
+		}
+		if (cache.getStoredSize() >= CACHE_SIZE) {
+			// a layout of a single row, which is reused for each remaining row
+			TextLayout layout = new TextLayout(columns, alignments, isMultiLine(), 1);
+			layout.setWidths(cache.getWidths());
+			int[] skipped = { 0 };
+			try {
+				walk(treeTable, tree, true, layout.hasLines(), (row, level, last, prefix, childPrefix) -> {
+					if (skipped[0] < cached) {
+						skipped[0]++;
+						return;
+					}
+					layout.clear();
+					addRow(layout, row, prefix, childPrefix, true);
+					try {
+						writeRow(layout, 0, cursors, out);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+		writeFooter(cache, out);
+	}
+	
+	/**
+	 * Creates the index of the rows of the given tree table in the order they are displayed, which is used 
+	 * to render windows of rows (e.g. the rows visible in a terminal).
+	 * 
+	 * @param treeTable the tree table
+	 * 
+	 * @return the index
+	 */
+	public TextIndex index(TreeTable treeTable) {
+		boolean tree = treeTable.isTree();
+		TextIndex index = new TextIndex(treeTable, tree);
+		walk(treeTable, tree, false, false, (row, level, last, prefix, childPrefix) -> {
+			index.add(row, level, last);
+		});
+		index.complete();
+		return index;
+	}
+	
+	/**
+	 * Converts the given window of rows to its text representation.
+	 * 
+	 * @param index the index of the tree table
+	 * @param offset the position of the first row of the window in the display order
+	 * @param limit the maximum number of rows of the window
+	 * 
+	 * @return the text representation
+	 * 
+	 * @see #render(TextIndex, int, int, Appendable)
+	 */
+	public String convert(TextIndex index, int offset, int limit) {
+		StringBuilder sb = new StringBuilder();
+		try {
+			render(index, offset, limit, sb);
+		} catch (IOException e) {
+			// a StringBuilder never throws an IOException
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Renders the rows <code>[offset, offset + limit)</code> (in the order they are displayed) of the given index 
+	 * directly to the given output.
+	 * <p>
+	 * The prefixes visualizing the tree structure are computed from the ancestors of the rows, so the costs depend 
+	 * on the size of the window and not on the size of the tree table. The column widths are computed from the rows 
+	 * inside the window, or from all rows if {@link #isGlobalWidths()} (computed once per index).
+	 * 
+	 * @param index the index of the tree table
+	 * @param offset the position of the first row of the window in the display order
+	 * @param limit the maximum number of rows of the window
+	 * @param out the output to write to (e.g. a {@link java.io.Writer} or a {@link StringBuilder})
+	 * 
+	 * @throws IOException if the output can not be written
+	 */
+	public void render(TextIndex index, int offset, int limit, Appendable out) throws IOException {
+		if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException("Invalid window: offset " + offset + ", limit " + limit); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		Column[] columns = index.getTreeTable().getColumns();
+		TextLayout layout = new TextLayout(columns, initAlignments(columns, index.isTree()), isMultiLine());
+		if (isGlobalWidths()) {
+			layout.initWidths(getGlobalWidths(index));
+		}
+		String child = treeLineChild + treeLineHorizontal + treeLineHorizontal + " ";
+		String lastChild = treeLineLastChild + treeLineHorizontal + treeLineHorizontal + " ";
+		String vertical = treeLineVertical + "  ";
+		int end = (int) Math.min(index.getRowCount(), (long) offset + limit);
+		int[] ancestors = new int[16];
 		StringBuilder sb = new StringBuilder();
+		for (int i = offset; i < end; i++) {
+			Row row = index.getRow(i);
+			if (!index.isTree()) {
+				addRow(layout, row, null, null, true);
+				continue;
+			}
+			// the prefix consists of the lines of the ancestors (except the one on the top level) and the row itself
+			int count = 0;
+			for (int parent = index.getParent(i); parent >= 0; parent = index.getParent(parent)) {
+				if (count == ancestors.length) {
+					ancestors = Arrays.copyOf(ancestors, count * 2);
+				}
+				ancestors[count++] = parent;
+			}
+			sb.setLength(0);
+			for (int a = count - 2; a >= 0; a--) {
+				sb.append(index.isLast(ancestors[a]) ? "    " : vertical);
+			}
+			boolean last = index.isLast(i);
+			String prefix = count == 0 ? "" : sb + (last ? lastChild : child);
+			String childPrefix = count == 0 ? "" : sb + (last ? "    " : vertical);
+			addRow(layout, row, prefix, childPrefix, true);
+		}
+		write(layout, out);
+	}
+	
+	/**
+	 * Returns the column widths of all rows of the given index (computed once and cached in the index).
+	 * 
+	 * @param index the index
+	 * 
+	 * @return the column widths
+	 */
+	private int[] getGlobalWidths(TextIndex index) {
+		int[] widths = index.getWidths(this);
+		if (widths == null) {
+			TreeTable treeTable = index.getTreeTable();
+			widths = measure(treeTable, index.isTree(), initAlignments(treeTable.getColumns(), index.isTree()));
+			index.setWidths(this, widths);
+		}
+		return widths;
+	}
+	
+	/**
+	 * Writes the given layout to the given output.
+	 * 
+	 * @param layout the layout
+	 * @param out the output to write to
+	 * 
+	 * @throws IOException if the output can not be written
+	 */
+	private void write(TextLayout layout, Appendable out) throws IOException {
+		writeHeader(layout, out);
+		writeRows(layout, out);
+		writeFooter(layout, out);
+	}
+	
+	/**
+	 * Writes the header and the separators above the rows of the given layout.
+	 * 
+	 * @param layout the layout
+	 * @param out the output to write to
+	 * 
+	 * @throws IOException if the output can not be written
+	 */
+	/*package*/ void writeHeader(TextLayout layout, Appendable out) throws IOException {
+		Column[] columns = layout.getColumns();
 		if (isPrintHeader()) {
 			if (isPrintOuterLines()) {
-				sb.append(separator(columns, lineSeperator, lineSeperatorTopLeft, lineSeperatorTopMiddle, lineSeperatorTopRight));
+				separator(out, layout, lineSeperator, lineSeperatorTopLeft, lineSeperatorTopMiddle, lineSeperatorTopRight);
 			}
-			sb.append(line(columns, c -> {
-				return c.getLabel();
-			}));
+			line(out, layout, i -> {
+				return columns[i].getLabel();
+			});
 		}
 		if (isPrintHeader() && isPrintOuterLines()) {
-			sb.append(separator(columns, lineSeperator, lineSeperatorMiddleLeft, lineSeperatorCenter, lineSeperatorMiddleRight));
+			separator(out, layout, lineSeperator, lineSeperatorMiddleLeft, lineSeperatorCenter, lineSeperatorMiddleRight);
 		} else if (isPrintHeader()) {
-			sb.append(separator(columns, lineSeperator, lineSeperatorMiddleLeft, lineSeperatorCenter, lineSeperatorMiddleRight));
+			separator(out, layout, lineSeperator, lineSeperatorMiddleLeft, lineSeperatorCenter, lineSeperatorMiddleRight);
 		} else if (isPrintOuterLines()) {
-			sb.append(separator(columns, lineSeperator, lineSeperatorTopLeft, lineSeperatorTopMiddle, lineSeperatorTopRight));
+			separator(out, layout, lineSeperator, lineSeperatorTopLeft, lineSeperatorTopMiddle, lineSeperatorTopRight);
 		}
-
-		tt.walk(row -> {
-			sb.append(line(columns, c -> {
-				return getCellContent(row, c);
-			}));
-			return RowVisitResult.CONTINUE;
-		});
-		
-		if (isPrintOuterLines()) {
-			sb.append(separator(columns, lineSeperator, lineSeperatorBottomLeft, lineSeperatorBottomMiddle, lineSeperatorBottomRight));
+	}
+	
+	/**
+	 * Writes the rows of the given layout.
+	 * 
+	 * @param layout the layout
+	 * @param out the output to write to
+	 * 
+	 * @throws IOException if the output can not be written
+	 */
+	/*package*/ void writeRows(TextLayout layout, Appendable out) throws IOException {
+		int[] cursors = new int[layout.getColumns().length];
+		for (int r = 0; r < layout.getRowCount(); r++) {
+			writeRow(layout, r, cursors, out);
 		}
-		return sb.toString();
 	}
-
-	private void initColumnWidths(TreeTable tt) {
-		Column[] columns = tt.getColumns();
-		for (Column column : columns) {
-			int[] width = new int[] { column.getLabel().length() };
-			tt.walk(new RowVisitor() {
-				@Override
-				public RowVisitResult visitRow(Row row) {
-					Object cellContent = getCellContent(row, column);
-					String cell = cellContent != null ? cellContent.toString() : "";
-					int w = cell.length();
-					if (w > width[0]) {
-						width[0] = w;
-					}
-					return RowVisitResult.CONTINUE;
-				}
+	
+	/**
+	 * Writes the given row of the given layout.
+	 * 
+	 * @param layout the layout
+	 * @param row the row index
+	 * @param cursors the positions in the cells (one for each column, used for rows with multiple lines)
+	 * @param out the output to write to
+	 * 
+	 * @throws IOException if the output can not be written
+	 */
+	private void writeRow(TextLayout layout, int row, int[] cursors, Appendable out) throws IOException {
+		if (layout.hasLines()) {
+			lines(out, layout, row, cursors);
+		} else {
+			line(out, layout, i -> {
+				return layout.getCell(row, i);
 			});
-			columnWidths.put(column, width[0]);
 		}
 	}
 	
-	private int getWidth(Column column) {
-		Integer i = columnWidths.get(column);
-		if (i != null) {
-			return i;
+	/**
+	 * Writes the separator below the rows of the given layout.
+	 * 
+	 * @param layout the layout
+	 * @param out the output to write to
+	 * 
+	 * @throws IOException if the output can not be written
+	 */
+	/*package*/ void writeFooter(TextLayout layout, Appendable out) throws IOException {
+		if (isPrintOuterLines()) {
+			separator(out, layout, lineSeperator, lineSeperatorBottomLeft, lineSeperatorBottomMiddle, lineSeperatorBottomRight);
+		}
+	}
+	
+	/**
+	 * Computes the width of each column of the given tree table in a walk through its rows without keeping the text of the cells.
+	 * 
+	 * @param treeTable the tree table
+	 * @param tree <code>true</code> if the tree structure should be visualized
+	 * @param alignments the effective alignments of the columns
+	 * 
+	 * @return the widths of the columns
+	 */
+	private int[] measure(TreeTable treeTable, boolean tree, ColumnAlignment[] alignments) {
+		TextLayout layout = new TextLayout(treeTable.getColumns(), alignments, isMultiLine(), 0);
+		walk(treeTable, tree, true, false, (row, level, last, prefix, childPrefix) -> {
+			addRow(layout, row, prefix, childPrefix, false);
+		});
+		return layout.getWidths();
+	}
+	
+	/**
+	 * Computes the displayed text of the cells of the given row and adds them to the layout.
+	 * 
+	 * @param layout the layout
+	 * @param row the row
+	 * @param prefix the prefix visualizing the tree structure or <code>null</code>
+	 * @param childPrefix the prefix of the sub rows, which continues the tree structure below the row, or <code>null</code>
+	 * @param store <code>true</code> if the cells should be stored, otherwise only the widths of the columns are updated
+	 */
+	/*package*/ static void addRow(TextLayout layout, Row row, String prefix, String childPrefix, boolean store) {
+		Column[] columns = layout.getColumns();
+		int r = store ? layout.addRow() : -1;
+		int lead = 0;
+		for (int i = 0; i < columns.length; i++) {
+			ColumnAlignment alignment = layout.getAlignment(i);
+			String cellContent = getCellContent(row, i);
+			String cellPrefix = i == 0 && prefix != null ? prefix : "";
+			int indent = cellContent.isEmpty() && cellPrefix.isEmpty() ? 0 : getIndent(row, columns[i]);
+			int leftIndent = ColumnAlignment.LEFT.equals(alignment) ? indent : 0;
+			int rightIndent = ColumnAlignment.RIGHT.equals(alignment) ? indent : 0;
+			String text = getCellText(cellPrefix, cellContent, leftIndent, rightIndent);
+			if (store) {
+				layout.setCell(r, i, text, leftIndent + cellPrefix.length(), rightIndent);
+			} else {
+				layout.measure(i, text, leftIndent + cellPrefix.length(), rightIndent);
+			}
+			if (i == 0) {
+				lead = leftIndent;
+			}
+		}
+		if (store && childPrefix != null && layout.getHeight(r) > 1) {
+			// the tree lines are continued on the following lines of the row
+			layout.setContinuation(r, " ".repeat(lead) + childPrefix + " ".repeat(Math.max(0, TextCells.width(prefix) - TextCells.width(childPrefix))));
 		}
-		return 0;
 	}
 	
-	private static String getCellContent(Row row, Column column) {
-		Object cellContent = row.getCellContent(column);
+	/*package*/ static ColumnAlignment[] initAlignments(Column[] columns, boolean tree) {
+		ColumnAlignment[] alignments = new ColumnAlignment[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			alignments[i] = columns[i].getAlignment();
+		}
+		if (tree && alignments.length > 0) {
+			// first column should be aligned to the left
+			alignments[0] = ColumnAlignment.LEFT;
+		}
+		return alignments;
+	}
+
+	private static String getCellContent(Row row, int columnIndex) {
+		Object cellContent = row.getCellContent(columnIndex);
 		return cellContent != null ? cellContent.toString() : "";
 	}
 	
-	private void initTreeStructure(TreeTable treeTable) {
-		Column[] columns = treeTable.getColumns();
-		Column firstColumn = columns[0];
-		// first column should be aligned to the left
-		firstColumn.setAlignment(ColumnAlignment.LEFT);
-		// sort rows (folder like rows first)
-		sortRows(treeTable);
-		// add prefixes to visualize the tree structure
-		addTreeStructure(firstColumn, treeTable.getRows(), "");
+	/**
+	 * Computes the text of a cell as it is displayed, i.e. with the tree structure prefix and the indent.
+	 * 
+	 * @param prefix the prefix visualizing the tree structure
+	 * @param cellContent the content of the cell
+	 * @param leftIndent the number of spaces in front of the text
+	 * @param rightIndent the number of spaces after the text
+	 * 
+	 * @return the text of the cell
+	 */
+	private static String getCellText(String prefix, String cellContent, int leftIndent, int rightIndent) {
+		if (!prefix.isEmpty()) {
+			cellContent = prefix + cellContent;
+		}
+		if (leftIndent > 0) {
+			cellContent = " ".repeat(leftIndent) + cellContent;
+		}
+		if (rightIndent > 0) {
+			cellContent = cellContent + " ".repeat(rightIndent);
+		}
+		return cellContent;
 	}
 	
-	private static void initIndentStructure(TreeTable treeTable) {
-		Column[] columns = treeTable.getColumns();
-		treeTable.walk(row -> {
-			for (Column column : columns) {
-				String cellContent = getCellContent(row, column);
-				if (!cellContent.isEmpty()) {
-					Object value = row.getParameters().get(column.getLabel()+"#indent");
-					if (value != null) {
-						try {
-							int i = Integer.parseInt(value.toString());
-							if (i > 0) {
-								String indent = "  ".repeat(i);
-								if (ColumnAlignment.LEFT.equals(column.getAlignment())) {
-									row.setCellContent(column, indent + cellContent);
-								} else if (ColumnAlignment.RIGHT.equals(column.getAlignment())) {
-									row.setCellContent(column, cellContent + indent);
-								}
-							}
-						} catch (NumberFormatException e) {
-							// we ignore a wrong number format here
-						}
-					}
+	/**
+	 * Returns the indent of a cell defined by the parameter <code>&lt;column label&gt;#indent</code> of the row.
+	 * 
+	 * @param row the row
+	 * @param column the column
+	 * 
+	 * @return the number of spaces to indent the cell
+	 */
+	private static int getIndent(Row row, Column column) {
+		Object value = row.getParameter(column.getLabel()+"#indent");
+		if (value != null) {
+			try {
+				int i = Integer.parseInt(value.toString());
+				if (i > 0) {
+					return 2 * i;
 				}
+			} catch (NumberFormatException e) {
+				// we ignore a wrong number format here
 			}
-			return RowVisitResult.CONTINUE;
-		});
+		}
+		return 0;
 	}
 	
-	private void sortRows(TreeTable treeTable) {
-		treeTable.sort((r1, r2) -> {
-			int i1 = r1.hasRows() ? 1 : 0;
-			int i2 = r2.hasRows() ? 1 : 0;
-			return i2-i1;
-		});
-		Row[] rows = treeTable.getRows();
-		for (Row row : rows) {
-			sortRows(row);
+	/**
+	 * Walks through the rows of the given tree table in the order they are displayed.
+	 * <p>
+	 * The tree table itself is not modified: folder like rows are visited before the other rows of the same parent 
+	 * and the prefixes visualizing the tree structure are computed on the fly.
+	 * 
+	 * @param treeTable the tree table
+	 * @param tree <code>true</code> if the tree structure should be visualized
+	 * @param prefixes <code>true</code> if the prefixes of the rows are needed
+	 * @param continuations <code>true</code> if the prefixes for the following lines of the rows are needed
+	 * @param visitor the visitor
+	 */
+	/*package*/ void walk(TreeTable treeTable, boolean tree, boolean prefixes, boolean continuations, TreeRowVisitor visitor) {
+		if (!tree) {
+			int count = treeTable.getRowCount();
+			for (int i = 0; i < count; i++) {
+				visitor.visitRow(treeTable.getRow(i), 0, i == count - 1, null, null);
+			}
+			return;
 		}
-	}
-
-	private void sortRows(Row row) {
-		row.sort((r1, r2) -> {
-			int i1 = r1.hasRows() ? 1 : 0;
-			int i2 = r2.hasRows() ? 1 : 0;
-			return i2-i1;
-		});
-		Row[] rows = row.getRows();
-		for (Row childRow : rows) {
-			sortRows(childRow);
+		String child = treeLineChild + treeLineHorizontal + treeLineHorizontal + " ";
+		String lastChild = treeLineLastChild + treeLineHorizontal + treeLineHorizontal + " ";
+		String vertical = treeLineVertical + "  ";
+		// walk with an explicit stack to support arbitrary deep trees, the frames are reused for each level
+		Frame[] stack = new Frame[16];
+		int size = 0;
+		stack[size++] = new Frame().init(treeTable, "");
+		while (size > 0) {
+			Frame frame = stack[size - 1];
+			RowContainer container = frame.container;
+			int count = container.getRowCount();
+			int position = frame.position++;
+			if (position >= 2 * count) {
+				frame.clear();
+				size--;
+				continue;
+			}
+			// folder like rows first (first pass), then the remaining rows (second pass)
+			boolean folders = position < count;
+			int index = folders ? position : position - count;
+			if (frame.folders.get(index) != folders) {
+				continue;
+			}
+			Row row = container.getRow(index);
+			boolean isFirstLevel = size == 1;
+			// compared by index, the rows of a mapped tree table are new views on each access
+			boolean isLastRow = index == frame.lastIndex;
+			String prefix = frame.prefix;
+			if (prefixes) {
+				String p = isFirstLevel ? "" : (isLastRow ? lastChild : child);
+				String childPrefix = folders || continuations ? prefix + (isFirstLevel ? "" : (isLastRow ? "    " : vertical)) : null;
+				visitor.visitRow(row, size - 1, isLastRow, prefix + p, childPrefix);
+				prefix = childPrefix;
+			} else {
+				visitor.visitRow(row, size - 1, isLastRow, null, null);
+			}
+			if (folders) {
+				if (size == stack.length) {
+					stack = Arrays.copyOf(stack, size * 2);
+				}
+				if (stack[size] == null) {
+					stack[size] = new Frame();
+				}
+				stack[size++].init(row, prefix);
+			}
 		}
 	}
 	
-	private void addTreeStructure(Column firstColumn, Row[] rows, String prefix) {
-		for (int i = 0; i < rows.length; i++) {
-			Row row = rows[i];
-			boolean isFirstLevel = row.depth() == 1;
-			boolean isLastRow = i == rows.length - 1;
-			addTreeStructure(firstColumn, row.getRows(), prefix + (isFirstLevel ? "" : (isLastRow ? "    " : treeLineVertical + "  ")));
-			String p = isFirstLevel ? "" : (isLastRow ? treeLineLastChild : treeLineChild) + treeLineHorizontal + treeLineHorizontal + " " ; 
-			row.setCellContent(firstColumn, prefix + p + getCellContent(row, firstColumn));
+	/**
+	 * A frame of the stack used by {@link TreeTableToTextConverter#walk(TreeTable, boolean, boolean, boolean, TreeRowVisitor)}.
+	 */
+	private static final class Frame {
+		
+		private RowContainer container;
+		private int lastIndex;
+		// the rows with sub rows, classified once, so a row is never visited in both passes
+		private final BitSet folders = new BitSet();
+		private String prefix;
+		private int position;
+		
+		private Frame init(RowContainer container, String prefix) {
+			this.container = container;
+			this.prefix = prefix;
+			this.position = 0;
+			// folder like rows first, the last visible row is the last row without sub rows (if any)
+			this.lastIndex = -1;
+			folders.clear();
+			boolean lastHasRows = false;
+			int count = container.getRowCount();
+			for (int i = 0; i < count; i++) {
+				// the row count loads the sub rows of lazy rows, which may have no sub rows at all
+				boolean hasRows = container.getRow(i).getRowCount() > 0;
+				folders.set(i, hasRows);
+				if (lastIndex < 0 || !hasRows || lastHasRows) {
+					lastIndex = i;
+					lastHasRows = hasRows;
+				}
+			}
+			return this;
+		}
+		
+		private void clear() {
+			container = null;
+			folders.clear();
+			prefix = null;
 		}
+		
 	}
 	
-	private String separator(Column[] columns, String lineSeperator, String lineSeperatorMiddleLeft, String lineSeperatorCenter, String lineSeperatorMiddleRight) {
-		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < columns.length; i++) {
-			Column column = columns[i];
+	/**
+	 * Callback for the rows visited by {@link TreeTableToTextConverter#walk(TreeTable, boolean, boolean, boolean, TreeRowVisitor)}.
+	 */
+	/*package*/ interface TreeRowVisitor {
+		
+		/**
+		 * @param row the visited row
+		 * @param level the level of the row (<code>0</code> for the rows on the top level)
+		 * @param last <code>true</code> if the row is the last visible row of its parent
+		 * @param prefix the prefix visualizing the tree structure or <code>null</code>
+		 * @param childPrefix the prefix of the sub rows, which continues the tree structure below the row, or <code>null</code>
+		 */
+		void visitRow(Row row, int level, boolean last, String prefix, String childPrefix);
+		
+	}
+	
+	private void separator(Appendable sb, TextLayout layout, String lineSeperator, String lineSeperatorMiddleLeft, String lineSeperatorCenter, String lineSeperatorMiddleRight) throws IOException {
+		int columnCount = layout.getColumns().length;
+		for (int i = 0; i < columnCount; i++) {
 			if (isPrintOuterLines()) {
 				if (i == 0) {
 					sb.append(lineSeperatorMiddleLeft).append(lineSeperator);
 				}
 			}
-			sb.append(lineSeperator.repeat(getWidth(column)));
-			if (i == columns.length-1) {
+			TextCells.appendRepeated(sb, lineSeperator, layout.getWidth(i));
+			if (i == columnCount-1) {
 				if (isPrintOuterLines()) {
 					sb.append(lineSeperator).append(lineSeperatorMiddleRight);
 				}
@@ -656,42 +1068,18 @@ public class TreeTableToTextConverter implements TreeTableConverter<String> {
 			}
 		}
 		sb.append("\n");
-		return sb.toString();
 	}
 	
-	private String line(Column[] columns, Function<Column, String> cellTextProvider) {
-		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < columns.length; i++) {
-			Column column = columns[i];
+	private void line(Appendable sb, TextLayout layout, IntFunction<String> cellTextProvider) throws IOException {
+		int columnCount = layout.getColumns().length;
+		for (int i = 0; i < columnCount; i++) {
 			if (isPrintOuterLines()) {
 				if (i == 0) {
 					sb.append(columnSeperator).append(" ");
 				}
 			}
-			String label = cellTextProvider.apply(column);
-			if (label == null) {
-				label = "";
-			}
-			// TODO handle new lines
-			label = label.replaceAll("\r", "");
-			label = label.replaceAll("\n", " ");
-			int gap = getWidth(column) - label.length();
-			switch (column.getAlignment()) {
-				case CENTER:
-					sb.append(" ".repeat((int)Math.floor(gap/2.0)));
-					sb.append(label);
-					sb.append(" ".repeat((int)Math.ceil(gap/2.0)));
-					break;
-				case LEFT:
-					sb.append(label);
-					sb.append(" ".repeat(gap));
-					break;
-				case RIGHT:
-					sb.append(" ".repeat(gap));
-					sb.append(label);
-					break;
-			}
-			if (i == columns.length-1) {
+			TextCells.appendCell(sb, cellTextProvider.apply(i), layout.getWidth(i), layout.getAlignment(i));
+			if (i == columnCount-1) {
 				if (isPrintOuterLines()) {
 					sb.append(" ").append(columnSeperator);
 				}
@@ -704,7 +1092,79 @@ public class TreeTableToTextConverter implements TreeTableConverter<String> {
 			}
 		}
 		sb.append("\n");
-		return sb.toString();
 	}
 	
-}
+	/**
+	 * Writes all lines of the given row. The lines are found while writing, the cursors hold the start index of the next
+	 * line of each cell (or <code>-1</code> if all lines of the cell are written).
+	 * 
+	 * @param sb the output to write to
+	 * @param layout the layout
+	 * @param row the row index
+	 * @param cursors the cursors (one for each column)
+	 * 
+	 * @throws IOException if the output can not be written
+	 */
+	private void lines(Appendable sb, TextLayout layout, int row, int[] cursors) throws IOException {
+		int columnCount = layout.getColumns().length;
+		for (int i = 0; i < columnCount; i++) {
+			cursors[i] = layout.getLead(row, i);
+		}
+		boolean multiLine = layout.isMultiLine();
+		int height = layout.getHeight(row);
+		for (int l = 0; l < height; l++) {
+			for (int i = 0; i < columnCount; i++) {
+				if (isPrintOuterLines()) {
+					if (i == 0) {
+						sb.append(columnSeperator).append(" ");
+					}
+				}
+				String text = layout.getCell(row, i);
+				int lead = layout.getLead(row, i);
+				int trail = layout.getTrail(row, i);
+				int end = text.length() - trail;
+				int start = cursors[i];
+				int lineEnd = start;
+				if (start >= 0) {
+					lineEnd = TextLayout.lineEnd(text, start, end, layout.getMaxWidth(i), multiLine);
+					cursors[i] = TextLayout.nextLine(text, lineEnd, end, multiLine);
+				} else {
+					start = lineEnd = 0;
+				}
+				int leadWidth = TextCells.width(text, 0, lead);
+				int gap = layout.getWidth(i) - leadWidth - TextCells.width(text, start, lineEnd) - trail;
+				int before = 0;
+				if (layout.getAlignment(i) == ColumnAlignment.CENTER) {
+					before = gap / 2;
+				} else if (layout.getAlignment(i) == ColumnAlignment.RIGHT) {
+					before = gap;
+				}
+				TextCells.appendSpaces(sb, before);
+				String continuation = i == 0 ? layout.getContinuation(row) : null;
+				if (l == 0) {
+					sb.append(text, 0, lead);
+				} else if (continuation != null) {
+					sb.append(continuation);
+					TextCells.appendSpaces(sb, leadWidth - TextCells.width(continuation));
+				} else {
+					TextCells.appendSpaces(sb, leadWidth);
+				}
+				TextCells.appendText(sb, text, start, lineEnd);
+				TextCells.appendSpaces(sb, trail + gap - before);
+				if (i == columnCount-1) {
+					if (isPrintOuterLines()) {
+						sb.append(" ").append(columnSeperator);
+					}
+				} else {
+					if (isPrintInnerLines()) {
+						sb.append(" ").append(columnSeperator).append(" ");
+					} else {
+						sb.append(" ");
+					}
+				}
+			}
+			sb.append("\n");
+		}
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.util;
+
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.RowContainer;
+import io.github.dogla.treetable.TreeTable;
+
+/**
+ * Walker for the rows inside a {@link TreeTable} which visits independent subtrees in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * The visitor is called concurrently and must therefore be thread-safe. The following ordering rules apply:
+ * <ul>
+ * <li>The rows of one parent (siblings) are visited in their order by the same thread. Large numbers of siblings
+ * (e.g. the rows of a flat table) are split into ranges, which are visited concurrently.</li>
+ * <li>A row is always visited before its sub rows.</li>
+ * <li>The subtrees of different rows are visited concurrently and in no particular order.</li>
+ * </ul>
+ * The results of the visitor are handled as follows:
+ * <ul>
+ * <li>{@link RowVisitResult#CONTINUE}: the sub rows of the row are visited by a new task.</li>
+ * <li>{@link RowVisitResult#SKIP_SUBTREE}: the sub rows of the row are skipped.</li>
+ * <li>{@link RowVisitResult#SKIP_SIBLINGS}: the sub rows and the remaining siblings of the row are skipped. Subtrees of
+ * previous siblings are still visited, because they may already run on other threads. The same applies to following
+ * siblings in another range, which are skipped once the result is observed.</li>
+ * <li>{@link RowVisitResult#TERMINATE} (or <code>null</code>): cooperative cancellation, i.e. no further rows are visited
+ * once the termination is observed, but visits running concurrently on other threads are completed.</li>
+ * </ul>
+ * The walk does not recurse and no task waits for its subtasks, so deep trees occupy neither the stack nor extra threads.
+ * <p>
+ * The sub rows of lazy rows (see {@link io.github.dogla.treetable.RowLoader}) are loaded by the worker threads, the loader
+ * synchronizes the loading (a worker waiting for a source blocks its thread, so prefer asynchronous sources with an own executor).
+ *
+ * @author Dominik Glaser
+ */
+public class ParallelRowWalker {
+
+	// the maximum number of siblings visited by one task
+	private static final int SPLIT_THRESHOLD = 1 << 10;
+
+	private final RowVisitor visitor;
+	private final int maxDepth;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param visitor the visitor (must be thread-safe)
+	 */
+	public ParallelRowWalker(RowVisitor visitor) {
+		this(visitor, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param visitor the visitor (must be thread-safe)
+	 * @param maxDepth the max depth
+	 */
+	public ParallelRowWalker(RowVisitor visitor, int maxDepth) {
+		this(visitor, maxDepth, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param visitor the visitor (must be thread-safe)
+	 * @param maxDepth the max depth
+	 * @param pool the pool to run the walk on
+	 */
+	public ParallelRowWalker(RowVisitor visitor, int maxDepth, ForkJoinPool pool) {
+		this.visitor = visitor;
+		this.maxDepth = maxDepth;
+		this.pool = pool;
+	}
+
+	/**
+	 * Walks through the tree/row structure of the given {@link TreeTable} and waits until all rows are visited.
+	 *
+	 * @param tree the {@link TreeTable}
+	 */
+	public void walk(TreeTable tree) {
+		pool.invoke(new WalkTask(null, new AtomicBoolean(), tree, 0, 0, -1, null));
+	}
+
+	/**
+	 * Walks through the tree/row structure of the given {@link Row} and waits until all rows are visited.
+	 *
+	 * @param row the starting row
+	 */
+	public void walk(Row row) {
+		// at maximum depth
+		if (1 >= maxDepth) {
+			return;
+		}
+
+		final RowVisitResult result = visitor.visitRow(row);
+		// terminate tree walk, skip subtree or skip siblings (there are no siblings of the starting row)
+		if (result != RowVisitResult.CONTINUE) {
+			return;
+		}
+		pool.invoke(new WalkTask(null, new AtomicBoolean(), row, 1, 0, -1, null));
+	}
+
+	/**
+	 * The task visiting a range of the rows of a container. The task splits off the upper half of large ranges, forks a new task 
+	 * for each visited row with sub rows and completes as soon as all forked tasks are completed.
+	 */
+	private final class WalkTask extends CountedCompleter<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final AtomicBoolean terminated;
+		private final transient RowContainer container;
+		private final int depth;
+		private final int from;
+		private int to;
+		// the index of the row which skipped its remaining siblings (shared by the ranges of the container, null if not split)
+		private AtomicInteger skipped;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param parent the parent task
+		 * @param terminated the termination flag of the walk
+		 * @param container the container whose rows should be visited
+		 * @param depth the depth of the container
+		 * @param from the index of the first row to visit (inclusive)
+		 * @param to the index of the last row to visit (exclusive) or <code>-1</code> for all rows
+		 * @param skipped the index of the row which skipped its remaining siblings or <code>null</code>
+		 */
+		private WalkTask(WalkTask parent, AtomicBoolean terminated, RowContainer container, int depth, int from, int to, AtomicInteger skipped) {
+			super(parent);
+			this.terminated = terminated;
+			this.container = container;
+			this.depth = depth;
+			this.from = from;
+			this.to = to;
+			this.skipped = skipped;
+		}
+
+		@Override
+		public void compute() {
+			int rowDepth = depth + 1;
+			// at maximum depth: nothing to visit
+			if (rowDepth < maxDepth) {
+				if (to < 0) {
+					to = container.getRowCount();
+				}
+				// split off the upper halves, so the rows of wide levels are visited by multiple threads
+				while (to - from > SPLIT_THRESHOLD) {
+					if (skipped == null) {
+						skipped = new AtomicInteger(Integer.MAX_VALUE);
+					}
+					int mid = (from + to) >>> 1;
+					addToPendingCount(1);
+					new WalkTask(this, terminated, container, depth, mid, to, skipped).fork();
+					to = mid;
+				}
+				for (int i = from; i < to && !terminated.get() && (skipped == null || i < skipped.get()); i++) {
+					Row row = container.getRow(i);
+					final RowVisitResult result = visitor.visitRow(row);
+					// terminate tree walk
+					if (result == null || result == RowVisitResult.TERMINATE) {
+						terminated.set(true);
+						break;
+					}
+
+					// skip subtree
+					if (result == RowVisitResult.SKIP_SUBTREE) {
+						continue;
+					}
+
+					// skip remaining siblings
+					if (result == RowVisitResult.SKIP_SIBLINGS) {
+						if (skipped != null) {
+							skipped.accumulateAndGet(i, Math::min);
+						}
+						break;
+					}
+
+					if (row.hasRows() && rowDepth + 1 < maxDepth) {
+						addToPendingCount(1);
+						new WalkTask(this, terminated, row, rowDepth, 0, -1, null).fork();
+					}
+				}
+			}
+			tryComplete();
+		}
+
+	}
+
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.util;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.RowContainer;
+import io.github.dogla.treetable.TreeTable;
+
+/**
+ * {@link Spliterator} for the rows inside a {@link TreeTable} in depth-first order (the order of the {@link RowWalker}).
+ * <p>
+ * The rows are not collected up front. The spliterator splits by subtree: the remaining siblings of the top most level
+ * are divided in halves, and if only a single row is left, its sub rows are divided instead.
+ * The size is only known (and reported as {@link #SIZED} and {@link #SUBSIZED}) if none of the rows has sub rows.
+ * <p>
+ * The sub rows of lazy rows (see {@link io.github.dogla.treetable.RowLoader}) are loaded by the threads of a parallel
+ * stream, the loader synchronizes the loading.
+ *
+ * @author Dominik Glaser
+ */
+public class RowSpliterator implements Spliterator<Row> {
+
+	// a single row which is reported before the rows of the stack (without its sub rows)
+	private Row head;
+	// the containers whose rows are currently traversed with the index of the next row and the end index
+	private RowContainer[] containers;
+	private int[] indexes;
+	private int[] ends;
+	private int size;
+	private final boolean sized;
+	private long estimatedSize;
+
+	/**
+	 * Constructor for the rows of the given {@link TreeTable}.
+	 *
+	 * @param tree the {@link TreeTable}
+	 */
+	public RowSpliterator(TreeTable tree) {
+		this(null, tree, !tree.isTree());
+	}
+
+	/**
+	 * Constructor for the given {@link Row} and all its sub rows.
+	 *
+	 * @param row the starting row
+	 */
+	public RowSpliterator(Row row) {
+		this(row, row, !row.hasRows());
+	}
+
+	private RowSpliterator(Row head, RowContainer container, boolean sized) {
+		this.head = head;
+		this.containers = new RowContainer[16];
+		this.indexes = new int[16];
+		this.ends = new int[16];
+		this.sized = sized;
+		int count = container.getRowCount();
+		if (count > 0) {
+			push(container, 0, count);
+		}
+		this.estimatedSize = sized ? (head != null ? 1 : 0) + count : Long.MAX_VALUE;
+	}
+
+	private RowSpliterator(RowSpliterator spliterator, int end) {
+		// takes over the complete state of the given spliterator
+		this.head = spliterator.head;
+		this.containers = spliterator.containers;
+		this.indexes = spliterator.indexes;
+		this.ends = spliterator.ends;
+		this.size = spliterator.size;
+		this.sized = spliterator.sized;
+		this.ends[0] = end;
+		this.estimatedSize = sized ? remaining() : spliterator.estimatedSize >>> 1;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Row> action) {
+		if (head != null) {
+			Row row = head;
+			head = null;
+			action.accept(row);
+			return true;
+		}
+		while (size > 0) {
+			int top = size - 1;
+			int index = indexes[top];
+			if (index >= ends[top]) {
+				pop();
+				continue;
+			}
+			indexes[top] = index + 1;
+			Row row = containers[top].getRow(index);
+			if (row.hasRows()) {
+				push(row, 0, row.getRowCount());
+			}
+			action.accept(row);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public Spliterator<Row> trySplit() {
+		// drop the exhausted top most levels, their last row is currently traversed
+		while (size > 1 && indexes[0] >= ends[0]) {
+			size--;
+			System.arraycopy(containers, 1, containers, 0, size);
+			System.arraycopy(indexes, 1, indexes, 0, size);
+			System.arraycopy(ends, 1, ends, 0, size);
+			containers[size] = null;
+		}
+		if (size == 0) {
+			return null;
+		}
+		int lo = indexes[0];
+		int hi = ends[0];
+		if (hi - lo < 2) {
+			if (size > 1 || head != null || hi - lo < 1) {
+				return null;
+			}
+			// a single row with its sub rows is left: report the row itself first and split its sub rows
+			Row row = containers[0].getRow(lo);
+			int count = row.getRowCount();
+			if (count < 2) {
+				return null;
+			}
+			head = row;
+			containers[0] = row;
+			indexes[0] = lo = 0;
+			ends[0] = hi = count;
+		}
+		int mid = (lo + hi) >>> 1;
+		// the prefix (the current subtrees and the first half of the remaining siblings) is split off
+		RowContainer container = containers[0];
+		RowSpliterator prefix = new RowSpliterator(this, mid);
+		this.head = null;
+		this.containers = new RowContainer[16];
+		this.indexes = new int[16];
+		this.ends = new int[16];
+		this.size = 0;
+		push(container, mid, hi);
+		this.estimatedSize = sized ? remaining() : estimatedSize >>> 1;
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		return sized ? remaining() : estimatedSize;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL | (sized ? SIZED | SUBSIZED : 0);
+	}
+
+	private long remaining() {
+		long remaining = head != null ? 1 : 0;
+		for (int i = 0; i < size; i++) {
+			remaining += ends[i] - indexes[i];
+		}
+		return remaining;
+	}
+
+	private void push(RowContainer container, int index, int end) {
+		if (size == containers.length) {
+			containers = Arrays.copyOf(containers, size * 2);
+			indexes = Arrays.copyOf(indexes, size * 2);
+			ends = Arrays.copyOf(ends, size * 2);
+		}
+		containers[size] = container;
+		indexes[size] = index;
+		ends[size] = end;
+		size++;
+	}
+
+	private void pop() {
+		size--;
+		containers[size] = null;
+	}
+
+}
@@ -15,11 +15,17 @@
  */
 package io.github.dogla.treetable.util;
 
+import java.util.Arrays;
+
 import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.RowContainer;
 import io.github.dogla.treetable.TreeTable;
 
 /**
  * Simple walker for the rows inside a {@link TreeTable}.
+ * <p>
+ * The walker does not recurse but uses an explicit stack, so even very deep trees can not cause a 
+ * {@link StackOverflowError}. The stack is reused by subsequent walks of the same walker instance.
  *
  * @author Dominik Glaser
  */
@@ -27,6 +33,11 @@ public class RowWalker {
 
 	private final RowVisitor visitor;
 	private final int maxDepth;
+	
+	// the containers whose rows are currently walked and the index of the next row to visit
+	private RowContainer[] containers = new RowContainer[16];
+	private int[] indexes = new int[16];
+	private int size;
 
 	/**
 	 * Constructor.
@@ -54,20 +65,7 @@ public class RowWalker {
 	 * @param tree the {@link TreeTable}
 	 */
 	public void walk(TreeTable tree) {
-		Row[] rows = tree.getRows();
-		for (Row row : rows) {
-			RowVisitResult result = walk(row, 1);
-
-			// terminate tree walk
-			if (result == null || result == RowVisitResult.TERMINATE) {
-				return;
-			}
-
-			// skip remaining siblings in this directory
-			if (result == RowVisitResult.SKIP_SIBLINGS) {
-				break;
-			}
-		}
+		walkRows(tree, 0);
 	}
 	
 	/**
@@ -76,55 +74,84 @@ public class RowWalker {
 	 * @param row the starting row
 	 */
 	public void walk(Row row) {
-		walk(row, 1);
+		// at maximum depth
+		if (1 >= maxDepth) {
+			return;
+		}
+		
+		final RowVisitResult result = visitor.visitRow(row);
+		// terminate tree walk, skip subtree or skip siblings (there are no siblings of the starting row)
+		if (result != RowVisitResult.CONTINUE) {
+			return;
+		}
+		walkRows(row, 1);
 	}
 	
 	/**
-	 * @param file
-	 *            the directory to visit
-	 * @param depth
-	 *            depth remaining
-	 * @param ancestors
-	 *            use when cycle detection is enabled
+	 * Walks through the rows of the given container.
+	 * 
+	 * @param container the container
+	 * @param depth the depth of the container
 	 */
-	private RowVisitResult walk(Row row, int depth) {
-		// at maximum depth or file is not a directory
-		if (depth >= maxDepth) {
-			return RowVisitResult.SKIP_SIBLINGS;
-		}
-
-		final RowVisitResult result = visitor.visitRow(row);
-		// terminate tree walk
-		if (result == null || result == RowVisitResult.TERMINATE) {
-			return RowVisitResult.TERMINATE;
-		}
-
-		// skip subtree
-		if (result == RowVisitResult.SKIP_SUBTREE) {
-			return result;
-		}
-
-		// skip sibling
-		if (result == RowVisitResult.SKIP_SIBLINGS) {
-			return result;
-		}
-
-		Row[] rows = row.getRows();
-		for (Row entry : rows) {
-			RowVisitResult subResult = walk(entry, depth + 1);
-
-			// returning null will cause NPE to be thrown
-			if (subResult == null || subResult == RowVisitResult.TERMINATE) {
-				return subResult;
+	private void walkRows(RowContainer container, int depth) {
+		// the walker may be used again by the visitor, so only the part of the stack above the current size is used 
+		final int base = size;
+		push(container);
+		try {
+			while (size > base) {
+				int top = size - 1;
+				RowContainer current = containers[top];
+				int index = indexes[top];
+				// at maximum depth: skip the remaining siblings (checked first, so lazy rows are not loaded)
+				if (depth + size - base >= maxDepth) {
+					pop();
+					continue;
+				}
+				if (index >= current.getRowCount()) {
+					pop();
+					continue;
+				}
+				indexes[top] = index + 1;
+				Row row = current.getRow(index);
+				final RowVisitResult result = visitor.visitRow(row);
+				// terminate tree walk
+				if (result == null || result == RowVisitResult.TERMINATE) {
+					return;
+				}
+				
+				// skip subtree
+				if (result == RowVisitResult.SKIP_SUBTREE) {
+					continue;
+				}
+				
+				// skip remaining siblings
+				if (result == RowVisitResult.SKIP_SIBLINGS) {
+					pop();
+					continue;
+				}
+				
+				push(row);
 			}
-
-			// skip remaining siblings in this directory
-			if (subResult == RowVisitResult.SKIP_SIBLINGS) {
-				break;
+		} finally {
+			while (size > base) {
+				pop();
 			}
 		}
-
-		return result;
+	}
+	
+	private void push(RowContainer container) {
+		if (size == containers.length) {
+			containers = Arrays.copyOf(containers, size * 2);
+			indexes = Arrays.copyOf(indexes, size * 2);
+		}
+		containers[size] = container;
+		indexes[size] = 0;
+		size++;
+	}
+	
+	private void pop() {
+		size--;
+		containers[size] = null;
 	}
 	
 }
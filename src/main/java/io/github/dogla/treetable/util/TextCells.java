@@ -0,0 +1,311 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import io.github.dogla.treetable.ColumnAlignment;
+
+/**
+ * Helper methods to write the text of table cells to an {@link Appendable} without creating intermediate strings.
+ * <p>
+ * Widths are display widths, i.e. the number of terminal columns a text occupies: wide (east asian) characters
+ * and most emojis occupy two columns, combining marks and other zero width characters none. The widths of all characters
+ * of the basic multilingual plane are computed once into a lookup table, ASCII characters do not even need the table.
+ *
+ * @author Dominik Glaser
+ */
+public final class TextCells {
+
+	private static final String SPACES = " ".repeat(64); //$NON-NLS-1$
+
+	private TextCells() {
+		// utility class
+	}
+
+	/**
+	 * Writes the given text aligned inside a cell of the given (display) width.
+	 * <p>
+	 * Carriage returns are removed and line feeds are replaced by spaces while the text is written.
+	 * Text without these characters is written at once.
+	 *
+	 * @param out the output to write to
+	 * @param text the text of the cell (<code>null</code> is written as an empty cell)
+	 * @param width the width of the cell
+	 * @param alignment the alignment of the text inside the cell
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	public static void appendCell(Appendable out, CharSequence text, int width, ColumnAlignment alignment) throws IOException {
+		int length = text != null ? text.length() : 0;
+		int textWidth = 0;
+		boolean plain = true;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				if (c == '\r') {
+					plain = false;
+					continue;
+				}
+				if (c == '\n') {
+					plain = false;
+				}
+				textWidth++;
+			} else {
+				int codePoint = codePointAt(text, i, length);
+				textWidth += width(codePoint);
+				i += Character.charCount(codePoint) - 1;
+			}
+		}
+		int gap = Math.max(0, width - textWidth);
+		int before;
+		switch (alignment) {
+			case CENTER:
+				before = gap / 2;
+				break;
+			case RIGHT:
+				before = gap;
+				break;
+			default:
+				before = 0;
+				break;
+		}
+		appendSpaces(out, before);
+		if (plain) {
+			if (length > 0) {
+				out.append(text);
+			}
+		} else {
+			appendText(out, text, 0, length);
+		}
+		appendSpaces(out, gap - before);
+	}
+
+	/**
+	 * Writes the given range of the text. Carriage returns are removed and line feeds are replaced by spaces.
+	 *
+	 * @param out the output to write to
+	 * @param text the text
+	 * @param start the start index (inclusive)
+	 * @param end the end index (exclusive)
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	public static void appendText(Appendable out, CharSequence text, int start, int end) throws IOException {
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c == '\r' || c == '\n') {
+				out.append(text, start, i);
+				if (c == '\n') {
+					out.append(' ');
+				}
+				start = i + 1;
+			}
+		}
+		out.append(text, start, end);
+	}
+
+	/**
+	 * Returns the display width of the given text as written by {@link #appendText(Appendable, CharSequence, int, int)}.
+	 *
+	 * @param text the text
+	 *
+	 * @return the display width
+	 */
+	public static int width(CharSequence text) {
+		return width(text, 0, text.length());
+	}
+
+	/**
+	 * Returns the display width of the given range of the text as written by {@link #appendText(Appendable, CharSequence, int, int)},
+	 * i.e. without carriage returns.
+	 *
+	 * @param text the text
+	 * @param start the start index (inclusive)
+	 * @param end the end index (exclusive)
+	 *
+	 * @return the display width
+	 */
+	public static int width(CharSequence text, int start, int end) {
+		int width = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				if (c != '\r') {
+					width++;
+				}
+			} else {
+				int codePoint = codePointAt(text, i, end);
+				width += width(codePoint);
+				i += Character.charCount(codePoint) - 1;
+			}
+		}
+		return width;
+	}
+
+	/**
+	 * Returns the display width of the given code point. Carriage returns have no width, all other
+	 * ASCII characters (including line feeds, which are written as spaces) have a width of <code>1</code>.
+	 *
+	 * @param codePoint the code point
+	 *
+	 * @return the display width (<code>0</code>, <code>1</code> or <code>2</code>)
+	 */
+	public static int width(int codePoint) {
+		if (codePoint < 0x80) {
+			return codePoint == '\r' ? 0 : 1;
+		}
+		if (codePoint < Widths.BMP.length) {
+			return Widths.BMP[codePoint];
+		}
+		return Widths.compute(codePoint);
+	}
+
+	/**
+	 * Returns the code point at the given index without reading beyond the given end index.
+	 *
+	 * @param text the text
+	 * @param index the index
+	 * @param end the end index (exclusive)
+	 *
+	 * @return the code point (or the char itself for an unpaired surrogate)
+	 */
+	public static int codePointAt(CharSequence text, int index, int end) {
+		char c = text.charAt(index);
+		if (Character.isHighSurrogate(c) && index + 1 < end) {
+			char low = text.charAt(index + 1);
+			if (Character.isLowSurrogate(low)) {
+				return Character.toCodePoint(c, low);
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Writes the given number of spaces.
+	 *
+	 * @param out the output to write to
+	 * @param count the number of spaces
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	public static void appendSpaces(Appendable out, int count) throws IOException {
+		while (count > 0) {
+			int n = Math.min(count, SPACES.length());
+			out.append(SPACES, 0, n);
+			count -= n;
+		}
+	}
+
+	/**
+	 * Writes the given text the given number of times.
+	 *
+	 * @param out the output to write to
+	 * @param text the text
+	 * @param count the number of repetitions
+	 *
+	 * @throws IOException if the output can not be written
+	 */
+	public static void appendRepeated(Appendable out, String text, int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			out.append(text);
+		}
+	}
+
+	/**
+	 * The display widths of the characters (initialized on first use of a non ASCII character).
+	 */
+	private static final class Widths {
+
+		/** the ranges of wide characters (pairs of first and last code point) */
+		private static final int[] WIDE = {
+			0x1100, 0x115F, // Hangul Jamo
+			0x231A, 0x231B, 0x2329, 0x232A, 0x23E9, 0x23EC, 0x23F0, 0x23F0, 0x23F3, 0x23F3,
+			0x25FD, 0x25FE, 0x2614, 0x2615, 0x2648, 0x2653, 0x267F, 0x267F, 0x2693, 0x2693,
+			0x26A1, 0x26A1, 0x26AA, 0x26AB, 0x26BD, 0x26BE, 0x26C4, 0x26C5, 0x26CE, 0x26CE,
+			0x26D4, 0x26D4, 0x26EA, 0x26EA, 0x26F2, 0x26F3, 0x26F5, 0x26F5, 0x26FA, 0x26FA,
+			0x26FD, 0x26FD, 0x2705, 0x2705, 0x270A, 0x270B, 0x2728, 0x2728, 0x274C, 0x274C,
+			0x274E, 0x274E, 0x2753, 0x2755, 0x2757, 0x2757, 0x2795, 0x2797, 0x27B0, 0x27B0,
+			0x27BF, 0x27BF, 0x2B1B, 0x2B1C, 0x2B50, 0x2B50, 0x2B55, 0x2B55, // emojis
+			0x2E80, 0x303E, // CJK radicals, symbols and punctuation
+			0x3041, 0x33FF, // Hiragana, Katakana, Bopomofo, CJK compatibility
+			0x3400, 0x4DBF, // CJK unified ideographs extension A
+			0x4E00, 0x9FFF, // CJK unified ideographs
+			0xA000, 0xA4CF, // Yi
+			0xA960, 0xA97F, // Hangul Jamo extended A
+			0xAC00, 0xD7A3, // Hangul syllables
+			0xF900, 0xFAFF, // CJK compatibility ideographs
+			0xFE10, 0xFE19, 0xFE30, 0xFE6F, // vertical and small forms
+			0xFF00, 0xFF60, 0xFFE0, 0xFFE6, // fullwidth forms
+			0x16FE0, 0x18CFF, // Tangut
+			0x1B000, 0x1B2FF, // Kana supplement
+			0x1F004, 0x1F004, 0x1F0CF, 0x1F0CF, 0x1F18E, 0x1F18E, 0x1F191, 0x1F19A,
+			0x1F200, 0x1F320, 0x1F32D, 0x1F335, 0x1F337, 0x1F37C, 0x1F37E, 0x1F393,
+			0x1F3A0, 0x1F3CA, 0x1F3CF, 0x1F3D3, 0x1F3E0, 0x1F3F0, 0x1F3F4, 0x1F3F4,
+			0x1F3F8, 0x1F43E, 0x1F440, 0x1F440, 0x1F442, 0x1F4FC, 0x1F4FF, 0x1F53D,
+			0x1F54B, 0x1F54E, 0x1F550, 0x1F567, 0x1F57A, 0x1F57A, 0x1F595, 0x1F596,
+			0x1F5A4, 0x1F5A4, 0x1F5FB, 0x1F64F, 0x1F680, 0x1F6C5, 0x1F6CC, 0x1F6CC,
+			0x1F6D0, 0x1F6D2, 0x1F6D5, 0x1F6D7, 0x1F6EB, 0x1F6EC, 0x1F6F4, 0x1F6FC,
+			0x1F7E0, 0x1F7EB, 0x1F90C, 0x1F93A, 0x1F93C, 0x1F945, 0x1F947, 0x1F9FF,
+			0x1FA70, 0x1FAFF, // emojis
+			0x20000, 0x2FFFD, 0x30000, 0x3FFFD // CJK unified ideographs extension B and later
+		};
+
+		private static final byte[] BMP = new byte[0x10000];
+
+		static {
+			for (int c = 0; c < BMP.length; c++) {
+				BMP[c] = (byte) compute(c);
+			}
+		}
+
+		private Widths() {
+			// holder class
+		}
+
+		/**
+		 * Computes the display width of the given code point.
+		 *
+		 * @param codePoint the code point
+		 *
+		 * @return the display width
+		 */
+		private static int compute(int codePoint) {
+			if (codePoint < 0x80) {
+				return codePoint == '\r' ? 0 : 1;
+			}
+			switch (Character.getType(codePoint)) {
+				case Character.NON_SPACING_MARK:
+				case Character.ENCLOSING_MARK:
+				case Character.FORMAT:
+				case Character.CONTROL:
+					return 0;
+				default:
+					break;
+			}
+			if (codePoint >= 0x1160 && codePoint <= 0x11FF) {
+				// Hangul Jamo vowels and final consonants are combined with the preceding character
+				return 0;
+			}
+			int index = Arrays.binarySearch(WIDE, codePoint);
+			// found a boundary (index >= 0) or inside a range, i.e. after an odd number of boundaries
+			return index >= 0 || (-index - 1) % 2 == 1 ? 2 : 1;
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class.
+ *
+ * @author Dominik Glaser
+ */
+@SuppressWarnings({ "nls", "javadoc" })
+public class MappedTreeTableTest {
+
+	private Path path;
+
+	@Before
+	public void setUp() throws IOException {
+		path = Files.createTempFile("treetable", ".ttm");
+	}
+
+	@After
+	public void tearDown() {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			// the file is still mapped (on Windows)
+			path.toFile().deleteOnExit();
+		}
+	}
+
+	private static TreeTable createTree() {
+		TreeTable tree = new TreeTable(new Column[] { new Column("Name"), new Column("Size", ColumnAlignment.RIGHT) });
+		tree.getParameters().put("title", "Drives");
+		Row c = tree.addRow("C:", 512_000_000_000L);
+		c.setParameter("type", "drive");
+		Row windows = c.addRow("Windows", -1);
+		windows.addRow("explorer.exe", 4_096);
+		windows.addRow("notepad.exe", 1.5d);
+		windows.setData("system");
+		c.addRow("Users ☃", null);
+		tree.addRow("D:", Boolean.TRUE);
+		for (int i = 0; i < 100; i++) {
+			tree.getRow(1).addRow("Windows", i);
+		}
+		return tree;
+	}
+
+	@Test
+	public void test_mapped() throws IOException {
+		TreeTable tree = createTree();
+		MappedTreeTable.write(tree, path);
+		MappedTreeTable mapped = MappedTreeTable.open(path);
+		assertTrue(mapped.isFrozen());
+		assertTrue(mapped.isTree());
+		assertEquals(tree.toString(), mapped.toString());
+		assertEquals(tree.stream().count(), mapped.getTotalRowCount());
+		assertEquals(tree.height(), mapped.height());
+		assertEquals(ColumnAlignment.RIGHT, mapped.getColumns()[1].getAlignment());
+		assertEquals("Drives", mapped.getParameters().get("title"));
+		Row c = mapped.getRow(0);
+		assertEquals(Long.valueOf(512_000_000_000L), c.getCellContent(1));
+		assertEquals("drive", c.getParameter("type"));
+		assertEquals(Collections.singletonMap("type", "drive"), c.getParameters());
+		assertNull(c.getData());
+		Row windows = c.getRow(0);
+		assertEquals(c, windows.parent());
+		assertEquals(2, windows.depth());
+		assertEquals("system", windows.getData());
+		assertTrue(windows.getParameters().isEmpty());
+		assertEquals(Double.valueOf(1.5d), windows.getRow(1).getCellContent(mapped.getColumns()[1]));
+		assertEquals("Users ☃", c.getRow(1).getCellContent(0));
+		assertEquals("", c.getRow(1).getCellContent(1));
+		assertEquals(Integer.valueOf(99), mapped.getRow(1).getRow(99).getCellContent(1));
+		assertEquals(tree.stream().map(Row::toString).collect(Collectors.toList()),
+				mapped.stream().map(Row::toString).collect(Collectors.toList()));
+		// the rows are views
+		assertNotSame(mapped.getRow(0), mapped.getRow(0));
+		assertEquals(mapped.getRow(0), mapped.getRow(0));
+		assertEquals(mapped.getRow(0).hashCode(), mapped.getRow(0).hashCode());
+		assertFalse(mapped.getRow(0).equals(mapped.getRow(1)));
+	}
+
+	@Test
+	public void test_mapped_render() throws IOException {
+		TreeTable tree = createTree();
+		tree.getRow(0).addRow("pagefile.sys", 8_192);
+		MappedTreeTable.write(tree, path);
+		MappedTreeTable mapped = MappedTreeTable.open(path);
+		TreeTableToTextConverter converter = new TreeTableToTextConverter().withASCIIExtended();
+		String expected = converter.convert(tree);
+		// the last sub rows are drawn with the last child connector, although each access returns a new view
+		assertTrue(expected.contains("└── pagefile.sys"));
+		assertEquals(expected, converter.convert(mapped));
+		try (IncrementalTextRenderer renderer = new IncrementalTextRenderer(mapped, converter)) {
+			assertEquals(expected, renderer.toText());
+			assertEquals(expected, renderer.toText());
+		}
+	}
+
+	@Test
+	public void test_mapped_read_only() throws IOException {
+		MappedTreeTable.write(createTree(), path);
+		MappedTreeTable mapped = MappedTreeTable.open(path);
+		Row row = mapped.getRow(0);
+		try {
+			row.setCellContent(0, "E:");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			row.setParameter("type", "network");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			mapped.addRow("E:");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals("C:", row.getCellContent(0));
+	}
+
+	@Test
+	public void test_mapped_copy() throws IOException {
+		TreeTable tree = createTree();
+		MappedTreeTable.write(tree, path);
+		TreeTable copy = MappedTreeTable.open(path).copy();
+		assertFalse(copy.isFrozen());
+		assertEquals(tree.toString(), copy.toString());
+		assertEquals("system", copy.getRow(0).getRow(0).getData());
+		assertEquals("drive", copy.getRow(0).getParameter("type"));
+		copy.getRow(0).setCellContent(0, "E:");
+		assertEquals("E:", copy.getRow(0).getCellContent(0));
+	}
+
+	@Test
+	public void test_mapped_copy_constructor() throws IOException {
+		TreeTable tree = createTree();
+		MappedTreeTable.write(tree, path);
+		TreeTable copy = new TreeTable(MappedTreeTable.open(path));
+		assertFalse(copy.isFrozen());
+		assertEquals(tree.toString(), copy.toString());
+		assertEquals(tree.height(), copy.height());
+		assertEquals("Drives", copy.getParameters().get("title"));
+		assertEquals("system", copy.getRow(0).getRow(0).getData());
+		copy.getRow(0).addRow("new");
+		assertEquals(tree.getRow(0).getRowCount() + 1, copy.getRow(0).getRowCount());
+	}
+
+	@Test
+	public void test_mapped_wide_row() throws IOException {
+		String[] labels = new String[1_000];
+		Object[] cells = new Object[labels.length];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = "C" + i;
+			cells[i] = i % 2 == 0 ? "cell " + i : Integer.valueOf(i);
+		}
+		TreeTable tree = new TreeTable(labels);
+		tree.addRow(cells);
+		MappedTreeTable.write(tree, path);
+		Row row = MappedTreeTable.open(path).getRow(0);
+		// in reverse order, each cell is read by its position
+		for (int i = labels.length - 1; i >= 0; i--) {
+			assertEquals(cells[i], row.getCellContent(i));
+		}
+	}
+
+	@Test
+	public void test_mapped_deep_tree() throws IOException {
+		TreeTable tree = new TreeTable("Name");
+		Row row = tree.addRow("r");
+		for (int i = 0; i < 100_000; i++) {
+			row = row.addRow(i);
+		}
+		MappedTreeTable.write(tree, path);
+		MappedTreeTable mapped = MappedTreeTable.open(path);
+		assertEquals(100_001, mapped.height());
+		assertEquals(100_001, mapped.stream().count());
+		assertEquals(Integer.valueOf(99_999), mapped.stream().reduce((a, b) -> b).get().getCellContent(0));
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_mapped_corrupt_file() throws IOException {
+		Files.write(path, new byte[64]);
+		MappedTreeTable.open(path);
+	}
+
+	private void patch(long offset, int... bytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+			for (int b : bytes) {
+				buffer.put((byte) b);
+			}
+			buffer.flip();
+			channel.write(buffer, offset);
+		}
+	}
+
+	private long columnsOffset() throws IOException {
+		return ByteBuffer.wrap(Files.readAllBytes(path)).getLong(16);
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_mapped_invalid_header() throws IOException {
+		MappedTreeTable.write(createTree(), path);
+		// the columns offset points behind the end of the file
+		patch(16, 0x7F, 0, 0, 0, 0, 0, 0, 0);
+		MappedTreeTable.open(path);
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_mapped_invalid_node_table() throws IOException {
+		MappedTreeTable.write(createTree(), path);
+		// more rows than the node table contains
+		patch(24, 0, 1, 0, 0);
+		MappedTreeTable.open(path);
+	}
+
+	@Test
+	public void test_mapped_replace() throws IOException {
+		TreeTable tree = createTree();
+		MappedTreeTable.write(tree, path);
+		MappedTreeTable mapped = MappedTreeTable.open(path);
+		TreeTable other = new TreeTable("Other");
+		other.addRow("row");
+		MappedTreeTable.write(other, path);
+		// the mapped file is replaced, not overwritten
+		assertEquals(tree.toString(), mapped.toString());
+		assertEquals(other.toString(), MappedTreeTable.open(path).toString());
+		String prefix = path.getFileName() + ".";
+		try (Stream<Path> files = Files.list(path.getParent())) {
+			assertFalse(files.anyMatch(p -> p.getFileName().toString().startsWith(prefix)));
+		}
+	}
+
+	@Test
+	public void test_mapped_unsupported_data() throws IOException {
+		TreeTable tree = createTree();
+		MappedTreeTable.write(tree, path);
+		TreeTable invalid = createTree();
+		invalid.getRow(1).setData(new Object());
+		try {
+			MappedTreeTable.write(invalid, path);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		// the existing file is kept
+		assertEquals(tree.toString(), MappedTreeTable.open(path).toString());
+		String prefix = path.getFileName() + ".";
+		try (Stream<Path> files = Files.list(path.getParent())) {
+			assertFalse(files.anyMatch(p -> p.getFileName().toString().startsWith(prefix)));
+		}
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_mapped_huge_column_count() throws IOException {
+		MappedTreeTable.write(createTree(), path);
+		patch(columnsOffset(), 0xFF, 0xFF, 0xFF, 0xFF, 0x0F);
+		MappedTreeTable.open(path);
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_mapped_invalid_alignment() throws IOException {
+		MappedTreeTable.write(new TreeTable(new Column[] { new Column((String) null) }), path);
+		// the alignment follows the column count and the label
+		patch(columnsOffset() + 2, 99);
+		MappedTreeTable.open(path);
+	}
+
+}
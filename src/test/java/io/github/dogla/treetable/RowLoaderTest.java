@@ -0,0 +1,334 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import io.github.dogla.treetable.util.ParallelRowWalker;
+import io.github.dogla.treetable.util.RowVisitResult;
+import io.github.dogla.treetable.util.RowWalker;
+
+/**
+ * Test class.
+ *
+ * @author Dominik Glaser
+ */
+@SuppressWarnings({ "nls", "javadoc" })
+public class RowLoaderTest {
+
+	/**
+	 * A source of a complete tree with the given fan-out and depth, the name of a row is its path.
+	 */
+	private static class CountingSource implements RowSource {
+
+		private final int fanOut;
+		private final int depth;
+		private final AtomicInteger loads = new AtomicInteger();
+		private final AtomicInteger batches = new AtomicInteger();
+		// loads asynchronously if not null
+		private final Executor executor;
+
+		CountingSource(int fanOut, int depth) {
+			this(fanOut, depth, null);
+		}
+
+		CountingSource(int fanOut, int depth, Executor executor) {
+			this.fanOut = fanOut;
+			this.depth = depth;
+			this.executor = executor;
+		}
+
+		@Override
+		public CompletableFuture<List<Object[]>> loadRows(Row parent) {
+			loads.incrementAndGet();
+			List<Object[]> cells = new ArrayList<>();
+			for (int i = 0; i < fanOut; i++) {
+				cells.add(new Object[] { parent.getCellContent(0) + "/" + i });
+			}
+			return executor != null ? CompletableFuture.supplyAsync(() -> cells, executor) : CompletableFuture.completedFuture(cells);
+		}
+
+		@Override
+		public CompletableFuture<List<List<Object[]>>> loadRows(List<Row> parents) {
+			batches.incrementAndGet();
+			return RowSource.super.loadRows(parents);
+		}
+
+		@Override
+		public boolean hasRows(Row row) {
+			return row.depth() < depth;
+		}
+
+	}
+
+	private static Row createRoot(RowLoader loader) {
+		TreeTable treeTable = new TreeTable("Name");
+		Row root = treeTable.addRow("r");
+		root.setRowLoader(loader);
+		return root;
+	}
+
+	@Test
+	public void test_load_on_access() {
+		CountingSource source = new CountingSource(3, 3);
+		Row root = createRoot(new RowLoader(source));
+		assertFalse(root.isLoaded());
+		assertTrue(root.hasRows());
+		assertEquals(0, source.loads.get());
+		assertEquals(3, root.getRowCount());
+		assertTrue(root.isLoaded());
+		assertEquals(1, source.loads.get());
+		assertEquals("r/1", root.getRow(1).getCellContent(0));
+		assertEquals(2, root.getRow(1).depth());
+		assertSame(root, root.getRow(1).parent());
+		// the complete tree is loaded by a walk: 1 + 3 rows have sub rows
+		assertEquals(1 + 3 + 9, root.stream().count());
+		assertEquals(4, source.loads.get());
+		assertEquals(3, root.treeTable().height());
+		// the leaves are not requested
+		Row leaf = root.getRow(0).getRow(0);
+		assertFalse(leaf.hasRows());
+		assertEquals(0, leaf.getRowCount());
+		assertEquals(4, source.loads.get());
+	}
+
+	@Test
+	public void test_walk_loads_visited_rows_only() {
+		CountingSource source = new CountingSource(10, 5);
+		TreeTable treeTable = new TreeTable("Name");
+		Row root = treeTable.addRow("r");
+		root.setRowLoader(new RowLoader(source));
+		List<Object> names = new ArrayList<>();
+		treeTable.walk(row -> {
+			names.add(row.getCellContent(0));
+			Object name = row.getCellContent(0);
+			return "r".equals(name) || "r/0".equals(name) ? RowVisitResult.CONTINUE : RowVisitResult.SKIP_SUBTREE;
+		});
+		// the root is visited and its sub rows are loaded, only the first sub row is entered
+		assertEquals(1 + 10 + 10, names.size());
+		assertEquals(2, source.loads.get());
+		// the rows at the max depth are not loaded
+		new RowWalker(row -> RowVisitResult.CONTINUE, 3).walk(treeTable);
+		assertEquals(2, source.loads.get());
+		new RowWalker(row -> RowVisitResult.CONTINUE, 4).walk(treeTable);
+		assertEquals(1 + 10, source.loads.get());
+	}
+
+	@Test
+	public void test_prefetch() {
+		CountingSource source = new CountingSource(4, 3);
+		Row root = createRoot(new RowLoader(source).withPrefetch(true));
+		assertEquals(4, root.getRowCount());
+		assertEquals(1, source.batches.get());
+		// the sub rows of all siblings are requested in one batch
+		assertEquals(4, root.getRow(0).getRowCount());
+		assertEquals(2, source.batches.get());
+		assertEquals(1 + 4, source.loads.get());
+		for (int i = 1; i < 4; i++) {
+			Row row = root.getRow(i);
+			assertFalse(row.isLoaded());
+			assertEquals(4, row.getRowCount());
+		}
+		assertEquals(2, source.batches.get());
+		assertEquals(1 + 4, source.loads.get());
+	}
+
+	@Test
+	public void test_asynchronous_source() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			RowSource source = parent -> CompletableFuture.supplyAsync(() -> {
+				List<Object[]> cells = new ArrayList<>();
+				for (int i = 0; i < 3; i++) {
+					cells.add(new Object[] { parent.getCellContent(0) + "/" + i });
+				}
+				return cells;
+			}, executor);
+			Row root = createRoot(new RowLoader(source).withPrefetch(true));
+			List<String> names = root.getRow(2).stream().limit(5)
+					.map(row -> (String) row.getCellContent(0)).collect(Collectors.toList());
+			assertEquals(Arrays.asList("r/2", "r/2/0", "r/2/0/0", "r/2/0/0/0", "r/2/0/0/0/0"), names);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void test_render_empty_lazy_rows() {
+		// the directories may have sub rows, but are empty
+		RowSource source = new RowSource() {
+			@Override
+			public CompletableFuture<List<Object[]>> loadRows(Row parent) {
+				if (parent.depth() > 1) {
+					return CompletableFuture.completedFuture(new ArrayList<>());
+				}
+				return CompletableFuture.completedFuture(Arrays.asList(new Object[] { "emptyDir" }, new Object[] { "file" },
+						new Object[] { "dir" }, new Object[] { "file2" }));
+			}
+
+			@Override
+			public boolean hasRows(Row row) {
+				return row.getCellContent(0).toString().endsWith("Dir") || "dir".equals(row.getCellContent(0));
+			}
+		};
+		TreeTable lazy = new TreeTable("Name");
+		lazy.addRow("r").setRowLoader(new RowLoader(source));
+		TreeTable eager = new TreeTable("Name");
+		Row root = eager.addRow("r");
+		root.addRow("emptyDir");
+		root.addRow("file");
+		root.addRow("dir");
+		root.addRow("file2");
+		TreeTableToTextConverter converter = new TreeTableToTextConverter().withASCIIExtended();
+		// each row is rendered once with the same connectors as the loaded rows
+		assertEquals(converter.convert(eager), converter.convert(lazy));
+		assertEquals(converter.convert(eager), converter.convert(lazy));
+	}
+
+	@Test
+	public void test_height_does_not_load() {
+		CountingSource source = new CountingSource(3, 10);
+		TreeTable treeTable = new TreeTable("Name");
+		Row root = treeTable.addRow("r");
+		root.setRowLoader(new RowLoader(source));
+		treeTable.addRow("other");
+		root.getRow(0).getRowCount();
+		assertEquals(3, treeTable.height());
+		assertEquals(2, source.loads.get());
+		// the height is computed again from the loaded rows only
+		treeTable.removeRow(treeTable.getRow(1));
+		assertEquals(3, treeTable.height());
+		treeTable.freeze();
+		assertEquals(2, source.loads.get());
+	}
+
+	@Test
+	public void test_parallel_walk() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			CountingSource source = new CountingSource(4, 6, executor);
+			TreeTable treeTable = new TreeTable("Name");
+			treeTable.addRow("r").setRowLoader(new RowLoader(source).withPrefetch(true));
+			Set<Object> visited = ConcurrentHashMap.newKeySet();
+			new ParallelRowWalker(row -> {
+				visited.add(row.getCellContent(0));
+				return RowVisitResult.CONTINUE;
+			}, Integer.MAX_VALUE, new ForkJoinPool(4)).walk(treeTable);
+			// 4^0 + ... + 4^5 rows, each row with sub rows is loaded exactly once
+			assertEquals(1365, visited.size());
+			assertEquals(1 + 4 + 16 + 64 + 256, source.loads.get());
+			assertEquals(1365, treeTable.stream().parallel().count());
+			assertEquals(1 + 4 + 16 + 64 + 256, source.loads.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void test_eviction() {
+		CountingSource source = new CountingSource(2, 10);
+		RowLoader loader = new RowLoader(source).withMaxLoadedRows(3);
+		Row root = createRoot(loader);
+		Row a = root.getRow(0);
+		Row b = root.getRow(1);
+		assertEquals(2, a.getRowCount());
+		assertEquals(2, b.getRowCount());
+		assertEquals(3, source.loads.get());
+		// the least recently accessed row is unloaded, the ancestors of the loaded row are kept
+		assertEquals(2, b.getRow(0).getRowCount());
+		assertTrue(root.isLoaded());
+		assertFalse(a.isLoaded());
+		assertTrue(b.isLoaded());
+		assertTrue(b.getRow(0).isLoaded());
+		assertTrue(a.hasRows());
+		assertEquals(2, a.getRowCount());
+		assertEquals(5, source.loads.get());
+		// unloads the loaded descendants, too
+		root.unloadRows();
+		assertFalse(root.isLoaded());
+		assertEquals(2, root.getRowCount());
+		assertFalse(root.getRow(0).isLoaded());
+		assertEquals(6, source.loads.get());
+	}
+
+	@Test
+	public void test_failed_load() {
+		AtomicInteger attempts = new AtomicInteger();
+		RowSource source = parent -> {
+			if (attempts.incrementAndGet() == 1) {
+				CompletableFuture<List<Object[]>> future = new CompletableFuture<>();
+				future.completeExceptionally(new IllegalArgumentException("offline"));
+				return future;
+			}
+			return CompletableFuture.completedFuture(Arrays.<Object[]>asList(new Object[] { "a" }));
+		};
+		Row root = createRoot(new RowLoader(source));
+		try {
+			root.getRowCount();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("offline", e.getCause().getMessage());
+		}
+		// the row remains unloaded and is loaded again on the next access
+		assertFalse(root.isLoaded());
+		assertEquals(1, root.getRowCount());
+		assertEquals(2, attempts.get());
+	}
+
+	@Test
+	public void test_copy_and_frozen() {
+		CountingSource source = new CountingSource(2, 3);
+		Row root = createRoot(new RowLoader(source));
+		TreeTable treeTable = root.treeTable();
+		treeTable.freeze();
+		// the rows of frozen tree tables are not loaded
+		assertEquals(0, root.getRowCount());
+		assertEquals(0, source.loads.get());
+
+		root = createRoot(new RowLoader(source));
+		root.getRow(0).getRowCount();
+		// copies contain the loaded rows only
+		TreeTable copy = root.treeTable().copy();
+		assertEquals(1 + 2 + 2, copy.stream().count());
+		assertEquals(2, source.loads.get());
+		try {
+			root.setRowLoader(new RowLoader(source));
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * Test class.
+ *
+ * @author Dominik Glaser
+ */
+@SuppressWarnings({ "nls", "javadoc" })
+public class TreeTableBinaryTest {
+
+	private static TreeTable createTree() {
+		TreeTable tree = new TreeTable(new Column[] { new Column("Name"), new Column("Size", ColumnAlignment.RIGHT) });
+		tree.getColumns()[0].setMaxWidth(20);
+		tree.getParameters().put("title", "Drives");
+		Row c = tree.addRow("C:", 512_000_000_000L);
+		c.setParameter("type", "drive");
+		c.setParameter("removable", Boolean.FALSE);
+		Row windows = c.addRow("Windows", -1);
+		windows.addRow("explorer.exe", 4_096);
+		windows.addRow("notepad.exe", 1.5d);
+		windows.setData(Character.valueOf('W'));
+		c.addRow("Überall ☃", 2.5f);
+		c.addRow("x".repeat(100_000), (short) -7);
+		tree.addRow("D:", (byte) 3);
+		return tree;
+	}
+
+	private static byte[] write(TreeTable... tables) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (TreeTableBinaryWriter writer = new TreeTableBinaryWriter(out)) {
+			for (TreeTable table : tables) {
+				writer.write(table);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void test_round_trip() throws IOException {
+		TreeTable tree = createTree();
+		byte[] bytes = write(tree, new TreeTable("Empty"));
+		try (TreeTableBinaryReader reader = new TreeTableBinaryReader(new ByteArrayInputStream(bytes))) {
+			TreeTable read = reader.read();
+			assertEquals(tree.toString(), read.toString());
+			assertEquals(ColumnAlignment.RIGHT, read.getColumns()[1].getAlignment());
+			assertEquals(20, read.getColumns()[0].getMaxWidth());
+			assertEquals("Drives", read.getParameters().get("title"));
+			assertEquals(tree.height(), read.height());
+			Row c = read.getRow(0);
+			assertEquals(Long.valueOf(512_000_000_000L), c.getCellContent(1));
+			assertEquals("drive", c.getParameter("type"));
+			assertEquals(Boolean.FALSE, c.getParameter("removable"));
+			Row windows = c.getRow(0);
+			assertEquals(Integer.valueOf(-1), windows.getCellContent(1));
+			assertEquals(Character.valueOf('W'), windows.getData());
+			assertEquals(Double.valueOf(1.5d), windows.getRow(1).getCellContent(1));
+			assertEquals("Überall ☃", c.getRow(1).getCellContent(0));
+			assertEquals(Float.valueOf(2.5f), c.getRow(1).getCellContent(1));
+			assertEquals(100_000, ((String) c.getRow(2).getCellContent(0)).length());
+			assertEquals(Short.valueOf((short) -7), c.getRow(2).getCellContent(1));
+			assertEquals(Byte.valueOf((byte) 3), read.getRow(1).getCellContent(1));
+			assertNull(read.getRow(1).getData());
+			TreeTable empty = reader.read();
+			assertEquals("Empty", empty.getColumns()[0].getLabel());
+			assertEquals(0, empty.getRowCount());
+			try {
+				reader.read();
+				throw new AssertionError();
+			} catch (EOFException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void test_shared_strings() throws IOException {
+		TreeTable tree = new TreeTable("Name", "Status");
+		for (int i = 0; i < 10_000; i++) {
+			tree.addRow("row", i % 2 == 0 ? "active" : "inactive");
+		}
+		byte[] bytes = write(tree);
+		// child count, flags, two tags and two string references (at most two bytes each) per row
+		assertTrue(bytes.length <= 10_000 * 8 + 100);
+		TreeTable read = new TreeTableBinaryReader(new ByteArrayInputStream(bytes)).read();
+		assertEquals(tree.toString(), read.toString());
+	}
+
+	@Test
+	public void test_deep_tree() throws IOException {
+		TreeTable tree = new TreeTable("Name");
+		Row row = tree.addRow("r");
+		for (int i = 0; i < 100_000; i++) {
+			row = row.addRow(i);
+		}
+		TreeTable read = new TreeTableBinaryReader(new ByteArrayInputStream(write(tree))).read();
+		assertEquals(100_001, read.height());
+		assertEquals(100_001, read.stream().count());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_unsupported_type() throws IOException {
+		TreeTable tree = new TreeTable("Name");
+		tree.addRow(new Date());
+		write(tree);
+	}
+
+	@Test
+	public void test_unsupported_data() throws IOException {
+		TreeTable tree = createTree();
+		tree.getRow(1).setData(new Date());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (TreeTableBinaryWriter writer = new TreeTableBinaryWriter(out)) {
+			writer.write(tree);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		// the incomplete tree table is rejected
+		try {
+			new TreeTableBinaryReader(new ByteArrayInputStream(out.toByteArray())).read();
+			fail();
+		} catch (StreamCorruptedException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_corrupt_stream() throws IOException {
+		new TreeTableBinaryReader(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 })).read();
+	}
+
+	private static byte[] header(int... bytes) {
+		byte[] result = new byte[5 + bytes.length];
+		ByteBuffer.wrap(result).putInt(BinaryFormat.MAGIC).put((byte) BinaryFormat.VERSION);
+		for (int i = 0; i < bytes.length; i++) {
+			result[5 + i] = (byte) bytes[i];
+		}
+		return result;
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_truncated_stream() throws IOException {
+		byte[] bytes = write(createTree());
+		new TreeTableBinaryReader(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length / 2))).read();
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_huge_column_count() throws IOException {
+		// Integer.MAX_VALUE columns, but the stream ends
+		new TreeTableBinaryReader(new ByteArrayInputStream(header(0xFF, 0xFF, 0xFF, 0xFF, 0x07))).read();
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_huge_row_count() throws IOException {
+		// no columns, no parameters, Integer.MAX_VALUE rows, but the stream ends
+		new TreeTableBinaryReader(new ByteArrayInputStream(header(0, 0, 0xFF, 0xFF, 0xFF, 0xFF, 0x07))).read();
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_huge_child_count() throws IOException {
+		// no columns, no parameters, one row with Integer.MAX_VALUE sub rows
+		new TreeTableBinaryReader(new ByteArrayInputStream(header(0, 0, 1, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, 0))).read();
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void test_invalid_alignment() throws IOException {
+		// one column without label and with an unknown alignment
+		new TreeTableBinaryReader(new ByteArrayInputStream(header(1, BinaryFormat.TAG_NULL, 99, 0, 0, 0))).read();
+	}
+
+}
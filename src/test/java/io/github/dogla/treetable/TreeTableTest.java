@@ -16,6 +16,25 @@
 package io.github.dogla.treetable;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -815,4 +834,767 @@ public class TreeTableTest {
 		assertEquals(expected, tree.toText(converter.withASCIIExtended()));		
 	}
 	
+	@Test
+	public void test_render_to_writer() throws IOException {
+	    TreeTable tree = new TreeTable(new Column[] {
+    		new Column("Level", ColumnAlignment.RIGHT),
+    		new Column("Value", ColumnAlignment.RIGHT),
+	    });
+	    Row one = tree.addRow("one", 1);
+		one.addRow("two", 2).addRow("three", 3);
+		one.addRow("four", 4);
+		
+		String expected = ""
+				+ "+--------------+-------+\n"
+				+ "| Level        | Value |\n"
+				+ "+--------------+-------+\n"
+				+ "| one          |     1 |\n"
+				+ "| +-- two      |     2 |\n"
+				+ "| |  +-- three |     3 |\n"
+				+ "| +-- four     |     4 |\n"
+				+ "+--------------+-------+\n"
+				+ "";
+		StringWriter writer = new StringWriter();
+		tree.toText(writer);
+		assertEquals(expected, writer.toString());
+		assertEquals(expected, tree.toText());
+	}
+	
+	@Test
+	public void test_render_converts_cells_once() throws IOException {
+		AtomicInteger conversions = new AtomicInteger();
+		Object cell = new Object() {
+			@Override
+			public String toString() {
+				conversions.incrementAndGet();
+				return "cell";
+			}
+		};
+		TreeTable tree = new TreeTable("Name", "Value");
+		tree.addRow("one", cell).addRow("two", cell);
+		tree.toText(new StringWriter());
+		assertEquals(2, conversions.get());
+	}
+	
+	@Test
+	public void test_render_beyond_cache() throws IOException {
+		TreeTable tree = new TreeTable("Name", "Value");
+		Row root = tree.addRow("root", "");
+		int count = 100_000;
+		for (int i = 0; i < count; i++) {
+			root.addRow("child " + i, i);
+		}
+		StringWriter writer = new StringWriter();
+		tree.toText(writer);
+		String[] lines = writer.toString().split("\n");
+		// the header, the rows and the footer
+		assertEquals(count + 5, lines.length);
+		for (int i = 0; i < count; i++) {
+			String line = lines[i + 4];
+			assertEquals(lines[0].length(), line.length());
+			String[] cells = line.split("\\|");
+			assertTrue(line, cells[1].trim().endsWith("-- child " + i));
+			assertEquals(line, String.valueOf(i), cells[2].trim());
+		}
+	}
+	
+	@Test
+	public void test_tree_not_modified_by_rendering() {
+		Column file = new Column("File", ColumnAlignment.RIGHT);
+	    TreeTable tree = new TreeTable(new Column[] { file, new Column("Size") });
+	    Row c = tree.addRow("C:");
+	    Row readme = c.addRow("readme.txt", "12");
+	    Row windows = c.addRow("Windows");
+	    windows.addRow("explorer.exe", "4.800");
+	    windows.getParameters().put("File#indent", 1);
+	    
+		String expected = ""
+				+ "+---------------------+-------+\n"
+				+ "| File                | Size  |\n"
+				+ "+---------------------+-------+\n"
+				+ "| C:                  |       |\n"
+				+ "|   +-- Windows       |       |\n"
+				+ "| |  +-- explorer.exe | 4.800 |\n"
+				+ "| +-- readme.txt      | 12    |\n"
+				+ "+---------------------+-------+\n"
+				+ "";
+		assertEquals(expected, tree.toText());
+		
+		assertEquals(ColumnAlignment.RIGHT, file.getAlignment());
+		assertEquals("Windows", windows.getCellContent(file));
+		assertEquals(readme, c.getRows()[0]);
+		assertEquals(windows, c.getRows()[1]);
+	}
+	
+	@Test
+	public void test_cell_content() {
+		TreeTable table = new TreeTable("ID", "Name", "Salary");
+		Row row = table.addRow("1", "Leanne Graham");
+		Column[] columns = table.getColumns();
+		
+		assertEquals("Leanne Graham", row.getCellContent(columns[1]));
+		assertEquals("Leanne Graham", row.getCellContent(new Column("Name")));
+		assertEquals("", row.getCellContent(2));
+		assertNull(row.getCellContent(new Column("Phone")));
+		
+		row.setCellContent(2, 3200);
+		row.setCellContent(columns[0], "2");
+		assertEquals(3200, row.getCellContent(columns[2]));
+		assertEquals("2", row.getCellContent(0));
+		assertEquals("2, Leanne Graham, 3200", row.toString());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void test_cell_content_unknown_column() {
+		TreeTable table = new TreeTable("ID", "Name");
+		table.addRow("1").setCellContent(new Column("Phone"), "1-770-736-8031");
+	}
+	
+	@Test
+	public void test_empty_row() {
+		TreeTable table = new TreeTable("ID", "Name");
+		Row row = table.addRow();
+		
+		assertEquals("", row.getCellContent(1));
+		assertEquals(", ", row.toString());
+		assertFalse(row.hasRows());
+		assertEquals(0, row.getRows().length);
+		assertNull(row.getParameter("Name#indent"));
+		
+		row.setParameter("Name#indent", 1);
+		row.setCellContent(1, "Ervin Howell");
+		assertEquals(1, row.getParameters().get("Name#indent"));
+		assertEquals("Ervin Howell", table.copy().getRows()[0].getCellContent(1));
+		assertEquals(1, table.copy().getRows()[0].getParameter("Name#indent"));
+	}
+	
+	@Test
+	public void test_row_access() {
+		TreeTable tree = new TreeTable("File");
+		Row c = tree.addRow("C:");
+		Row windows = c.addRow("Windows");
+		Row users = c.addRow("Users");
+		
+		assertEquals(1, tree.getRowCount());
+		assertEquals(c, tree.getRow(0));
+		assertEquals(2, c.getRowCount());
+		assertEquals(users, c.getRow(1));
+		assertEquals(Arrays.asList(windows, users), c.rows());
+		assertEquals(0, windows.rows().size());
+		
+		StringBuilder sb = new StringBuilder();
+		c.forEachRow(r -> sb.append(r.getCellContent(0)).append(";"));
+		assertEquals("Windows;Users;", sb.toString());
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void test_row_access_unmodifiable() {
+		TreeTable tree = new TreeTable("File");
+		tree.addRow("C:").addRow("Windows");
+		tree.getRow(0).rows().clear();
+	}
+	
+	@Test
+	public void test_depth_and_height() {
+		TreeTable tree = new TreeTable("File");
+		assertEquals(0, tree.depth());
+		assertEquals(0, tree.height());
+		Row c = tree.addRow("C:");
+		Row windows = c.addRow("Windows");
+		Row system32 = windows.addRow("System32");
+		tree.addRow("D:").addRow("Data");
+		
+		assertEquals(1, tree.depth());
+		assertEquals(3, tree.height());
+		assertEquals(1, c.depth());
+		assertEquals(2, windows.depth());
+		assertEquals(3, system32.depth());
+		
+		TreeTable copy = tree.copy();
+		assertEquals(3, copy.height());
+		assertEquals(3, copy.getRow(0).getRow(0).getRow(0).depth());
+		copy.getRow(1).getRow(0).addRow("Backup").addRow("2023");
+		assertEquals(4, copy.height());
+		assertEquals(3, tree.height());
+	}
+	
+	private static TreeTable createMultiLineTree() {
+		TreeTable tree = new TreeTable("File", "Description");
+		Row c = tree.addRow("C:", "System drive");
+		Row windows = c.addRow("Windows", "Operating system\nfiles");
+		windows.addRow("explorer.exe", "The Windows explorer which shows files and folders");
+		c.addRow("Users\r\nHome", "");
+		return tree;
+	}
+	
+	@Test
+	public void test_multi_line() {
+		TreeTable tree = createMultiLineTree();
+		tree.getColumns()[1].setMaxWidth(20);
+		String expected = ""
+				+ "+---------------------+----------------------+\n"
+				+ "| File                | Description          |\n"
+				+ "+---------------------+----------------------+\n"
+				+ "| C:                  | System drive         |\n"
+				+ "| +-- Windows         | Operating system     |\n"
+				+ "| |                   | files                |\n"
+				+ "| |  +-- explorer.exe | The Windows explorer |\n"
+				+ "| |                   | which shows files    |\n"
+				+ "| |                   | and folders          |\n"
+				+ "| +-- Users           |                      |\n"
+				+ "|     Home            |                      |\n"
+				+ "+---------------------+----------------------+\n";
+		assertEquals(expected, tree.toText(new TreeTableToTextConverter().withMultiLine(true)));
+	}
+	
+	@Test
+	public void test_max_width() {
+		TreeTable tree = createMultiLineTree();
+		tree.getColumns()[1].setMaxWidth(20);
+		tree.getColumns()[1].setAlignment(ColumnAlignment.RIGHT);
+		String expected = ""
+				+ "+---------------------+----------------------+\n"
+				+ "| File                |          Description |\n"
+				+ "+---------------------+----------------------+\n"
+				+ "| C:                  |         System drive |\n"
+				+ "| +-- Windows         |     Operating system |\n"
+				+ "| |                   |                files |\n"
+				+ "| |  +-- explorer.exe | The Windows explorer |\n"
+				+ "| |                   |    which shows files |\n"
+				+ "| |                   |          and folders |\n"
+				+ "| +-- Users Home      |                      |\n"
+				+ "+---------------------+----------------------+\n";
+		assertEquals(expected, tree.toText());
+		
+		// hard wrap without spaces, the column is at least as wide as its label
+		TreeTable table = new TreeTable("Hash");
+		table.getColumns()[0].setMaxWidth(3);
+		table.addRow("0123456789");
+		expected = ""
+				+ "+------+\n"
+				+ "| Hash |\n"
+				+ "+------+\n"
+				+ "| 012  |\n"
+				+ "| 345  |\n"
+				+ "| 678  |\n"
+				+ "| 9    |\n"
+				+ "+------+\n";
+		assertEquals(expected, table.toText());
+	}
+	
+	@Test
+	public void test_display_width() {
+		TreeTable tree = new TreeTable("Name", "City");
+		Row row = tree.addRow("\u65e5\u672c", "\u6771\u4eac");
+		row.addRow("Cafe\u0301", "Paris");
+		tree.addRow("\ud83d\ude00 smile", "-");
+		String expected = ""
+				+ "+----------+-------+\n"
+				+ "| Name     | City  |\n"
+				+ "+----------+-------+\n"
+				+ "| \u65e5\u672c     | \u6771\u4eac  |\n"
+				+ "| +-- Cafe\u0301 | Paris |\n"
+				+ "| \ud83d\ude00 smile | -     |\n"
+				+ "+----------+-------+\n";
+		assertEquals(expected, tree.toText());
+		
+		tree.getColumns()[1].setMaxWidth(3);
+		expected = ""
+				+ "+----------+------+\n"
+				+ "| Name     | City |\n"
+				+ "+----------+------+\n"
+				+ "| \u65e5\u672c     | \u6771   |\n"
+				+ "|          | \u4eac   |\n"
+				+ "| +-- Cafe\u0301 | Par  |\n"
+				+ "|          | is   |\n"
+				+ "| \ud83d\ude00 smile | -    |\n"
+				+ "+----------+------+\n";
+		assertEquals(expected, tree.toText());
+	}
+	
+	private static TreeTable createPagedTree() {
+		TreeTable tree = new TreeTable("Name", "Size");
+		for (int i = 0; i < 3; i++) {
+			Row row = tree.addRow("r" + i);
+			for (int j = 0; j < 3; j++) {
+				Row subRow = row.addRow("r" + i + "." + j);
+				for (int k = 0; k < 3; k++) {
+					subRow.addRow("r" + i + "." + j + "." + k, i * 100 + j * 10 + k);
+				}
+			}
+			row.addRow("leaf" + i, 1000 * i);
+		}
+		tree.getRow(2).getRow(1).getRow(1).addRow("a much longer name", 1);
+		return tree;
+	}
+	
+	@Test
+	public void test_paged_global_widths() {
+		TreeTable tree = createPagedTree();
+		TreeTableToTextConverter converter = new TreeTableToTextConverter().withASCIIExtended().withGlobalWidths(true);
+		String[] lines = converter.convert(tree).split("\n");
+		TextIndex index = converter.index(tree);
+		assertEquals(lines.length - 4, index.getRowCount());
+		for (int offset = 0; offset <= index.getRowCount(); offset += 7) {
+			for (int limit : new int[] { 0, 1, 5, 100 }) {
+				StringBuilder expected = new StringBuilder();
+				for (int l = 0; l < 3; l++) {
+					expected.append(lines[l]).append("\n");
+				}
+				for (int r = offset; r < Math.min(index.getRowCount(), offset + limit); r++) {
+					expected.append(lines[3 + r]).append("\n");
+				}
+				expected.append(lines[lines.length - 1]).append("\n");
+				assertEquals(expected.toString(), converter.convert(index, offset, limit));
+			}
+		}
+	}
+	
+	@Test
+	public void test_paged_window_widths() {
+		TreeTable tree = createPagedTree();
+		TreeTableToTextConverter converter = new TreeTableToTextConverter();
+		TextIndex index = converter.index(tree);
+		assertEquals("r2.1.1", index.getRow(34).getCellContent(0));
+		String expected = ""
+				+ "+---------------+------+\n"
+				+ "| Name          | Size |\n"
+				+ "+---------------+------+\n"
+				+ "| +-- r2.1      |      |\n"
+				+ "| |  +-- r2.1.1 | 211  |\n"
+				+ "+---------------+------+\n";
+		assertEquals(expected, converter.convert(index, 33, 2));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void test_paged_invalid_window() {
+		TreeTableToTextConverter converter = new TreeTableToTextConverter();
+		converter.convert(converter.index(createPagedTree()), -1, 10);
+	}
+	
+	@Test
+	public void test_incremental_render() {
+		TreeTable tree = createPagedTree();
+		TreeTableToTextConverter converter = new TreeTableToTextConverter().withASCIIExtended();
+		try (IncrementalTextRenderer renderer = new IncrementalTextRenderer(tree, converter)) {
+			assertEquals(converter.convert(tree), renderer.toText());
+			// wider and narrower cells change the column widths
+			tree.getRow(0).getRow(1).setCellContent(1, "a very wide cell");
+			assertEquals(converter.convert(tree), renderer.toText());
+			tree.getRow(2).getRow(1).getRow(1).getRow(0).setCellContent(0, "short");
+			assertEquals(converter.convert(tree), renderer.toText());
+			tree.getRow(0).getRow(1).setCellContent(1, null);
+			assertEquals(converter.convert(tree), renderer.toText());
+			// structural changes
+			tree.getRow(1).getRow(3).addRow("new", 1);
+			assertEquals(converter.convert(tree), renderer.toText());
+			tree.getRow(1).sort((r1, r2) -> r2.getCellContent(0).toString().compareTo(r1.getCellContent(0).toString()));
+			tree.addRow("top", 2);
+			assertEquals(converter.convert(tree), renderer.toText());
+			// parameters, data and columns
+			tree.getRow(1).setParameter("Size#indent", 2);
+			tree.getRow(2).getParameters().put("Name#indent", 1);
+			tree.getRow(3).setData("data");
+			assertEquals(converter.convert(tree), renderer.toText());
+			tree.getColumns()[1].setAlignment(ColumnAlignment.RIGHT);
+			assertEquals(converter.convert(tree), renderer.toText());
+			converter.withASCII();
+			renderer.invalidate();
+			assertEquals(converter.convert(tree), renderer.toText());
+		}
+	}
+	
+	@Test
+	public void test_incremental_render_multi_line() {
+		TreeTable tree = createMultiLineTree();
+		TreeTableToTextConverter converter = new TreeTableToTextConverter();
+		try (IncrementalTextRenderer renderer = new IncrementalTextRenderer(tree, converter)) {
+			assertEquals(converter.convert(tree), renderer.toText());
+			converter.withMultiLine(true);
+			tree.getColumns()[1].setMaxWidth(20);
+			assertEquals(converter.convert(tree), renderer.toText());
+			tree.getRow(0).getRow(0).getRow(0).setCellContent(1, "short");
+			tree.getRow(0).getRow(1).addRow("Guest\nPublic");
+			assertEquals(converter.convert(tree), renderer.toText());
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void test_incremental_render_closed() {
+		IncrementalTextRenderer renderer = new IncrementalTextRenderer(createPagedTree(), new TreeTableToTextConverter());
+		renderer.close();
+		renderer.toText();
+	}
+	
+	@Test
+	public void test_listener_events() {
+		TreeTable tree = new TreeTable("Name", "Size");
+		List<List<TreeTableEvent>> batches = new ArrayList<>();
+		tree.addTreeTableListener(batches::add);
+		Row a = tree.addRow("a", 1);
+		Row b = a.addRow("b", 2);
+		b.setCellContent(1, 3);
+		b.setParameter("Name#indent", 1);
+		a.sort((r1, r2) -> 0);
+		a.setData("not an event");
+		assertTrue(a.removeRow(b));
+		assertFalse(a.removeRow(b));
+		assertEquals(6, batches.size());
+		assertEquals(TreeTableEvent.Type.ROW_ADDED, batches.get(0).get(0).getType());
+		assertSame(tree, batches.get(0).get(0).getContainer());
+		TreeTableEvent added = batches.get(1).get(0);
+		assertSame(a, added.getContainer());
+		assertSame(b, added.getRow());
+		assertEquals(0, added.getIndex());
+		TreeTableEvent cell = batches.get(2).get(0);
+		assertEquals(TreeTableEvent.Type.CELL_CHANGED, cell.getType());
+		assertEquals(1, cell.getColumnIndex());
+		assertEquals(2, cell.getOldValue());
+		assertEquals(3, cell.getNewValue());
+		TreeTableEvent parameter = batches.get(3).get(0);
+		assertEquals(TreeTableEvent.Type.PARAMETER_CHANGED, parameter.getType());
+		assertEquals("Name#indent", parameter.getKey());
+		assertNull(parameter.getOldValue());
+		assertEquals(TreeTableEvent.Type.SORTED, batches.get(4).get(0).getType());
+		assertEquals(TreeTableEvent.Type.ROW_REMOVED, batches.get(5).get(0).getType());
+		assertEquals(1, tree.height());
+	}
+	
+	@Test
+	public void test_listener_batch() {
+		TreeTable tree = new TreeTable("Name");
+		List<List<TreeTableEvent>> batches = new ArrayList<>();
+		TreeTableListener listener = batches::add;
+		tree.addTreeTableListener(listener);
+		tree.beginBatch();
+		try {
+			for (int i = 0; i < 100; i++) {
+				tree.beginBatch();
+				tree.addRow("row " + i).addRow("sub row");
+				tree.endBatch();
+			}
+			assertTrue(batches.isEmpty());
+		} finally {
+			tree.endBatch();
+		}
+		assertEquals(1, batches.size());
+		assertEquals(200, batches.get(0).size());
+		tree.removeTreeTableListener(listener);
+		tree.addRow("unobserved");
+		assertEquals(1, batches.size());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void test_listener_batch_not_started() {
+		new TreeTable("Name").endBatch();
+	}
+	
+	@Test
+	public void test_listener_parameter_map() {
+		TreeTable tree = new TreeTable("Name");
+		Row row = tree.addRow("a");
+		List<TreeTableEvent> events = new ArrayList<>();
+		tree.addTreeTableListener(events::addAll);
+		Map<String, Object> parameters = row.getParameters();
+		assertTrue(events.isEmpty());
+		parameters.put("x", 1);
+		parameters.putIfAbsent("y", 2);
+		parameters.entrySet().iterator().next().setValue(3);
+		parameters.remove("missing");
+		Iterator<Map.Entry<String, Object>> iterator = parameters.entrySet().iterator();
+		iterator.next();
+		iterator.remove();
+		parameters.clear();
+		assertTrue(parameters.isEmpty());
+		assertEquals(5, events.size());
+		assertNull(events.get(4).getNewValue());
+		// copied rows keep their parameters
+		parameters.put("z", 4);
+		assertEquals(4, tree.copy().getRow(0).getParameter("z"));
+	}
+	
+	@Test
+	public void test_listener_table_parameters() {
+		TreeTable tree = new TreeTable("Name");
+		List<TreeTableEvent> events = new ArrayList<>();
+		tree.addTreeTableListener(events::addAll);
+		tree.getParameters().put("title", "Drives");
+		tree.getParameters().remove("title");
+		assertEquals(2, events.size());
+		TreeTableEvent event = events.get(0);
+		assertEquals(TreeTableEvent.Type.PARAMETER_CHANGED, event.getType());
+		assertSame(tree, event.getTreeTable());
+		assertNull(event.getRow());
+		assertEquals("title", event.getKey());
+		assertEquals("Drives", event.getNewValue());
+		assertEquals("Drives", events.get(1).getOldValue());
+		assertNull(events.get(1).getNewValue());
+	}
+	
+	@Test
+	public void test_remove_row() {
+		TreeTable tree = createPagedTree();
+		assertEquals(4, tree.height());
+		try (IncrementalTextRenderer renderer = new IncrementalTextRenderer(tree, new TreeTableToTextConverter())) {
+			renderer.toText();
+			Row r2 = tree.getRow(2);
+			assertTrue(r2.getRow(1).removeRow(r2.getRow(1).getRow(1)));
+			assertEquals(3, tree.height());
+			assertEquals(tree.toText(), renderer.toText());
+			assertTrue(tree.removeRow(r2));
+			assertFalse(tree.removeRow(r2));
+			assertEquals(2, tree.getRowCount());
+			assertEquals(tree.toText(), renderer.toText());
+		}
+	}
+	
+	@Test
+	public void test_builder() {
+		TreeTableBuilder builder = TreeTable.builder(4, "Name", "Size");
+		int c = builder.addRow("C:");
+		int windows = builder.addSubRow(c, "Windows");
+		builder.addSubRows(windows, Arrays.asList(new Object[] { "explorer.exe", 10 }, new Object[] { "notepad.exe", null }));
+		int first = builder.addRows(new int[] { -1, 4, c }, new Object[] { "D:", "Backup", "Users" }, new Object[] { null, 20, null });
+		assertEquals(4, first);
+		assertEquals(7, builder.getRowCount());
+		assertEquals("Backup", builder.getRow(5).getCellContent(0));
+		TreeTable built = builder.build();
+		
+		TreeTable expected = new TreeTable("Name", "Size");
+		Row row = expected.addRow("C:");
+		Row row2 = row.addRow("Windows");
+		row2.addRow("explorer.exe", 10);
+		row2.addRow("notepad.exe");
+		row.addRow("Users");
+		expected.addRow("D:").addRow("Backup", 20);
+		assertEquals(expected.toText(), built.toText());
+		assertEquals(3, built.height());
+		assertEquals("", built.getRow(1).getCellContent(1));
+		assertEquals("", built.getRow(0).getRow(0).getRow(1).getCellContent(1));
+	}
+	
+	@Test
+	public void test_builder_row_modified() {
+		TreeTableBuilder builder = TreeTable.builder(2, "Name");
+		int c = builder.addRow("C:");
+		builder.addSubRow(c, "Windows");
+		// a sub row added to a row of the builder before build() is kept
+		builder.getRow(c).addRow("Users");
+		TreeTable built = builder.build();
+		assertEquals(2, built.getRow(0).getRowCount());
+		assertEquals("Users", built.getRow(0).getRow(0).getCellContent(0));
+		assertEquals("Windows", built.getRow(0).getRow(1).getCellContent(0));
+	}
+	
+	@Test
+	public void test_builder_invalid() {
+		TreeTableBuilder builder = TreeTable.builder(0, "Name");
+		builder.addRow("a");
+		try {
+			builder.addSubRow(1, "b");
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+		try {
+			builder.addRows(new int[] { -1, -1 }, new Object[] { "c" });
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(1, builder.build().getRowCount());
+		try {
+			builder.addRow("d");
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void test_concurrent_builder() throws InterruptedException {
+		ConcurrentTreeTableBuilder builder = TreeTable.concurrentBuilder("Name", "Value");
+		ConcurrentTreeTableBuilder.Node shared = builder.addRow("shared");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int t = 0; t < 8; t++) {
+			int thread = t;
+			executor.execute(() -> {
+				ConcurrentTreeTableBuilder.Node own = builder.addRow("thread " + thread);
+				for (int i = 0; i < 1000; i++) {
+					own.addRow("row " + i, i).addRow("sub row " + i);
+					shared.addRow("row " + thread + "/" + i);
+				}
+				own.setParameter("Name#indent", 1);
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		TreeTable tree = builder.freeze();
+		assertTrue(tree.isFrozen());
+		assertEquals(9, tree.getRowCount());
+		assertEquals("shared", tree.getRow(0).getCellContent(0));
+		assertEquals(8000, tree.getRow(0).getRowCount());
+		assertEquals(3, tree.height());
+		for (int t = 1; t < 9; t++) {
+			Row own = tree.getRow(t);
+			assertEquals(1, own.getParameter("Name#indent"));
+			assertEquals(1000, own.getRowCount());
+			// the rows of each parent keep the order in which they were added
+			for (int i = 0; i < 1000; i++) {
+				assertEquals(i, own.getRow(i).getCellContent(1));
+				assertEquals("sub row " + i, own.getRow(i).getRow(0).getCellContent(0));
+			}
+		}
+		assertEquals(8 * 2001 + 8001, tree.stream().count());
+		try {
+			builder.addRow("late");
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void test_concurrent_builder_freeze() throws InterruptedException {
+		ConcurrentTreeTableBuilder builder = TreeTable.concurrentBuilder("Name");
+		ConcurrentTreeTableBuilder.Node shared = builder.addRow("shared");
+		AtomicInteger added = new AtomicInteger();
+		AtomicInteger assigned = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(4);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for (int t = 0; t < 4; t++) {
+			executor.execute(() -> {
+				started.countDown();
+				try {
+					while (true) {
+						ConcurrentTreeTableBuilder.Node node = shared.addRow("row");
+						added.incrementAndGet();
+						node.setData("data");
+						assigned.incrementAndGet();
+					}
+				} catch (IllegalStateException e) {
+					// frozen
+				}
+			});
+		}
+		started.await();
+		TreeTable tree = builder.freeze();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		// each modification is either contained in the tree table or has failed
+		Row row = tree.getRow(0);
+		assertEquals(added.get(), row.getRowCount());
+		assertEquals(assigned.get(), Arrays.stream(row.getRows()).filter(r -> r.getData() != null).count());
+		try {
+			shared.setParameter("a", "b");
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void test_frozen() {
+		TreeTable tree = createPagedTree();
+		String text = tree.toText();
+		tree.freeze();
+		Row row = tree.getRow(0);
+		List<Runnable> modifications = Arrays.asList(
+				() -> tree.addRow("a"),
+				() -> tree.removeRow(row),
+				() -> tree.sort((r1, r2) -> 0),
+				() -> tree.getParameters().put("a", "b"),
+				() -> row.addRow("a"),
+				() -> row.removeRow(row.getRow(0)),
+				() -> row.sort((r1, r2) -> 0),
+				() -> row.setCellContent(0, "a"),
+				() -> row.setParameter("a", "b"),
+				() -> row.getParameters().put("a", "b"),
+				() -> row.setData("a"));
+		for (Runnable modification : modifications) {
+			try {
+				modification.run();
+				fail();
+			} catch (UnsupportedOperationException e) {
+				// expected
+			}
+		}
+		assertEquals(text, tree.toText());
+		TreeTable copy = tree.copy();
+		assertFalse(copy.isFrozen());
+		copy.addRow("a");
+		assertEquals(tree.getRowCount() + 1, copy.getRowCount());
+	}
+	
+	@Test
+	public void test_snapshot() {
+		TreeTable tree = createPagedTree();
+		String text = tree.toText();
+		TreeTable snapshot = tree.snapshot();
+		assertTrue(snapshot.isFrozen());
+		assertSame(snapshot, tree.snapshot());
+		assertSame(snapshot, snapshot.snapshot());
+		assertEquals(text, snapshot.toText());
+		
+		tree.getRow(2).getRow(1).getRow(1).setCellContent(1, 999);
+		tree.getRow(0).addRow("new");
+		TreeTable snapshot2 = tree.snapshot();
+		assertEquals(text, snapshot.toText());
+		assertEquals(tree.toText(), snapshot2.toText());
+		assertEquals(211, snapshot.getRow(2).getRow(1).getRow(1).getCellContent(1));
+		// only the modified rows and their ancestors are copied
+		assertSame(snapshot.getRow(1), snapshot2.getRow(1));
+		assertSame(snapshot.getRow(2).getRow(0), snapshot2.getRow(2).getRow(0));
+		assertSame(snapshot.getRow(2).getRow(1).getRow(0), snapshot2.getRow(2).getRow(1).getRow(0));
+		assertFalse(snapshot.getRow(2).getRow(1) == snapshot2.getRow(2).getRow(1));
+		assertSame(snapshot.getRow(0).getRow(0), snapshot2.getRow(0).getRow(0));
+		
+		tree.getRow(1).setParameter("Size#indent", 1);
+		tree.getRow(1).sort((r1, r2) -> -1);
+		tree.removeRow(tree.getRow(0));
+		TreeTable snapshot3 = tree.snapshot();
+		assertEquals(tree.toText(), snapshot3.toText());
+		assertEquals(2, snapshot3.getRowCount());
+		assertSame(snapshot2.getRow(2), snapshot3.getRow(1));
+	}
+	
+	@Test
+	public void test_snapshot_parameters() {
+		TreeTable tree = createPagedTree();
+		tree.getParameters().put("title", "Drives");
+		TreeTable snapshot = tree.snapshot();
+		assertEquals("Drives", snapshot.getParameters().get("title"));
+		try {
+			snapshot.getParameters().put("title", "Files");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		// the parameters of the tree table invalidate the snapshot
+		tree.getParameters().put("title", "Files");
+		TreeTable snapshot2 = tree.snapshot();
+		assertNotSame(snapshot, snapshot2);
+		assertEquals("Drives", snapshot.getParameters().get("title"));
+		assertEquals("Files", snapshot2.getParameters().get("title"));
+		tree.getParameters().entrySet().iterator().next().setValue("Folders");
+		assertEquals("Folders", tree.snapshot().getParameters().get("title"));
+		tree.getParameters().clear();
+		assertTrue(tree.snapshot().getParameters().isEmpty());
+	}
+	
+	@Test
+	public void test_snapshot_deep() {
+		TreeTable tree = new TreeTable("Name");
+		Row row = tree.addRow("0");
+		for (int i = 1; i < 100_000; i++) {
+			row = row.addRow(Integer.toString(i));
+		}
+		TreeTable snapshot = tree.snapshot();
+		row.setCellContent(0, "last");
+		TreeTable snapshot2 = tree.snapshot();
+		assertEquals(100_000, snapshot2.height());
+		assertEquals("last", snapshot2.stream().reduce((r1, r2) -> r2).get().getCellContent(0));
+		assertEquals("99999", snapshot.stream().reduce((r1, r2) -> r2).get().getCellContent(0));
+	}
+	
 }
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Test class.
+ *
+ * @author Dominik Glaser
+ */
+@SuppressWarnings({ "nls", "javadoc" })
+public class TreeTableToCSVConverterTest {
+
+	private static TreeTable createTree() {
+		TreeTable tree = new TreeTable("Name", "Description");
+		Row c = tree.addRow("C:", "System drive");
+		Row windows = c.addRow("Windows", "Operating system, \"core\" files");
+		windows.addRow("explorer.exe", "The Windows\r\nexplorer");
+		c.addRow("Users", null);
+		tree.addRow("D:", 42);
+		return tree;
+	}
+
+	@Test
+	public void test_csv() {
+		String expected = ""
+				+ "Name,Description\n"
+				+ "C:,System drive\n"
+				+ "Windows,\"Operating system, \"\"core\"\" files\"\n"
+				+ "explorer.exe,\"The Windows\r\nexplorer\"\n"
+				+ "Users,\n"
+				+ "D:,42\n";
+		assertEquals(expected, new TreeTableToCSVConverter().convert(createTree()));
+	}
+
+	@Test
+	public void test_csv_tree_columns() {
+		String expected = ""
+				+ "\"Depth\";\"Path\";\"Name\";\"Description\"\r\n"
+				+ "\"1\";\"C:\";\"C:\";\"System drive\"\r\n"
+				+ "\"2\";\"C:\\Windows\";\"Windows\";\"Operating system, \"\"core\"\" files\"\r\n"
+				+ "\"3\";\"C:\\Windows\\explorer.exe\";\"explorer.exe\";\"The Windows\r\nexplorer\"\r\n"
+				+ "\"2\";\"C:\\Users\";\"Users\";\"\"\r\n"
+				+ "\"1\";\"D:\";\"D:\";\"42\"\r\n";
+		TreeTableToCSVConverter converter = new TreeTableToCSVConverter()
+				.withDepthColumn(true)
+				.withPathColumn(true)
+				.withPathSeparator("\\")
+				.withSeparator(';')
+				.withQuoting(TreeTableToCSVConverter.Quoting.ALL)
+				.withLineSeparator("\r\n");
+		assertEquals(expected, converter.convert(createTree()));
+	}
+
+	@Test
+	public void test_tsv() throws IOException {
+		String expected = ""
+				+ "Depth\tName\tDescription\n"
+				+ "1\tC:\tSystem drive\n"
+				+ "2\tWindows\tOperating system, \"core\" files\n"
+				+ "3\texplorer.exe\tThe Windows explorer\n"
+				+ "2\tUsers\t\n"
+				+ "1\tD:\t42\n";
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new TreeTableToCSVConverter().withTSV().withDepthColumn(true).render(createTree(), out, StandardCharsets.UTF_8);
+		assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void test_deep_tree() {
+		TreeTable tree = new TreeTable("Name");
+		Row row = tree.addRow("r");
+		for (int i = 0; i < 100_000; i++) {
+			row = row.addRow("r");
+		}
+		String csv = new TreeTableToCSVConverter().withPrintHeader(false).withDepthColumn(true).convert(tree);
+		assertEquals(100_001, csv.split("\n").length);
+		assertEquals("100001,r\n", csv.substring(csv.lastIndexOf('\n', csv.length() - 2) + 1));
+	}
+
+	@Test
+	public void test_path_escaping() {
+		TreeTable tree = new TreeTable("Name");
+		tree.addRow("a/b").addRow("c\\d").addRow("e");
+		String expected = ""
+				+ "Path,Name\n"
+				+ "a\\/b,a/b\n"
+				+ "a\\/b/c\\\\d,c\\d\n"
+				+ "a\\/b/c\\\\d/e,e\n";
+		assertEquals(expected, new TreeTableToCSVConverter().withPathColumn(true).convert(tree));
+	}
+
+}
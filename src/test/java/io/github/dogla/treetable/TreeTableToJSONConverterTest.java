@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Test class.
+ *
+ * @author Dominik Glaser
+ */
+@SuppressWarnings({ "nls", "javadoc" })
+public class TreeTableToJSONConverterTest {
+
+	private static TreeTable createTree() {
+		TreeTable tree = new TreeTable("Name", "Size");
+		Row c = tree.addRow("C:", null);
+		c.setParameter("type", "drive");
+		Row windows = c.addRow("Windows", null);
+		windows.addRow("explorer.exe", 4_096);
+		windows.setData(Arrays.asList(1, true, null));
+		c.addRow("Users \"all\"", 1.5d);
+		tree.addRow("D:\\", Double.NaN);
+		return tree;
+	}
+
+	@Test
+	public void test_json() {
+		String expected = "{\"columns\":[\"Name\",\"Size\"],\"rows\":["
+				+ "{\"cells\":{\"Name\":\"C:\",\"Size\":\"\"},\"parameters\":{\"type\":\"drive\"},\"rows\":["
+				+ "{\"cells\":{\"Name\":\"Windows\",\"Size\":\"\"},\"data\":[1,true,null],\"rows\":["
+				+ "{\"cells\":{\"Name\":\"explorer.exe\",\"Size\":4096}}]},"
+				+ "{\"cells\":{\"Name\":\"Users \\\"all\\\"\",\"Size\":1.5}}]},"
+				+ "{\"cells\":{\"Name\":\"D:\\\\\",\"Size\":\"NaN\"}}]}\n";
+		assertEquals(expected, new TreeTableToJSONConverter().convert(createTree()));
+	}
+
+	@Test
+	public void test_json_empty() {
+		assertEquals("{\"columns\":[\"Name\"],\"rows\":[]}\n", new TreeTableToJSONConverter().convert(new TreeTable("Name")));
+	}
+
+	@Test
+	public void test_ndjson() throws IOException {
+		String expected = ""
+				+ "{\"id\":0,\"parent\":null,\"depth\":1,\"cells\":{\"Name\":\"C:\",\"Size\":\"\"}}\n"
+				+ "{\"id\":1,\"parent\":0,\"depth\":2,\"cells\":{\"Name\":\"Windows\",\"Size\":\"\"}}\n"
+				+ "{\"id\":2,\"parent\":1,\"depth\":3,\"cells\":{\"Name\":\"explorer.exe\",\"Size\":4096}}\n"
+				+ "{\"id\":3,\"parent\":0,\"depth\":2,\"cells\":{\"Name\":\"Users \\\"all\\\"\",\"Size\":1.5}}\n"
+				+ "{\"id\":4,\"parent\":null,\"depth\":1,\"cells\":{\"Name\":\"D:\\\\\",\"Size\":\"NaN\"}}\n";
+		TreeTableToJSONConverter converter = new TreeTableToJSONConverter()
+				.withNDJSON(true)
+				.withPrintParameters(false)
+				.withPrintData(false);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		converter.render(createTree(), out, StandardCharsets.UTF_8);
+		assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void test_escape() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		TreeTableToJSONConverter.appendString(sb, "a\"b\\c\n\r\t\b\f\u0001\u2028ä");
+		assertEquals("\"a\\\"b\\\\c\\n\\r\\t\\b\\f\\u0001\\u2028ä\"", sb.toString());
+	}
+
+	@Test
+	public void test_deep_tree() {
+		TreeTable tree = new TreeTable("Name");
+		Row row = tree.addRow("r");
+		for (int i = 0; i < 100_000; i++) {
+			row = row.addRow("r");
+		}
+		String json = new TreeTableToJSONConverter().convert(tree);
+		assertEquals(100_001, json.split("\"cells\"").length - 1);
+		String ndjson = new TreeTableToJSONConverter().withNDJSON(true).convert(tree);
+		assertEquals("{\"id\":100000,\"parent\":99999,\"depth\":100001,\"cells\":{\"Name\":\"r\"}}\n",
+				ndjson.substring(ndjson.lastIndexOf('\n', ndjson.length() - 2) + 1));
+	}
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.TreeTable;
+
+/**
+ * Test class.
+ *
+ * @author Dominik Glaser
+ */
+@SuppressWarnings({ "nls", "javadoc" })
+public class ParallelRowWalkerTest {
+
+	/**
+	 * Creates a tree with 10 top level rows, each with 10 sub rows, each with 10 sub rows (1110 rows).
+	 */
+	private static TreeTable createTree() {
+	    TreeTable tree = new TreeTable("Name", "Level");
+	    for (int i = 0; i < 10; i++) {
+	    	Row row = tree.addRow("r" + i, 1);
+	    	for (int j = 0; j < 10; j++) {
+	    		Row subRow = row.addRow("r" + i + "." + j, 2);
+	    		for (int k = 0; k < 10; k++) {
+	    			subRow.addRow("r" + i + "." + j + "." + k, 3);
+	    		}
+	    	}
+	    }
+		return tree;
+	}
+
+	@Test
+	public void test_visit_all() {
+		Set<Object> visited = ConcurrentHashMap.newKeySet();
+		new ParallelRowWalker(row -> {
+			visited.add(row.getCellContent(0));
+			return RowVisitResult.CONTINUE;
+		}, Integer.MAX_VALUE, new ForkJoinPool(4)).walk(createTree());
+		assertEquals(1110, visited.size());
+	}
+
+	@Test
+	public void test_max_depth_and_skip_subtree() {
+		AtomicInteger count = new AtomicInteger();
+		new ParallelRowWalker(row -> {
+			count.incrementAndGet();
+			return "r0".equals(row.getCellContent(0)) ? RowVisitResult.SKIP_SUBTREE : RowVisitResult.CONTINUE;
+		}, 3).walk(createTree());
+		// 10 top level rows, 9 * 10 sub rows
+		assertEquals(100, count.get());
+	}
+
+	@Test
+	public void test_skip_siblings() {
+		Set<Object> visited = ConcurrentHashMap.newKeySet();
+		new ParallelRowWalker(row -> {
+			visited.add(row.getCellContent(0));
+			return "r1.5".equals(row.getCellContent(0)) ? RowVisitResult.SKIP_SIBLINGS : RowVisitResult.CONTINUE;
+		}).walk(createTree());
+		// the sub rows of r1.5 and its siblings r1.6 - r1.9 (with their sub rows) are skipped
+		assertEquals(1110 - 10 - 4 * 11, visited.size());
+		assertTrue(visited.contains("r1.4.9"));
+	}
+
+	@Test
+	public void test_terminate() {
+		AtomicInteger count = new AtomicInteger();
+		new ParallelRowWalker(row -> {
+			count.incrementAndGet();
+			return RowVisitResult.TERMINATE;
+		}).walk(createTree());
+		assertEquals(1, count.get());
+	}
+
+	@Test
+	public void test_flat_table() throws InterruptedException {
+		int count = 100_000;
+		TreeTable table = new TreeTable("Index");
+		for (int i = 0; i < count; i++) {
+			table.addRow(i);
+		}
+		Set<Object> visited = ConcurrentHashMap.newKeySet();
+		AtomicReference<Thread> first = new AtomicReference<>();
+		CountDownLatch otherThread = new CountDownLatch(1);
+		new ParallelRowWalker(row -> {
+			if (Integer.valueOf(0).equals(row.getCellContent(0))) {
+				first.set(Thread.currentThread());
+				try {
+					// the remaining rows are visited by other threads meanwhile
+					otherThread.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			} else if (first.get() != null && first.get() != Thread.currentThread()) {
+				otherThread.countDown();
+			}
+			visited.add(row.getCellContent(0));
+			return RowVisitResult.CONTINUE;
+		}, Integer.MAX_VALUE, new ForkJoinPool(4)).walk(table);
+		assertEquals(count, visited.size());
+		assertEquals(0, otherThread.getCount());
+	}
+
+	@Test
+	public void test_skip_siblings_of_split_rows() {
+		TreeTable table = new TreeTable("Index");
+		for (int i = 0; i < 10_000; i++) {
+			table.addRow(i);
+		}
+		Set<Object> visited = ConcurrentHashMap.newKeySet();
+		new ParallelRowWalker(row -> {
+			visited.add(row.getCellContent(0));
+			return Integer.valueOf(5).equals(row.getCellContent(0)) ? RowVisitResult.SKIP_SIBLINGS : RowVisitResult.CONTINUE;
+		}).walk(table);
+		// the following siblings in other ranges may be visited before the result is observed
+		assertTrue(visited.contains(5));
+		assertTrue(visited.size() < 10_000);
+	}
+
+	@Test
+	public void test_deep_tree() {
+		int depth = 100_000;
+	    TreeTable tree = new TreeTable("Level");
+	    Row row = tree.addRow(0);
+	    for (int i = 1; i < depth; i++) {
+	    	row = row.addRow(i);
+	    }
+		AtomicInteger count = new AtomicInteger();
+		new ParallelRowWalker(r -> {
+			count.incrementAndGet();
+			return RowVisitResult.CONTINUE;
+		}).walk(tree);
+		assertEquals(depth, count.get());
+	}
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.RowContainer;
+import io.github.dogla.treetable.TreeTable;
+
+/**
+ * Test class.
+ *
+ * @author Dominik Glaser
+ */
+@SuppressWarnings({ "nls", "javadoc" })
+public class RowSpliteratorTest {
+
+	private static TreeTable createTree() {
+	    TreeTable tree = new TreeTable("Name");
+	    for (int i = 0; i < 10; i++) {
+	    	Row row = tree.addRow("r" + i);
+	    	for (int j = 0; j < 10; j++) {
+	    		Row subRow = row.addRow("r" + i + "." + j);
+	    		for (int k = 0; k < 10; k++) {
+	    			subRow.addRow("r" + i + "." + j + "." + k);
+	    		}
+	    	}
+	    }
+	    // a deep branch
+	    Row row = tree.addRow("deep");
+	    for (int i = 0; i < 1000; i++) {
+	    	row = row.addRow("deep" + i);
+	    }
+		return tree;
+	}
+
+	private static List<Object> walk(RowContainer container) {
+		List<Object> rows = new ArrayList<>();
+		container.walk(row -> {
+			rows.add(row.getCellContent(0));
+			return RowVisitResult.CONTINUE;
+		});
+		return rows;
+	}
+
+	@Test
+	public void test_stream_order() {
+		TreeTable tree = createTree();
+		assertEquals(walk(tree), tree.stream().map(r -> r.getCellContent(0)).collect(Collectors.toList()));
+		assertEquals(walk(tree.getRow(3)), tree.getRow(3).stream().map(r -> r.getCellContent(0)).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void test_parallel_stream() {
+		TreeTable tree = createTree();
+		assertEquals(walk(tree), tree.stream().parallel().map(r -> r.getCellContent(0)).collect(Collectors.toList()));
+		assertEquals(1110 + 1001, tree.stream().parallel().count());
+		assertEquals(1001, tree.getRow(10).stream().parallel().count());
+	}
+
+	@Test
+	public void test_split() {
+		TreeTable tree = createTree();
+		Spliterator<Row> suffix = new RowSpliterator(tree);
+		assertFalse(suffix.hasCharacteristics(Spliterator.SIZED));
+		Spliterator<Row> prefix = suffix.trySplit();
+		assertNotNull(prefix);
+		
+		List<Object> rows = new ArrayList<>();
+		prefix.forEachRemaining(r -> rows.add(r.getCellContent(0)));
+		suffix.forEachRemaining(r -> rows.add(r.getCellContent(0)));
+		assertEquals(walk(tree), rows);
+		
+		// a single row: the row itself is reported first and its sub rows are split
+		suffix = new RowSpliterator(tree.getRow(0));
+		prefix = suffix.trySplit();
+		assertNotNull(prefix);
+		assertTrue(prefix.tryAdvance(r -> assertEquals("r0", r.getCellContent(0))));
+	}
+
+	@Test
+	public void test_sized() {
+	    TreeTable table = new TreeTable("ID", "Name");
+	    for (int i = 0; i < 1000; i++) {
+	    	table.addRow(i, "Name " + i);
+	    }
+	    Spliterator<Row> spliterator = new RowSpliterator(table);
+	    assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+	    assertEquals(1000, spliterator.estimateSize());
+	    Spliterator<Row> prefix = spliterator.trySplit();
+	    assertEquals(500, prefix.estimateSize());
+	    assertEquals(500, spliterator.estimateSize());
+	    assertEquals(499500, table.stream().parallel().mapToInt(r -> (Integer) r.getCellContent(0)).sum());
+	}
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import io.github.dogla.treetable.Row;
+import io.github.dogla.treetable.TreeTable;
+
+/**
+ * Test class.
+ *
+ * @author Dominik Glaser
+ */
+@SuppressWarnings({ "nls", "javadoc" })
+public class RowWalkerTest {
+	
+	private static TreeTable createTree() {
+	    TreeTable tree = new TreeTable("Level");
+	    Row one = tree.addRow("one");
+		Row two = one.addRow("two");
+		two.addRow("three");
+		two.addRow("four");
+		one.addRow("five").addRow("six");
+		tree.addRow("seven").addRow("eight");
+		return tree;
+	}
+	
+	private static List<Object> walk(TreeTable tree, int maxDepth, Function<Object, RowVisitResult> results) {
+		List<Object> visited = new ArrayList<>();
+		new RowWalker(row -> {
+			Object label = row.getCellContent(0);
+			visited.add(label);
+			return results.apply(label);
+		}, maxDepth).walk(tree);
+		return visited;
+	}
+	
+	@Test
+	public void test_continue() {
+		assertEquals(List.of("one", "two", "three", "four", "five", "six", "seven", "eight"), walk(createTree(), Integer.MAX_VALUE, l -> RowVisitResult.CONTINUE));
+	}
+	
+	@Test
+	public void test_max_depth() {
+		assertEquals(List.of("one", "two", "five", "seven", "eight"), walk(createTree(), 3, l -> RowVisitResult.CONTINUE));
+		assertEquals(List.of(), walk(createTree(), 1, l -> RowVisitResult.CONTINUE));
+	}
+	
+	@Test
+	public void test_skip_subtree() {
+		assertEquals(List.of("one", "two", "five", "six", "seven", "eight"), walk(createTree(), Integer.MAX_VALUE, l -> "two".equals(l) ? RowVisitResult.SKIP_SUBTREE : RowVisitResult.CONTINUE));
+	}
+	
+	@Test
+	public void test_skip_siblings() {
+		assertEquals(List.of("one", "two", "three", "five", "six", "seven", "eight"), walk(createTree(), Integer.MAX_VALUE, l -> "three".equals(l) ? RowVisitResult.SKIP_SIBLINGS : RowVisitResult.CONTINUE));
+		assertEquals(List.of("one", "two", "seven", "eight"), walk(createTree(), Integer.MAX_VALUE, l -> "two".equals(l) ? RowVisitResult.SKIP_SIBLINGS : RowVisitResult.CONTINUE));
+	}
+	
+	@Test
+	public void test_terminate() {
+		assertEquals(List.of("one", "two", "three", "four"), walk(createTree(), Integer.MAX_VALUE, l -> "four".equals(l) ? RowVisitResult.TERMINATE : RowVisitResult.CONTINUE));
+		assertEquals(List.of("one", "two", "three"), walk(createTree(), Integer.MAX_VALUE, l -> "three".equals(l) ? null : RowVisitResult.CONTINUE));
+	}
+	
+	@Test
+	public void test_walk_row() {
+		List<Object> visited = new ArrayList<>();
+		createTree().getRow(0).walk(row -> {
+			visited.add(row.getCellContent(0));
+			return RowVisitResult.CONTINUE;
+		});
+		assertEquals(List.of("one", "two", "three", "four", "five", "six"), visited);
+	}
+	
+	@Test
+	public void test_deep_tree() {
+		int depth = 100_000;
+	    TreeTable tree = new TreeTable("Level");
+	    Row row = tree.addRow(0);
+	    for (int i = 1; i < depth; i++) {
+	    	row = row.addRow(i);
+	    }
+	    assertEquals(depth, row.depth());
+	    
+	    int[] count = new int[1];
+	    tree.copy().walk(r -> {
+	    	assertEquals(count[0]++, r.getCellContent(0));
+	    	return RowVisitResult.CONTINUE;
+	    });
+	    assertEquals(depth, count[0]);
+	}
+	
+}
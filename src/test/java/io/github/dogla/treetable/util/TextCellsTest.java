@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2022-2023 Dominik Glaser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.dogla.treetable.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import io.github.dogla.treetable.ColumnAlignment;
+
+/**
+ * Test class.
+ *
+ * @author Dominik Glaser
+ */
+@SuppressWarnings({ "nls", "javadoc" })
+public class TextCellsTest {
+
+	private static String cell(String text, int width, ColumnAlignment alignment) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		TextCells.appendCell(sb, text, width, alignment);
+		return sb.toString();
+	}
+
+	@Test
+	public void test_alignment() throws IOException {
+		assertEquals("abc   ", cell("abc", 6, ColumnAlignment.LEFT));
+		assertEquals("   abc", cell("abc", 6, ColumnAlignment.RIGHT));
+		assertEquals(" abc  ", cell("abc", 6, ColumnAlignment.CENTER));
+		assertEquals("abc", cell("abc", 3, ColumnAlignment.CENTER));
+		assertEquals("    ", cell(null, 4, ColumnAlignment.RIGHT));
+	}
+
+	@Test
+	public void test_line_breaks() throws IOException {
+		assertEquals("a b c ", cell("a\r\nb\nc", 6, ColumnAlignment.LEFT));
+		assertEquals(" a b  ", cell("\ra\n\rb\r", 6, ColumnAlignment.CENTER));
+		assertEquals("  ", cell("\n\n", 2, ColumnAlignment.RIGHT));
+	}
+
+	@Test
+	public void test_wide_padding() throws IOException {
+		assertEquals(" ".repeat(150) + "x", cell("x", 151, ColumnAlignment.RIGHT));
+		StringBuilder sb = new StringBuilder();
+		TextCells.appendRepeated(sb, "─", 3);
+		assertEquals("───", sb.toString());
+	}
+
+	@Test
+	public void test_width() {
+		assertEquals(5, TextCells.width("abc\r\nd"));
+		// box drawing characters
+		assertEquals(3, TextCells.width("\u251c\u2500\u2500"));
+		// CJK and fullwidth forms
+		assertEquals(4, TextCells.width("\u65e5\u672c"));
+		assertEquals(2, TextCells.width("\uff21"));
+		// combining acute accent and zero width joiner
+		assertEquals(4, TextCells.width("Cafe\u0301"));
+		assertEquals(0, TextCells.width("\u200d"));
+		// emoji (surrogate pair) and an unpaired surrogate
+		assertEquals(2, TextCells.width("\ud83d\ude00"));
+		assertEquals(1, TextCells.width("\ud83d"));
+		assertEquals(1, TextCells.width("\ud83d\ude00", 0, 1));
+	}
+	
+	@Test
+	public void test_wide_alignment() throws IOException {
+		assertEquals("\u65e5\u672c  ", cell("\u65e5\u672c", 6, ColumnAlignment.LEFT));
+		assertEquals(" \ud83d\ude00 ", cell("\ud83d\ude00", 4, ColumnAlignment.CENTER));
+	}
+
+}